@@ -0,0 +1,71 @@
+package com.google.ga4.mp.benchmarks;
+
+import com.google.ga4.mp.dispatch.PendingEvent;
+import com.google.ga4.mp.providers.SystemInfoProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typical events and system information shared by the benchmarks
+ */
+final class BenchmarkData {
+    static final String CLIENT_ID = "1700000000000.123456789";
+
+    static final SystemInfoProvider SYSTEM_INFO = new SystemInfoProvider() {
+        @Override
+        public String getOsName() {
+            return "Linux";
+        }
+
+        @Override
+        public String getOsVersion() {
+            return "6.1.0";
+        }
+
+        @Override
+        public String getDeviceCategory() {
+            return "desktop";
+        }
+
+        @Override
+        public String getLanguage() {
+            return "en-US";
+        }
+
+        @Override
+        public String getScreenResolution() {
+            return "1920x1080";
+        }
+
+        @Override
+        public String getBrowser() {
+            return "Java";
+        }
+
+        @Override
+        public String getBrowserVersion() {
+            return "17.0.9";
+        }
+    };
+
+    private BenchmarkData() {
+    }
+
+    static List<PendingEvent> events(int count) {
+        List<PendingEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("event_category", "engagement");
+            params.put("event_action", "button_click");
+            params.put("event_label", "signup_" + i);
+            params.put("value", i);
+            params.put("session_id", 1700000000L);
+            params.put("engagement_time_msec", 100L);
+            events.add(new PendingEvent(CLIENT_ID, "button_click", params));
+        }
+        return events;
+    }
+}
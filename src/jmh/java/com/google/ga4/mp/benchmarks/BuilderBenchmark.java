@@ -0,0 +1,104 @@
+package com.google.ga4.mp.benchmarks;
+
+import com.google.ga4.mp.GA4Analytics;
+import com.google.ga4.mp.builders.EventBuilder;
+import com.google.ga4.mp.builders.PageViewBuilder;
+import com.google.ga4.mp.builders.ScreenViewBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of creating and filling the public event builders, and of sending through a pooled builder
+ * compared to a fresh one. Compare gc.alloc.rate.norm between the variants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuilderBenchmark {
+    private GA4Analytics analytics;
+
+    @Setup
+    public void setUp() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-BENCH")
+                .withApiSecret("bench-secret")
+                .withSystemInfoProvider(BenchmarkData.SYSTEM_INFO)
+                .withHttpClient(new StubHttpClient(204, Duration.ZERO))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        analytics.shutdown();
+    }
+
+    @Benchmark
+    public EventBuilder eventBuilder() {
+        return analytics.event()
+                .eventCategory("engagement")
+                .eventAction("button_click")
+                .eventLabel("signup")
+                .eventValue(1)
+                .customParameter("plan", "pro");
+    }
+
+    @Benchmark
+    public EventBuilder pooledEventBuilder() {
+        return analytics.pooledEvent()
+                .eventCategory("engagement")
+                .eventAction("button_click")
+                .eventLabel("signup")
+                .eventValue(1)
+                .customParameter("plan", "pro");
+    }
+
+    @Benchmark
+    public void eventSend() {
+        analytics.event()
+                .eventCategory("engagement")
+                .eventAction("button_click")
+                .eventLabel("signup")
+                .eventValue(1)
+                .send();
+    }
+
+    @Benchmark
+    public void pooledEventSend() {
+        analytics.pooledEvent()
+                .eventCategory("engagement")
+                .eventAction("button_click")
+                .eventLabel("signup")
+                .eventValue(1)
+                .send();
+    }
+
+    @Benchmark
+    public PageViewBuilder pageViewBuilder() {
+        return analytics.pageView()
+                .documentTitle("Home")
+                .documentPath("/home")
+                .documentLocation("https://example.com/home");
+    }
+
+    @Benchmark
+    public ScreenViewBuilder screenViewBuilder() {
+        return analytics.screenView()
+                .screenName("Dashboard")
+                .sessionControl("start");
+    }
+}
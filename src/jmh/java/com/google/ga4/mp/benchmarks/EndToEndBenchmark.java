@@ -0,0 +1,81 @@
+package com.google.ga4.mp.benchmarks;
+
+import com.google.ga4.mp.DeliveryResult;
+import com.google.ga4.mp.GA4Analytics;
+import com.google.ga4.mp.dispatch.OverflowPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enqueue-to-send through the public builders against the in-process stub transport.
+ * The BLOCK overflow policy makes producers wait for the pipeline instead of dropping events,
+ * so enqueue throughput reflects the sustainable send rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class EndToEndBenchmark {
+    @Param({"false", "true"})
+    public boolean batching;
+
+    private GA4Analytics analytics;
+
+    @Setup
+    public void setUp() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-BENCH")
+                .withApiSecret("bench-secret")
+                .withSystemInfoProvider(BenchmarkData.SYSTEM_INFO)
+                .withHttpClient(new StubHttpClient(204, Duration.ZERO))
+                .withBatching(batching)
+                .withMaxBatchLinger(Duration.ofMillis(1))
+                .withOverflowPolicy(OverflowPolicy.BLOCK)
+                .withMaxBlockTime(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        analytics.shutdown();
+    }
+
+    @Benchmark
+    public CompletableFuture<DeliveryResult> enqueue() {
+        return analytics.event()
+                .eventCategory("engagement")
+                .eventAction("button_click")
+                .eventLabel("signup")
+                .eventValue(1)
+                .sendAsync();
+    }
+
+    @Benchmark
+    public DeliveryResult enqueueToDelivery() {
+        return analytics.event()
+                .eventCategory("engagement")
+                .eventAction("button_click")
+                .eventLabel("signup")
+                .eventValue(1)
+                .sendAsync()
+                .join();
+    }
+}
@@ -0,0 +1,86 @@
+package com.google.ga4.mp.benchmarks;
+
+import com.google.ga4.mp.DeliveryResult;
+import com.google.ga4.mp.GA4Analytics;
+import com.google.ga4.mp.dispatch.OverflowPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery throughput of the built-in platform dispatcher threads against a virtual-thread-per-task
+ * executor, with many concurrent callers and an endpoint answering after 50ms.
+ * The virtual mode needs Java 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(256)
+public class ExecutorBenchmark {
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    private ExecutorService executor;
+    private GA4Analytics analytics;
+
+    @Setup
+    public void setUp() {
+        GA4Analytics.Builder builder = GA4Analytics.builder()
+                .withMeasurementId("G-BENCH")
+                .withApiSecret("bench-secret")
+                .withSystemInfoProvider(BenchmarkData.SYSTEM_INFO)
+                .withHttpClient(new StubHttpClient(204, Duration.ofMillis(50)))
+                .withMaxInFlightRequests(1024)
+                .withOverflowPolicy(OverflowPolicy.BLOCK)
+                .withMaxBlockTime(Duration.ofSeconds(10));
+        if ("virtual".equals(mode)) {
+            // Looked up reflectively because the benchmarks are compiled for Java 11
+            executor = newVirtualThreadPerTaskExecutor();
+            builder.withExecutor(executor);
+        }
+        analytics = builder.build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        analytics.shutdown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public DeliveryResult sendAndAwait() {
+        return analytics.event()
+                .eventCategory("engagement")
+                .eventAction("button_click")
+                .sendAsync()
+                .join();
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The virtual mode requires Java 21 or later", e);
+        }
+    }
+}
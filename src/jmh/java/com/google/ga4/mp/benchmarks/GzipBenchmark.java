@@ -0,0 +1,75 @@
+package com.google.ga4.mp.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.ga4.mp.payload.GzipEncoder;
+import com.google.ga4.mp.payload.PayloadWriter;
+import com.google.ga4.mp.payload.StaticPayload;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * CPU cost of gzip compression against the bytes it saves, for single events and full batches.
+ * The bytes counters report uncompressed and compressed totals per iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GzipBenchmark {
+    @Param({"1", "25"})
+    public int batchSize;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private byte[] body;
+    private GzipEncoder encoder;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long uncompressedBytes;
+        public long compressedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            uncompressedBytes = 0;
+            compressedBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        StaticPayload staticPayload = new StaticPayload(objectMapper, BenchmarkData.SYSTEM_INFO, "Bench App", "1.0.0",
+                "https://www.google-analytics.com/mp/collect", "G-BENCH", "bench-secret");
+        PayloadWriter payloadWriter = new PayloadWriter(objectMapper, staticPayload, null);
+        body = payloadWriter.write(BenchmarkData.CLIENT_ID, BenchmarkData.events(batchSize));
+        encoder = new GzipEncoder(level == 6 ? Deflater.DEFAULT_COMPRESSION : level);
+    }
+
+    @Benchmark
+    public byte[] gzip(Bytes bytes) {
+        byte[] compressed = encoder.encode(body);
+        bytes.uncompressedBytes += body.length;
+        bytes.compressedBytes += compressed.length;
+        return compressed;
+    }
+}
@@ -0,0 +1,76 @@
+package com.google.ga4.mp.benchmarks;
+
+import com.google.ga4.mp.outbox.Outbox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append throughput of the durable outbox with group-commit fsync. Each append is acknowledged right away
+ * so that segments are recycled and the benchmark measures steady state rather than disk capacity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutboxBenchmark {
+    @Param({"10", "50"})
+    public int syncIntervalMillis;
+
+    private Path directory;
+    private Outbox outbox;
+    private Map<String, Object> params;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ga4-outbox-bench");
+        outbox = new Outbox(directory, Outbox.DEFAULT_SEGMENT_SIZE, Duration.ofMillis(syncIntervalMillis));
+        params = new HashMap<>();
+        params.put("event_category", "engagement");
+        params.put("event_label", "signup");
+        params.put("value", 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        outbox.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        long position = outbox.append(BenchmarkData.CLIENT_ID, "button_click", params);
+        outbox.acknowledge(position);
+        return position;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long appendContended() throws IOException {
+        return append();
+    }
+}
@@ -0,0 +1,106 @@
+package com.google.ga4.mp.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.ga4.mp.dispatch.PendingEvent;
+import com.google.ga4.mp.payload.PayloadWriter;
+import com.google.ga4.mp.payload.StaticPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payload assembly and JSON serialization: the streaming PayloadWriter against the
+ * map-based ObjectMapper serialization it replaced
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadBenchmark {
+    @Param({"1", "25"})
+    public int batchSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private PayloadWriter payloadWriter;
+    private List<PendingEvent> events;
+    // Parameters as the maps the baseline used to carry, built once so the baseline is not charged for boxing
+    private List<Map<String, Object>> eventMaps;
+
+    @Setup
+    public void setUp() {
+        StaticPayload staticPayload = new StaticPayload(objectMapper, BenchmarkData.SYSTEM_INFO, "Bench App", "1.0.0",
+                "https://www.google-analytics.com/mp/collect", "G-BENCH", "bench-secret");
+        payloadWriter = new PayloadWriter(objectMapper, staticPayload, null);
+        events = BenchmarkData.events(batchSize);
+        eventMaps = new ArrayList<>(events.size());
+        for (PendingEvent pendingEvent : events) {
+            eventMaps.add(pendingEvent.getParams().toMap());
+        }
+    }
+
+    @Benchmark
+    public byte[] streamingWriter() throws IOException {
+        return payloadWriter.write(BenchmarkData.CLIENT_ID, events);
+    }
+
+    /**
+     * The original approach: nested HashMaps serialized to a String, then encoded to bytes
+     */
+    @Benchmark
+    public byte[] mapBasedBaseline() throws IOException {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("client_id", BenchmarkData.CLIENT_ID);
+
+        Map<String, Object> userProperties = new HashMap<>();
+        userProperties.put("app_name", valueMap("Bench App"));
+        userProperties.put("app_version", valueMap("1.0.0"));
+        userProperties.put("os_name", valueMap(BenchmarkData.SYSTEM_INFO.getOsName()));
+        userProperties.put("os_version", valueMap(BenchmarkData.SYSTEM_INFO.getOsVersion()));
+        payload.put("user_properties", userProperties);
+
+        Map<String, Object> device = new HashMap<>();
+        device.put("category", BenchmarkData.SYSTEM_INFO.getDeviceCategory());
+        device.put("language", BenchmarkData.SYSTEM_INFO.getLanguage());
+        device.put("screen_resolution", BenchmarkData.SYSTEM_INFO.getScreenResolution());
+        device.put("operating_system", BenchmarkData.SYSTEM_INFO.getOsName());
+        device.put("operating_system_version", BenchmarkData.SYSTEM_INFO.getOsVersion());
+        device.put("browser", BenchmarkData.SYSTEM_INFO.getBrowser());
+        device.put("browser_version", BenchmarkData.SYSTEM_INFO.getBrowserVersion());
+        payload.put("device", device);
+
+        List<Map<String, Object>> eventList = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            Map<String, Object> event = new HashMap<>();
+            event.put("name", events.get(i).getName());
+            event.put("params", new HashMap<>(eventMaps.get(i)));
+            eventList.add(event);
+        }
+        payload.put("events", eventList);
+
+        return objectMapper.writeValueAsString(payload).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> valueMap(String value) {
+        Map<String, String> map = new HashMap<>();
+        map.put("value", value);
+        return map;
+    }
+}
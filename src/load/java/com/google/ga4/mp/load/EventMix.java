@@ -0,0 +1,92 @@
+package com.google.ga4.mp.load;
+
+import com.google.ga4.mp.DeliveryResult;
+import com.google.ga4.mp.GA4Analytics;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Weighted mix of the public event builders, e.g. {@code event:70,page_view:20,screen_view:10}
+ */
+final class EventMix {
+    // Distinct labels and paths, so payloads and deduplication keys vary like real traffic
+    private static final int CARDINALITY = 100;
+
+    enum Kind {
+        EVENT,
+        PAGE_VIEW,
+        SCREEN_VIEW
+    }
+
+    private final int[] cumulativeWeights = new int[Kind.values().length];
+    private final String description;
+
+    private EventMix(int[] weights, String description) {
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The event mix needs at least one positive weight");
+        }
+        this.description = description;
+    }
+
+    static EventMix parse(String value) {
+        int[] weights = new int[Kind.values().length];
+        for (String part : value.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            if (nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("Expected name:weight in the event mix but got: " + part);
+            }
+            int weight = Integer.parseInt(nameAndWeight[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Event mix weights must not be negative: " + part);
+            }
+            weights[Kind.valueOf(nameAndWeight[0].trim().toUpperCase()).ordinal()] = weight;
+        }
+        return new EventMix(weights, value);
+    }
+
+    Kind next(SplittableRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return Kind.values()[i];
+            }
+        }
+        throw new AssertionError();
+    }
+
+    /**
+     * Describes and sends one event of the given kind through the public builders
+     */
+    static CompletableFuture<DeliveryResult> send(GA4Analytics analytics, Kind kind, SplittableRandom random) {
+        int variant = random.nextInt(CARDINALITY);
+        switch (kind) {
+            case PAGE_VIEW:
+                return analytics.pageView()
+                        .documentTitle("Page " + variant)
+                        .documentPath("/load/page/" + variant)
+                        .sendAsync();
+            case SCREEN_VIEW:
+                return analytics.screenView()
+                        .screenName("Screen" + variant)
+                        .sendAsync();
+            default:
+                return analytics.event()
+                        .eventCategory("load")
+                        .eventAction("load_event")
+                        .eventLabel("label_" + variant)
+                        .eventValue(random.nextInt(1000))
+                        .sendAsync();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,101 @@
+package com.google.ga4.mp.load;
+
+import com.google.ga4.mp.dispatch.OverflowPolicy;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options of a load run, parsed from {@code --name=value} arguments
+ */
+final class LoadConfig {
+    final Duration duration;
+    final Duration reportInterval;
+    final int rate;
+    final int threads;
+    final EventMix mix;
+    final boolean batching;
+    final int queueCapacity;
+    final OverflowPolicy overflowPolicy;
+    final int maxInFlightRequests;
+    final Duration collectorLatency;
+    final double collectorErrorRate;
+    final long seed;
+    final Path output;
+
+    private LoadConfig(Map<String, String> options) {
+        this.duration = duration(take(options, "duration", "PT1M"));
+        this.reportInterval = duration(take(options, "report-interval", "PT10S"));
+        this.rate = positive("rate", take(options, "rate", "20000"));
+        this.threads = positive("threads", take(options, "threads", "8"));
+        this.mix = EventMix.parse(take(options, "mix", "event:70,page_view:20,screen_view:10"));
+        this.batching = Boolean.parseBoolean(take(options, "batching", "true"));
+        this.queueCapacity = positive("queue-capacity", take(options, "queue-capacity", "10000"));
+        this.overflowPolicy = OverflowPolicy.valueOf(take(options, "overflow", "DROP_NEWEST"));
+        this.maxInFlightRequests = positive("max-in-flight", take(options, "max-in-flight", "64"));
+        this.collectorLatency = duration(take(options, "collector-latency", "PT0.02S"));
+        this.collectorErrorRate = Double.parseDouble(take(options, "collector-error-rate", "0"));
+        this.seed = Long.parseLong(take(options, "seed", "42"));
+        this.output = Paths.get(take(options, "output", "build/reports/load/soak.json"));
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + options.keySet());
+        }
+    }
+
+    static LoadConfig parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            // Later arguments win, so options appended on the command line override defaults from the build
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new LoadConfig(options);
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("durationSeconds", duration.getSeconds());
+        map.put("targetRate", rate);
+        map.put("threads", threads);
+        map.put("mix", mix.toString());
+        map.put("batching", batching);
+        map.put("queueCapacity", queueCapacity);
+        map.put("overflowPolicy", overflowPolicy.name());
+        map.put("maxInFlightRequests", maxInFlightRequests);
+        map.put("collectorLatencyMillis", collectorLatency.toMillis());
+        map.put("collectorErrorRate", collectorErrorRate);
+        map.put("seed", seed);
+        return map;
+    }
+
+    private static String take(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Accepts ISO-8601 durations such as PT1H, or a number of seconds
+     */
+    private static Duration duration(String value) {
+        Duration duration = value.chars().allMatch(Character::isDigit)
+                ? Duration.ofSeconds(Long.parseLong(value)) : Duration.parse(value);
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Durations must be positive: " + value);
+        }
+        return duration;
+    }
+
+    private static int positive(String name, String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed < 1) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return parsed;
+    }
+}
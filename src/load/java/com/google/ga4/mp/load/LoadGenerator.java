@@ -0,0 +1,280 @@
+package com.google.ga4.mp.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.ga4.mp.FlushResult;
+import com.google.ga4.mp.GA4Analytics;
+import com.google.ga4.mp.metrics.GA4Metrics;
+import com.google.ga4.mp.metrics.LatencyHistogram;
+import com.google.ga4.mp.testing.LatencyDistribution;
+import com.google.ga4.mp.testing.StubCollector;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a paced event mix through GA4Analytics against an embedded {@link StubCollector} and writes a
+ * JSON report of sustained throughput, enqueue and delivery latency percentiles, GC time and drop counts.
+ * Producers follow a fixed schedule, so a stalled sendAsync shows up as lost throughput instead of
+ * silently lowering the offered load.
+ * <p>
+ * Run with {@code ./gradlew soak -PloadArgs="--duration=PT1H --rate=20000 --threads=16"}.
+ */
+public final class LoadGenerator {
+    // Time allowed after the run for queued and in-flight events to be delivered
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadConfig config;
+    private final LatencyHistogram enqueueLatency = new LatencyHistogram();
+    private final LongAdder produced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean running = true;
+
+    private LoadGenerator(LoadConfig config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.parse(args);
+        Map<String, Object> report = new LoadGenerator(config).run();
+        write(report, config.output);
+        System.out.println("Load report written to " + config.output.toAbsolutePath());
+    }
+
+    private Map<String, Object> run() throws InterruptedException {
+        try (StubCollector collector = StubCollector.builder()
+                .withSeed(config.seed)
+                .withLatency(LatencyDistribution.logNormal(config.collectorLatency, 0.5))
+                .withErrorRate(config.collectorErrorRate)
+                .start()) {
+            GA4Analytics analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-LOADTEST")
+                    .withApiSecret("load-test")
+                    .withAppName("GA4 Load Generator")
+                    .withAppVersion("1.0.0")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withBatching(config.batching)
+                    .withQueueCapacity(config.queueCapacity)
+                    .withOverflowPolicy(config.overflowPolicy)
+                    .withMaxInFlightRequests(config.maxInFlightRequests)
+                    .build();
+            FlushResult drain = null;
+            try {
+                GA4Metrics metrics = analytics.getMetrics();
+                GcSnapshot gcBefore = GcSnapshot.take();
+                long startNanos = System.nanoTime();
+                long deadlineNanos = startNanos + config.duration.toNanos();
+
+                List<Thread> producers = new ArrayList<>(config.threads);
+                for (int i = 0; i < config.threads; i++) {
+                    Thread producer = new Thread(producer(analytics, i, startNanos), "ga4-load-producer-" + i);
+                    producer.start();
+                    producers.add(producer);
+                }
+
+                List<Map<String, Object>> intervals = new ArrayList<>();
+                Interval previous = new Interval(startNanos, 0, 0, metrics.getEventsDropped());
+                while (System.nanoTime() < deadlineNanos) {
+                    long sleepNanos = Math.min(config.reportInterval.toNanos(), deadlineNanos - System.nanoTime());
+                    TimeUnit.NANOSECONDS.sleep(Math.max(0, sleepNanos));
+                    Interval current = new Interval(System.nanoTime(), produced.sum(), metrics.getEventsSent(),
+                            metrics.getEventsDropped());
+                    intervals.add(current.report(previous, startNanos, metrics));
+                    previous = current;
+                }
+                running = false;
+                for (Thread producer : producers) {
+                    producer.join();
+                }
+                long producingNanos = System.nanoTime() - startNanos;
+                drain = analytics.shutdown(DRAIN_TIMEOUT);
+                GcSnapshot gcAfter = GcSnapshot.take();
+
+                return report(metrics, collector, producingNanos, drain, gcAfter.minus(gcBefore), intervals);
+            } finally {
+                running = false;
+                if (drain == null) {
+                    // The run failed or was interrupted before draining; release the dispatcher, outbox and MBean
+                    analytics.shutdown();
+                }
+            }
+        }
+    }
+
+    private Runnable producer(GA4Analytics analytics, int index, long startNanos) {
+        long periodNanos = Math.max(1, TimeUnit.SECONDS.toNanos(config.threads) / config.rate);
+        return () -> {
+            SplittableRandom random = new SplittableRandom(config.seed + index);
+            // Stagger the producers across one period so their sends do not line up
+            long scheduledNanos = startNanos + periodNanos * index / config.threads;
+            while (running) {
+                long waitNanos = scheduledNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                    continue;
+                }
+                EventMix.Kind kind = config.mix.next(random);
+                try {
+                    EventMix.send(analytics, kind, random);
+                } catch (RuntimeException e) {
+                    rejected.increment();
+                }
+                // From the scheduled time rather than the call, so a stalled send also counts against the
+                // sends that were due while it blocked
+                enqueueLatency.record(System.nanoTime() - scheduledNanos);
+                produced.increment();
+                scheduledNanos += periodNanos;
+            }
+        };
+    }
+
+    private Map<String, Object> report(GA4Metrics metrics, StubCollector collector, long producingNanos,
+                                       FlushResult drain, GcSnapshot gc, List<Map<String, Object>> intervals) {
+        double seconds = producingNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("javaVersion", System.getProperty("java.version"));
+        report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.put("config", config.toMap());
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("targetPerSecond", config.rate);
+        throughput.put("producedPerSecond", round(produced.sum() / seconds));
+        throughput.put("deliveredPerSecond", round(metrics.getEventsSent() / seconds));
+        throughput.put("requestsPerSecond", round(metrics.getRequestsSent() / seconds));
+        report.put("throughput", throughput);
+
+        Map<String, Object> events = new LinkedHashMap<>();
+        events.put("produced", produced.sum());
+        events.put("enqueued", metrics.getEventsEnqueued());
+        events.put("sent", metrics.getEventsSent());
+        events.put("dropped", metrics.getEventsDropped());
+        events.put("failed", metrics.getEventsFailed());
+        events.put("rejectedByCaller", rejected.sum());
+        events.put("retriesScheduled", metrics.getRetriesScheduled());
+        report.put("events", events);
+
+        report.put("enqueueLatencyMicros", percentiles(enqueueLatency));
+        report.put("deliveryLatencyMicros", percentiles(metrics.getEnqueueToAckLatency()));
+        report.put("requestLatencyMicros", percentiles(metrics.getRoundTripLatency()));
+
+        Map<String, Object> gcReport = new LinkedHashMap<>();
+        gcReport.put("collections", gc.collections);
+        gcReport.put("timeMillis", gc.timeMillis);
+        gcReport.put("percentOfRun", round(100.0 * gc.timeMillis
+                / TimeUnit.NANOSECONDS.toMillis(producingNanos + drain.getElapsed().toNanos())));
+        report.put("gc", gcReport);
+
+        Map<String, Object> collectorReport = new LinkedHashMap<>();
+        collectorReport.put("requests", collector.getRequestCount());
+        collectorReport.put("eventsAccepted", collector.getEventsAccepted());
+        collectorReport.put("errors", collector.getErrorCount());
+        report.put("collector", collectorReport);
+
+        Map<String, Object> shutdown = new LinkedHashMap<>();
+        shutdown.put("millis", drain.getElapsed().toMillis());
+        shutdown.put("sent", drain.getEventsSent());
+        shutdown.put("failed", drain.getEventsFailed());
+        shutdown.put("abandoned", drain.getEventsAbandoned());
+        report.put("shutdown", shutdown);
+        report.put("intervals", intervals);
+        return report;
+    }
+
+    private static Map<String, Object> percentiles(LatencyHistogram histogram) {
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        percentiles.put("count", histogram.getCount());
+        percentiles.put("p50", micros(histogram.getPercentileNanos(50.0)));
+        percentiles.put("p99", micros(histogram.getPercentileNanos(99.0)));
+        percentiles.put("p999", micros(histogram.getPercentileNanos(99.9)));
+        percentiles.put("max", micros(histogram.getMaxNanos()));
+        percentiles.put("mean", round(histogram.getMeanNanos() / 1000.0));
+        return percentiles;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private static void write(Map<String, Object> report, Path output) throws IOException {
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+    }
+
+    /**
+     * Cumulative counters at the end of a report interval
+     */
+    private static final class Interval {
+        private final long nanos;
+        private final long produced;
+        private final long sent;
+        private final long dropped;
+
+        private Interval(long nanos, long produced, long sent, long dropped) {
+            this.nanos = nanos;
+            this.produced = produced;
+            this.sent = sent;
+            this.dropped = dropped;
+        }
+
+        private Map<String, Object> report(Interval previous, long startNanos, GA4Metrics metrics) {
+            double seconds = (nanos - previous.nanos) / 1e9;
+            Map<String, Object> interval = new LinkedHashMap<>();
+            interval.put("elapsedSeconds", round((nanos - startNanos) / 1e9));
+            interval.put("producedPerSecond", round((produced - previous.produced) / seconds));
+            interval.put("deliveredPerSecond", round((sent - previous.sent) / seconds));
+            interval.put("dropped", dropped - previous.dropped);
+            interval.put("queueDepth", metrics.getQueueDepth());
+            interval.put("heapUsedBytes", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+            System.out.println("Load " + interval);
+            return interval;
+        }
+    }
+
+    /**
+     * Collection count and time summed over all garbage collectors
+     */
+    private static final class GcSnapshot {
+        private final long collections;
+        private final long timeMillis;
+
+        private GcSnapshot(long collections, long timeMillis) {
+            this.collections = collections;
+            this.timeMillis = timeMillis;
+        }
+
+        private static GcSnapshot take() {
+            long collections = 0;
+            long timeMillis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collections += Math.max(0, collector.getCollectionCount());
+                timeMillis += Math.max(0, collector.getCollectionTime());
+            }
+            return new GcSnapshot(collections, timeMillis);
+        }
+
+        private GcSnapshot minus(GcSnapshot earlier) {
+            return new GcSnapshot(collections - earlier.collections, timeMillis - earlier.timeMillis);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.google.ga4.mp;
+
+import java.time.Duration;
+
+/**
+ * Outcome of the Measurement Protocol request that carried an event
+ */
+public final class DeliveryResult {
+    private final long batchId;
+    private final int statusCode;
+    private final Duration latency;
+    private final int eventCount;
+    private final int attempts;
+
+    public DeliveryResult(long batchId, int statusCode, Duration latency, int eventCount, int attempts) {
+        this.batchId = batchId;
+        this.statusCode = statusCode;
+        this.latency = latency;
+        this.eventCount = eventCount;
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return Identifier of the request, shared by all events delivered in the same batch
+     */
+    public long getBatchId() {
+        return batchId;
+    }
+
+    /**
+     * @return HTTP status code returned by GA4
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return Time between sending the request and receiving the response
+     */
+    public Duration getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return Number of events carried by the request
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return Number of attempts made, including retries
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryResult{batchId=" + batchId + ", statusCode=" + statusCode
+                + ", latency=" + latency.toMillis() + "ms, eventCount=" + eventCount
+                + ", attempts=" + attempts + "}";
+    }
+}
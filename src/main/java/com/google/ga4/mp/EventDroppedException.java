@@ -0,0 +1,44 @@
+package com.google.ga4.mp;
+
+/**
+ * Completes the future of an event that was intentionally not sent.
+ * Carries no stack trace, so dropping an event stays cheap.
+ */
+public class EventDroppedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Why an event was not sent
+     */
+    public enum Reason {
+        /** Identical to an event sent within the deduplication window */
+        DUPLICATE,
+        /** Not selected by the event's sample rate */
+        SAMPLED_OUT,
+        /** Over the global or per-event-name rate limit */
+        RATE_LIMITED,
+        /** Still queued or in flight when the deadline of {@link GA4Analytics#shutdown(java.time.Duration)} passed */
+        ABANDONED,
+        /** Breaks a GA4 collection limit checked by the client-side event validator */
+        INVALID,
+        /** Of a shape that failed validation against the debug endpoint */
+        INVALID_SHAPE
+    }
+
+    private final String eventName;
+    private final Reason reason;
+
+    public EventDroppedException(String eventName, Reason reason) {
+        super("GA4 event " + eventName + " dropped: " + reason, null, false, false);
+        this.eventName = eventName;
+        this.reason = reason;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
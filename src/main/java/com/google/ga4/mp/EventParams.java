@@ -0,0 +1,274 @@
+package com.google.ga4.mp;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Flat, array-backed event parameters. Numbers and booleans are stored in a primitive slot, so they are
+ * never boxed, and serialization reads the slots directly. Putting an existing key replaces its value.
+ * <p>
+ * Not thread-safe. Once passed to {@link GA4Analytics#sendEvent(String, EventParams, boolean)} the instance
+ * belongs to the library and must not be modified or reused.
+ */
+public final class EventParams {
+    /**
+     * Kind of value held by a slot
+     */
+    public enum Type {
+        LONG,
+        DOUBLE,
+        BOOLEAN,
+        STRING,
+        /** Any other value, serialized by Jackson */
+        OBJECT
+    }
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private String[] keys;
+    private Type[] types;
+    private long[] primitives;
+    private Object[] objects;
+    private int size;
+
+    public EventParams() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EventParams(int initialCapacity) {
+        this.keys = new String[initialCapacity];
+        this.types = new Type[initialCapacity];
+        this.primitives = new long[initialCapacity];
+        this.objects = new Object[initialCapacity];
+    }
+
+    private EventParams(EventParams source) {
+        this.keys = Arrays.copyOf(source.keys, source.size);
+        this.types = Arrays.copyOf(source.types, source.size);
+        this.primitives = Arrays.copyOf(source.primitives, source.size);
+        this.objects = Arrays.copyOf(source.objects, source.size);
+        this.size = source.size;
+    }
+
+    /**
+     * @return Parameters holding the entries of the map, with numbers and booleans unboxed
+     */
+    public static EventParams of(Map<String, ?> params) {
+        EventParams eventParams = new EventParams(Math.max(1, params.size()));
+        for (Map.Entry<String, ?> entry : params.entrySet()) {
+            eventParams.put(entry.getKey(), entry.getValue());
+        }
+        return eventParams;
+    }
+
+    public EventParams putLong(String key, long value) {
+        int slot = slotFor(key);
+        types[slot] = Type.LONG;
+        primitives[slot] = value;
+        objects[slot] = null;
+        return this;
+    }
+
+    public EventParams putDouble(String key, double value) {
+        int slot = slotFor(key);
+        types[slot] = Type.DOUBLE;
+        primitives[slot] = Double.doubleToRawLongBits(value);
+        objects[slot] = null;
+        return this;
+    }
+
+    public EventParams putBoolean(String key, boolean value) {
+        int slot = slotFor(key);
+        types[slot] = Type.BOOLEAN;
+        primitives[slot] = value ? 1L : 0L;
+        objects[slot] = null;
+        return this;
+    }
+
+    public EventParams putString(String key, String value) {
+        int slot = slotFor(key);
+        types[slot] = Type.STRING;
+        objects[slot] = value;
+        return this;
+    }
+
+    /**
+     * Stores the value in the slot matching its type, unboxing integral numbers, doubles, floats and booleans
+     */
+    public EventParams put(String key, Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return putLong(key, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            return putDouble(key, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            return putBoolean(key, (Boolean) value);
+        } else if (value instanceof String) {
+            return putString(key, (String) value);
+        }
+        int slot = slotFor(key);
+        types[slot] = Type.OBJECT;
+        objects[slot] = value;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Slot index of the key, or -1
+     */
+    public int indexOf(String key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean containsKey(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    public String getKey(int index) {
+        checkIndex(index);
+        return keys[index];
+    }
+
+    public Type getType(int index) {
+        checkIndex(index);
+        return types[index];
+    }
+
+    public long getLong(int index) {
+        checkIndex(index);
+        return primitives[index];
+    }
+
+    public double getDouble(int index) {
+        checkIndex(index);
+        return Double.longBitsToDouble(primitives[index]);
+    }
+
+    public boolean getBoolean(int index) {
+        checkIndex(index);
+        return primitives[index] != 0L;
+    }
+
+    /**
+     * @return The String or other object held by a STRING or OBJECT slot
+     */
+    public Object getObject(int index) {
+        checkIndex(index);
+        return objects[index];
+    }
+
+    /**
+     * @return The value of the slot, boxed
+     */
+    public Object getValue(int index) {
+        switch (getType(index)) {
+            case LONG:
+                return primitives[index];
+            case DOUBLE:
+                return Double.longBitsToDouble(primitives[index]);
+            case BOOLEAN:
+                return primitives[index] != 0L;
+            default:
+                return objects[index];
+        }
+    }
+
+    /**
+     * Renames the parameter in the slot, keeping its value
+     */
+    public void setKey(int index, String key) {
+        checkIndex(index);
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null");
+        }
+        int existing = indexOf(key);
+        if (existing >= 0 && existing != index) {
+            throw new IllegalArgumentException("Parameter " + key + " already exists");
+        }
+        keys[index] = key;
+    }
+
+    /**
+     * Removes the parameter in the slot, moving the following ones down by one
+     */
+    public void remove(int index) {
+        checkIndex(index);
+        int moved = size - index - 1;
+        System.arraycopy(keys, index + 1, keys, index, moved);
+        System.arraycopy(types, index + 1, types, index, moved);
+        System.arraycopy(primitives, index + 1, primitives, index, moved);
+        System.arraycopy(objects, index + 1, objects, index, moved);
+        size--;
+        keys[size] = null;
+        objects[size] = null;
+    }
+
+    /**
+     * Removes all parameters, keeping the allocated slots for reuse
+     */
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return An independent copy that can be modified
+     */
+    public EventParams copy() {
+        return new EventParams(this);
+    }
+
+    /**
+     * @return The parameters as a new map, boxing primitive values
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i], getValue(i));
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    private int slotFor(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null");
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            return index;
+        }
+        if (size == keys.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, keys.length * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            types = Arrays.copyOf(types, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        keys[size] = key;
+        return size++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.google.ga4.mp;
+
+import java.time.Duration;
+
+/**
+ * Summary of {@link GA4Analytics#flush(Duration)} or {@link GA4Analytics#shutdown(Duration)}
+ */
+public final class FlushResult {
+    private final long eventsSent;
+    private final long eventsFailed;
+    private final long eventsAbandoned;
+    private final long eventsSpilled;
+    private final Duration elapsed;
+
+    public FlushResult(long eventsSent, long eventsFailed, long eventsAbandoned, long eventsSpilled, Duration elapsed) {
+        this.eventsSent = eventsSent;
+        this.eventsFailed = eventsFailed;
+        this.eventsAbandoned = eventsAbandoned;
+        this.eventsSpilled = eventsSpilled;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return Number of events delivered while waiting
+     */
+    public long getEventsSent() {
+        return eventsSent;
+    }
+
+    /**
+     * @return Number of events rejected by GA4, dropped or failed while waiting
+     */
+    public long getEventsFailed() {
+        return eventsFailed;
+    }
+
+    /**
+     * @return Number of events still queued or in flight when the deadline passed
+     */
+    public long getEventsAbandoned() {
+        return eventsAbandoned;
+    }
+
+    /**
+     * @return Number of abandoned events kept in the outbox or spill file for the next start
+     */
+    public long getEventsSpilled() {
+        return eventsSpilled;
+    }
+
+    /**
+     * @return Time spent waiting
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return Whether every event was sent or failed before the deadline
+     */
+    public boolean isComplete() {
+        return eventsAbandoned == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FlushResult{sent=" + eventsSent + ", failed=" + eventsFailed + ", abandoned=" + eventsAbandoned
+                + ", spilled=" + eventsSpilled + ", elapsed=" + elapsed.toMillis() + "ms}";
+    }
+}
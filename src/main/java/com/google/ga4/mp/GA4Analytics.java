@@ -1,22 +1,72 @@
 package com.google.ga4.mp;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.ga4.mp.builders.EventBuilder;
 import com.google.ga4.mp.builders.PageViewBuilder;
 import com.google.ga4.mp.builders.ScreenViewBuilder;
+import com.google.ga4.mp.dedup.DuplicateFilter;
+import com.google.ga4.mp.dispatch.BoundedDispatcher;
+import com.google.ga4.mp.dispatch.Destination;
+import com.google.ga4.mp.dispatch.DestinationQueue;
+import com.google.ga4.mp.dispatch.EventAggregator;
+import com.google.ga4.mp.dispatch.EventBatcher;
+import com.google.ga4.mp.dispatch.OverflowPolicy;
+import com.google.ga4.mp.dispatch.PendingEvent;
+import com.google.ga4.mp.dispatch.RetryBudget;
+import com.google.ga4.mp.dispatch.RetryPolicy;
+import com.google.ga4.mp.dispatch.VirtualThreads;
+import com.google.ga4.mp.identity.ClientIdRegistry;
+import com.google.ga4.mp.metrics.GA4Metrics;
+import com.google.ga4.mp.metrics.MetricsListener;
+import com.google.ga4.mp.outbox.Outbox;
+import com.google.ga4.mp.outbox.SpillFile;
+import com.google.ga4.mp.payload.GzipEncoder;
+import com.google.ga4.mp.payload.PayloadWriter;
+import com.google.ga4.mp.payload.StaticPayload;
 import com.google.ga4.mp.providers.ApacheCommonsSystemInfoProvider;
+import com.google.ga4.mp.providers.CachingSystemInfoProvider;
 import com.google.ga4.mp.providers.SystemInfoProvider;
+import com.google.ga4.mp.sampling.EventSampler;
+import com.google.ga4.mp.sampling.SamplingDecision;
+import com.google.ga4.mp.sampling.TokenBucket;
+import com.google.ga4.mp.session.SessionTracker;
+import com.google.ga4.mp.validation.EventValidator;
+import com.google.ga4.mp.validation.InvalidShapePolicy;
+import com.google.ga4.mp.validation.ShapeValidator;
+import com.google.ga4.mp.validation.ShapeVerdict;
+import com.google.ga4.mp.validation.ValidationAction;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,47 +75,300 @@ import java.util.logging.Logger;
  * https://developers.google.com/analytics/devguides/collection/protocol/ga4
  */
 public class GA4Analytics {
-    private static final String GA4_ENDPOINT = "https://www.google-analytics.com/mp/collect";
-    private static final String GA4_DEBUG_ENDPOINT = "https://www.google-analytics.com/debug/mp/collect";
+    /** Base URL of the Google Measurement Protocol endpoints */
+    public static final String DEFAULT_ENDPOINT_BASE_URL = "https://www.google-analytics.com";
+    private static final String COLLECT_PATH = "/mp/collect";
+    private static final String DEBUG_COLLECT_PATH = "/debug/mp/collect";
+    /** Maximum number of events GA4 accepts in a single Measurement Protocol request */
+    public static final int MAX_EVENTS_PER_REQUEST = 25;
+    /** Default limit for the estimated size of a batch, leaving headroom under the 130 kB GA4 post limit */
+    public static final int DEFAULT_MAX_BATCH_BYTES = 120_000;
+    /** Default number of async requests that may wait for a dispatcher thread */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    /** Default number of async requests awaiting a response at the same time */
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 64;
+    /** Default number of attempts per request, including the first one */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    /** Default maximum number of retries per first attempt */
+    public static final double DEFAULT_RETRY_BUDGET_RATIO = 0.1;
+    /** Default probability of suppressing an event that is not a duplicate */
+    public static final double DEFAULT_DEDUPLICATION_FALSE_POSITIVE_RATE = 0.001;
+    /** Default time without events after which a client's next event starts a new session, as in GA4 */
+    public static final Duration DEFAULT_SESSION_TIMEOUT = Duration.ofMinutes(30);
+    /** Default minimum body size in bytes for gzip compression */
+    public static final int DEFAULT_GZIP_MIN_SIZE = 1024;
+    private static final int DISPATCHER_THREADS = 2;
+    private static final int RETRY_BUDGET_RESERVE = 10;
+    private static final int RETRY_BUDGET_MAX = 100;
     private static final Logger LOG = Logger.getLogger(GA4Analytics.class.getName());
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
-    private final String measurementId;
-    private final String apiSecret;
+    private final ClientIdRegistry clientIdRegistry;
     private final String clientId;
-    private final String appName;
-    private final String appVersion;
-    private final String userAgent;
-    private final boolean debugMode;
-    private final String validationBehavior;
-    private final ExecutorService executor;
-    private final HttpClient httpClient;
-    private final Map<String, Object> sessionParams;
     private final SystemInfoProvider systemInfoProvider;
+    // Derived from the system info provider on first use unless set on the builder
+    private volatile String userAgent;
+    private final boolean debugMode;
+    private final BoundedDispatcher dispatcher;
+    private final ExecutorService ownedExecutor;
+    // Created on first use, since building an HttpClient in a fresh JVM takes hundreds of milliseconds
+    private volatile HttpClient httpClient;
+    private final Executor httpClientExecutor;
+    private final SessionTracker sessionTracker;
+    private final StaticPayload staticPayload;
+    private final PayloadWriter payloadWriter;
+    private final GzipEncoder gzipEncoder;
+    private final int gzipMinSize;
+    private final long maxBlockNanos;
+    private final EventBatcher batcher;
+    private final EventAggregator aggregator;
+    private final Outbox outbox;
+    // The primary destination first, then those added with Builder.withDestination
+    private final List<DestinationQueue> destinationQueues;
+    private final List<Destination> destinations;
+    private final GA4Metrics metrics;
+    private final EventSampler sampler;
+    private final DuplicateFilter duplicateFilter;
+    private final EventValidator eventValidator;
+    private final URI debugCollectUri;
+    private final ShapeValidator shapeValidator;
+    private final InvalidShapePolicy invalidShapePolicy;
+    private final RetryPolicy retryPolicy;
+    private final ScheduledThreadPoolExecutor retryScheduler;
+    private final AtomicLong batchIds = new AtomicLong();
+    // Async batches that are queued, in flight or awaiting a retry; flush and shutdown wait for them
+    private final Set<OutgoingBatch> activeBatches = ConcurrentHashMap.newKeySet();
+    private final Path spillFile;
+    // While flushing, retries that would start after this System.nanoTime() deadline are not scheduled
+    private volatile boolean retryDeadlineSet;
+    private volatile long retryDeadlineNanos;
+    // Set by shutdown; later asynchronous sends fail before they are counted or journaled
+    private volatile boolean shutdown;
+    private final Map<String, Duration> startupPhases;
+    private final Duration startupTime;
 
     private GA4Analytics(Builder builder) {
-        this.measurementId = builder.measurementId;
-        this.apiSecret = builder.apiSecret;
-        this.clientId = builder.clientId != null ? builder.clientId : generateClientId();
-        this.appName = builder.appName;
-        this.appVersion = builder.appVersion;
+        long startNanos = System.nanoTime();
+        Map<String, Duration> phases = new LinkedHashMap<>();
+        // Probe the platform in the background; the first payload or request waits for it if needed
+        this.systemInfoProvider = builder.systemInfoProvider != null
+                ? builder.systemInfoProvider
+                : new CachingSystemInfoProvider(new ApacheCommonsSystemInfoProvider());
         this.userAgent = builder.userAgent;
         this.debugMode = builder.debugMode;
-        this.validationBehavior = builder.validationBehavior;
-        this.systemInfoProvider = builder.systemInfoProvider != null ? builder.systemInfoProvider : new ApacheCommonsSystemInfoProvider();
-        this.executor = Executors.newFixedThreadPool(2);
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
-        this.sessionParams = new HashMap<>();
+        String endpoint = builder.endpointBaseUrl + (debugMode ? DEBUG_COLLECT_PATH : COLLECT_PATH);
+        this.staticPayload = new StaticPayload(objectMapper, systemInfoProvider, builder.appName, builder.appVersion,
+                endpoint, builder.measurementId, builder.apiSecret);
+        long phaseStartNanos = endPhase(phases, "systemInfo", startNanos);
+        this.clientIdRegistry = builder.clientIdRegistryFile != null ? openClientIdRegistry(builder) : null;
+        this.clientId = builder.clientId != null ? builder.clientId : defaultClientId();
+        this.outbox = builder.outboxDirectory != null ? openOutbox(builder) : null;
+        phaseStartNanos = endPhase(phases, "storage", phaseStartNanos);
+        Executor executor = builder.executor;
+        if (executor == null && builder.virtualThreads) {
+            if (VirtualThreads.isSupported()) {
+                executor = VirtualThreads.newThreadPerTaskExecutor("ga4-sender-");
+            } else {
+                LOG.warning("Virtual threads require Java 21 or later, using the platform dispatcher threads");
+            }
+        }
+        this.ownedExecutor = executor != builder.executor ? (ExecutorService) executor : null;
+        this.dispatcher = executor != null
+                ? new BoundedDispatcher(executor, builder.maxInFlightRequests, builder.queueCapacity,
+                        builder.overflowPolicy, builder.maxBlockTime)
+                : new BoundedDispatcher(DISPATCHER_THREADS, builder.queueCapacity,
+                        builder.overflowPolicy, builder.maxBlockTime);
+        List<DestinationQueue> destinationQueues = new ArrayList<>();
+        destinationQueues.add(newDestinationQueue(builder, builder.measurementId, staticPayload.getCollectUri()));
+        for (Map.Entry<String, String> destination : builder.destinations.entrySet()) {
+            destinationQueues.add(newDestinationQueue(builder, destination.getKey(),
+                    StaticPayload.collectUri(endpoint, destination.getKey(), destination.getValue())));
+        }
+        this.destinationQueues = Collections.unmodifiableList(destinationQueues);
+        this.destinations = destinationQueues.stream().map(DestinationQueue::getDestination)
+                .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+        this.duplicateFilter = builder.deduplicationWindow != null
+                ? new DuplicateFilter(builder.deduplicationWindow, builder.deduplicationExpectedEvents,
+                        DEFAULT_DEDUPLICATION_FALSE_POSITIVE_RATE)
+                : null;
+        this.metrics = new GA4Metrics(builder.metricsListeners, dispatcher::getQueueDepth,
+                () -> destinationQueues.stream().mapToInt(DestinationQueue::getInFlightRequests).sum(),
+                duplicateFilter != null ? duplicateFilter::getFalsePositiveRate : () -> 0.0);
+        if (builder.jmx) {
+            metrics.registerMBean(builder.measurementId);
+        }
+        this.retryPolicy = new RetryPolicy(builder.maxAttempts, builder.initialRetryBackoff, builder.maxRetryBackoff);
+        this.retryScheduler = builder.maxAttempts > 1 ? new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ga4-retry");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.httpClient = builder.httpClient;
+        this.httpClientExecutor = executor;
+        phaseStartNanos = endPhase(phases, "dispatcher", phaseStartNanos);
+        // Adds session_id and engagement_time_msec to the parameters of each event
+        this.sessionTracker = new SessionTracker(builder.sessionTimeout);
+        // Serialization buffers and Deflaters are pooled for as many sends as run at once
+        int concurrentSends = executor != null ? builder.maxInFlightRequests : DISPATCHER_THREADS;
+        this.payloadWriter = new PayloadWriter(objectMapper, staticPayload, builder.validationBehavior,
+                concurrentSends);
+        this.gzipEncoder = builder.gzip ? new GzipEncoder(Deflater.DEFAULT_COMPRESSION, concurrentSends) : null;
+        this.gzipMinSize = builder.gzipMinSize;
+        this.maxBlockNanos = builder.maxBlockTime.toNanos();
 
-        // Add default session parameters
-        sessionParams.put("session_id", System.currentTimeMillis() / 1000);
-        sessionParams.put("engagement_time_msec", "100");
+        this.debugCollectUri = StaticPayload.collectUri(builder.endpointBaseUrl + DEBUG_COLLECT_PATH,
+                builder.measurementId, builder.apiSecret);
+        // In debug mode every event is validated already
+        this.shapeValidator = builder.shapeValidationMaxShapes > 0 && !debugMode
+                ? new ShapeValidator(builder.shapeValidationMaxShapes, this::validateOnDebugEndpoint)
+                : null;
+        this.invalidShapePolicy = builder.invalidShapePolicy;
+
+        this.sampler = builder.hasSampling()
+                ? new EventSampler(builder.defaultSampleRate, builder.sampleRates, builder.globalRateLimit,
+                        builder.rateLimits)
+                : null;
+
+        // Leave room for the session parameters and the sample_rate parameter added to every event. Rollups,
+        // which carry no sample_rate, are validated with their value and aggregate_count parameters.
+        this.eventValidator = builder.validationAction != null
+                ? new EventValidator(builder.validationAction,
+                        EventValidator.MAX_PARAMS - SessionTracker.PARAM_COUNT - (sampler != null ? 1 : 0))
+                : null;
+
+        this.batcher = builder.batching
+                ? new EventBatcher(builder.maxBatchSize, builder.maxBatchLinger, builder.maxBatchBytes,
+                        this::dispatch)
+                : null;
+
+        this.aggregator = builder.aggregationInterval != null
+                ? new EventAggregator(builder.aggregationInterval, this::sendRollup)
+                : null;
 
         if (debugMode) {
             LOG.info("GA4Analytics initialized in DEBUG mode - events will be validated but not recorded");
         }
+        phaseStartNanos = endPhase(phases, "pipeline", phaseStartNanos);
+
+        if (outbox != null) {
+            // Resend events that were not delivered before the previous shutdown
+            outbox.replay(this::enqueue);
+        }
+        this.spillFile = builder.spillFile;
+        if (spillFile != null) {
+            replaySpillFile();
+        }
+        endPhase(phases, "replay", phaseStartNanos);
+        this.startupPhases = phases;
+        this.startupTime = Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the time since the start of a construction phase
+     *
+     * @return The start of the next phase
+     */
+    private static long endPhase(Map<String, Duration> phases, String name, long phaseStartNanos) {
+        long nowNanos = System.nanoTime();
+        phases.put(name, Duration.ofNanos(nowNanos - phaseStartNanos));
+        return nowNanos;
+    }
+
+    private String userAgent() {
+        String current = userAgent;
+        if (current == null) {
+            // Threads racing here compute the same value
+            current = defaultUserAgent(systemInfoProvider);
+            userAgent = current;
+        }
+        return current;
+    }
+
+    private static String defaultUserAgent(SystemInfoProvider provider) {
+        return String.format("Java/%s (%s %s; %s)",
+                System.getProperty("java.version"),
+                provider.getOsName(),
+                provider.getOsVersion(),
+                System.getProperty("os.arch"));
+    }
+
+    private void replaySpillFile() {
+        List<PendingEvent> spilled;
+        try {
+            spilled = SpillFile.take(spillFile);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not read GA4 spill file " + spillFile, e);
+            return;
+        }
+        for (PendingEvent event : spilled) {
+            enqueue(outbox != null
+                    ? journal(event.getClientId(), event.getName(), event.getParams())
+                    : event);
+        }
+        if (!spilled.isEmpty()) {
+            LOG.log(Level.INFO, "Resending {0} GA4 events spilled by the previous shutdown", spilled.size());
+        }
+    }
+
+    private DestinationQueue newDestinationQueue(Builder builder, String measurementId, URI collectUri) {
+        return new DestinationQueue(measurementId, collectUri, builder.maxInFlightRequests,
+                new RetryBudget(builder.retryBudgetRatio, RETRY_BUDGET_RESERVE, RETRY_BUDGET_MAX),
+                builder.queueCapacity, builder.overflowPolicy, dispatcher::execute);
+    }
+
+    private HttpClient httpClient() {
+        HttpClient current = httpClient;
+        if (current == null) {
+            synchronized (this) {
+                current = httpClient;
+                if (current == null) {
+                    current = buildHttpClient(httpClientExecutor);
+                    httpClient = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static HttpClient buildHttpClient(Executor executor) {
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10));
+        if (executor != null) {
+            // Handle responses on the same executor as the send tasks
+            httpClientBuilder.executor(executor);
+        }
+        return httpClientBuilder.build();
+    }
+
+    private static ClientIdRegistry openClientIdRegistry(Builder builder) {
+        try {
+            return new ClientIdRegistry(builder.clientIdRegistryFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open GA4 client ID registry " + builder.clientIdRegistryFile, e);
+        }
+    }
+
+    /**
+     * @return The installation's client ID from the registry, or a new one if there is no registry
+     */
+    private String defaultClientId() {
+        if (clientIdRegistry == null) {
+            return ClientIdRegistry.generateClientId();
+        }
+        try {
+            return clientIdRegistry.getOrCreate(ClientIdRegistry.INSTALLATION_KEY);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not read GA4 client ID registry, using a new client ID", e);
+            return ClientIdRegistry.generateClientId();
+        }
+    }
+
+    private static Outbox openOutbox(Builder builder) {
+        try {
+            return new Outbox(builder.outboxDirectory, builder.outboxSegmentSize, builder.outboxSyncInterval);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open GA4 outbox in " + builder.outboxDirectory, e);
+        }
     }
 
     public static Builder builder() {
@@ -76,6 +379,16 @@ public class GA4Analytics {
         return new EventBuilder(this);
     }
 
+    /**
+     * Returns this thread's reusable event builder, reset to an empty event. Sending it hands its parameters
+     * to the event without copying. The builder must not be kept or shared once sent, and is the same
+     * instance on every call from a platform thread, for every GA4Analytics instance, so describe and send one
+     * event at a time. Virtual threads get a new builder on every call.
+     */
+    public EventBuilder pooledEvent() {
+        return EventBuilder.pooled(this);
+    }
+
     public ScreenViewBuilder screenView() {
         return new ScreenViewBuilder(this);
     }
@@ -84,139 +397,864 @@ public class GA4Analytics {
         return new PageViewBuilder(this);
     }
 
-    public void sendEvent(String eventName, Map<String, Object> params, boolean async) {
-        if (async) {
-            executor.submit(() -> doSendEvent(eventName, params));
-        } else {
-            doSendEvent(eventName, params);
+    /**
+     * Sends an event to GA4.
+     * Synchronous sends return once the request has completed; asynchronous sends return immediately.
+     *
+     * @return Completed with the delivery result of the request carrying the event, or exceptionally
+     * if the event was dropped or could not be sent. Events discarded by sampling or rate limits complete
+     * with an {@link EventDroppedException}, as do repeats suppressed by deduplication and events dropped by
+     * {@link Builder#withEventValidation(ValidationAction)} or {@link Builder#withShapeValidation(int, InvalidShapePolicy)}.
+     * Asynchronous sends after shutdown fail with a {@link RejectedExecutionException}.
+     */
+    public CompletableFuture<DeliveryResult> sendEvent(String eventName, Map<String, Object> params, boolean async) {
+        return sendEvent(clientId, eventName, null, params, async);
+    }
+
+    /**
+     * Sends an event whose parameters are held in primitive slots, avoiding boxing and map copies.
+     * The parameters belong to the library once passed and must not be modified or reused.
+     *
+     * @see #sendEvent(String, Map, boolean)
+     */
+    public CompletableFuture<DeliveryResult> sendEvent(String eventName, EventParams params, boolean async) {
+        return sendEvent(clientId, eventName, params, async);
+    }
+
+    /**
+     * Sends an event on behalf of another client, e.g. a user of a server-side application. Each client
+     * has its own session, tracked by this instance.
+     *
+     * @see #sendEvent(String, EventParams, boolean)
+     */
+    public CompletableFuture<DeliveryResult> sendEvent(String clientId, String eventName, EventParams params,
+                                                       boolean async) {
+        return sendEvent(clientId, eventName, params, null, async);
+    }
+
+    /**
+     * Runs an event through sampling, validation, deduplication and session tracking, then sends it
+     *
+     * @param params    The event's parameters, or null to convert mapParams once the event is kept
+     * @param mapParams Parameters passed as a map, may be null
+     */
+    private CompletableFuture<DeliveryResult> sendEvent(String clientId, String eventName, EventParams params,
+                                                        Map<String, Object> mapParams, boolean async) {
+        if (clientId == null || clientId.isEmpty()) {
+            throw new IllegalArgumentException("clientId must not be empty");
+        }
+        if (async && shutdown) {
+            return rejectAfterShutdown();
+        }
+        // Sampled-out and rate-limited events are dropped before any other work
+        double sampleRate = 1.0;
+        if (sampler != null) {
+            SamplingDecision decision = sampler.decide(eventName);
+            if (decision == SamplingDecision.SAMPLED_OUT) {
+                metrics.recordSampledOut(1);
+                return CompletableFuture.failedFuture(
+                        new EventDroppedException(eventName, EventDroppedException.Reason.SAMPLED_OUT));
+            }
+            if (decision == SamplingDecision.RATE_LIMITED) {
+                metrics.recordRateLimited(1);
+                return CompletableFuture.failedFuture(
+                        new EventDroppedException(eventName, EventDroppedException.Reason.RATE_LIMITED));
+            }
+            sampleRate = sampler.getSampleRate(eventName);
+        }
+        if (params == null) {
+            params = mapParams != null ? EventParams.of(mapParams) : new EventParams(0);
+        }
+        if (eventValidator != null) {
+            String validName = eventValidator.apply(eventName, params);
+            if (validName == null) {
+                metrics.recordInvalid(1);
+                return CompletableFuture.failedFuture(
+                        new EventDroppedException(eventName, EventDroppedException.Reason.INVALID));
+            }
+            eventName = validName;
         }
+        if (duplicateFilter != null && duplicateFilter.isDuplicate(clientId, eventName, params)) {
+            metrics.recordDeduplicated(1);
+            return CompletableFuture.failedFuture(
+                    new EventDroppedException(eventName, EventDroppedException.Reason.DUPLICATE));
+        }
+        if (sampleRate < 1.0) {
+            // Lets reports re-weight sampled events by 1 / sample_rate
+            params.putDouble(EventSampler.SAMPLE_RATE_PARAM, sampleRate);
+        }
+        if (shapeValidator != null && shapeValidator.check(eventName, params) == ShapeVerdict.INVALID
+                && invalidShapePolicy == InvalidShapePolicy.REJECT) {
+            metrics.recordInvalidShape(1);
+            return CompletableFuture.failedFuture(
+                    new EventDroppedException(eventName, EventDroppedException.Reason.INVALID_SHAPE));
+        }
+        sessionTracker.track(clientId, params);
+        if (!async) {
+            PendingEvent event = new PendingEvent(clientId, eventName, params, PendingEvent.NO_OUTBOX_POSITION);
+            startDeliveries(new OutgoingBatch(batchIds.incrementAndGet(), clientId, Collections.singletonList(event)),
+                    false);
+            try {
+                event.getResult().join();
+            } catch (CompletionException | CancellationException e) {
+                // Already logged by finishDelivery, the failure is reported through the returned future
+            }
+            return event.getResult();
+        }
+        PendingEvent event = outbox != null
+                ? journal(clientId, eventName, params)
+                : new PendingEvent(clientId, eventName, params, PendingEvent.NO_OUTBOX_POSITION);
+        enqueue(event);
+        return event.getResult();
+    }
+
+    /**
+     * Sends a counter-style event. With {@link Builder#withAggregation(Duration)}, events with the same name
+     * and parameters are coalesced and sent once per interval with the summed "value" and the number of
+     * events; otherwise the event is sent asynchronously like any other.
+     *
+     * @return Completed with the delivery result of the rollup carrying the event, shared by all coalesced events
+     */
+    public CompletableFuture<DeliveryResult> sendAggregatedEvent(String eventName, Map<String, Object> params) {
+        if (aggregator == null) {
+            return sendEvent(eventName, params, true);
+        }
+        if (shutdown) {
+            return rejectAfterShutdown();
+        }
+        metrics.recordAggregated(1);
+        return aggregator.add(clientId, eventName, params != null ? params : Collections.emptyMap());
+    }
+
+    private CompletableFuture<DeliveryResult> sendRollup(String clientId, String eventName, Map<String, Object> params) {
+        // The rollup's value and count come first, so that truncating to the parameter limit drops dimensions instead
+        EventParams eventParams = new EventParams(params.size())
+                .put(EventAggregator.VALUE_PARAM, params.get(EventAggregator.VALUE_PARAM))
+                .put(EventAggregator.COUNT_PARAM, params.get(EventAggregator.COUNT_PARAM));
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            String key = param.getKey();
+            if (!key.equals(EventAggregator.VALUE_PARAM) && !key.equals(EventAggregator.COUNT_PARAM)) {
+                eventParams.put(key, param.getValue());
+            }
+        }
+        if (eventValidator != null) {
+            String validName = eventValidator.apply(eventName, eventParams);
+            if (validName == null) {
+                metrics.recordInvalid(1);
+                return CompletableFuture.failedFuture(
+                        new EventDroppedException(eventName, EventDroppedException.Reason.INVALID));
+            }
+            eventName = validName;
+        }
+        sessionTracker.track(clientId, eventParams);
+        PendingEvent event = outbox != null
+                ? journal(clientId, eventName, eventParams)
+                : new PendingEvent(clientId, eventName, eventParams, PendingEvent.NO_OUTBOX_POSITION);
+        enqueue(event);
+        return event.getResult();
+    }
+
+    private void enqueue(PendingEvent event) {
+        if (batcher == null) {
+            metrics.recordEnqueued(1);
+            dispatch(event.getClientId(), Collections.singletonList(event));
+            return;
+        }
+        try {
+            batcher.add(event);
+        } catch (IllegalStateException e) {
+            // Raced with shutdown closing the batcher; a journaled event stays in the outbox for the next start
+            event.getResult().completeExceptionally(new RejectedExecutionException("GA4Analytics is shut down", e));
+            return;
+        }
+        metrics.recordEnqueued(1);
+    }
+
+    private static CompletableFuture<DeliveryResult> rejectAfterShutdown() {
+        return CompletableFuture.failedFuture(new RejectedExecutionException("GA4Analytics is shut down"));
     }
 
-    private void doSendEvent(String eventName, Map<String, Object> eventParams) {
+    /**
+     * Writes the event to the outbox before it is dispatched, so that it survives a crash or an outage
+     */
+    private PendingEvent journal(String clientId, String eventName, EventParams params) {
         try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("client_id", clientId);
-
-            // Add validation behavior if specified
-            if (validationBehavior != null && !validationBehavior.isEmpty()) {
-                payload.put("validation_behavior", validationBehavior);
-            }
-
-            // Add user properties
-            Map<String, Object> userProperties = new HashMap<>();
-            userProperties.put("app_name", createValueMap(appName));
-            userProperties.put("app_version", createValueMap(appVersion));
-            userProperties.put("os_name", createValueMap(systemInfoProvider.getOsName()));
-            userProperties.put("os_version", createValueMap(systemInfoProvider.getOsVersion()));
-            payload.put("user_properties", userProperties);
-
-            // Add device info
-            Map<String, Object> deviceInfo = new HashMap<>();
-            addIfNotNull(deviceInfo, "category", systemInfoProvider.getDeviceCategory());
-            addIfNotNull(deviceInfo, "language", systemInfoProvider.getLanguage());
-            addIfNotNull(deviceInfo, "screen_resolution", systemInfoProvider.getScreenResolution());
-            addIfNotNull(deviceInfo, "operating_system", systemInfoProvider.getOsName());
-            addIfNotNull(deviceInfo, "operating_system_version", systemInfoProvider.getOsVersion());
-            addIfNotNull(deviceInfo, "model", systemInfoProvider.getDeviceModel());
-            addIfNotNull(deviceInfo, "brand", systemInfoProvider.getDeviceBrand());
-            addIfNotNull(deviceInfo, "browser", systemInfoProvider.getBrowser());
-            addIfNotNull(deviceInfo, "browser_version", systemInfoProvider.getBrowserVersion());
-
-            if (!deviceInfo.isEmpty()) {
-                payload.put("device", deviceInfo);
-            }
-
-            // Create event
-            Map<String, Object> event = new HashMap<>();
-            event.put("name", eventName);
-
-            // Merge session params and event params
-            Map<String, Object> params = new HashMap<>(sessionParams);
-            if (eventParams != null) {
-                params.putAll(eventParams);
-            }
-            event.put("params", params);
-
-            payload.put("events", new Object[]{event});
-
-            // Prepare JSON payload
-            String jsonPayload = objectMapper.writeValueAsString(payload);
-
-            // Build URI with query parameters (use debug endpoint if in debug mode)
-            String endpoint = debugMode ? GA4_DEBUG_ENDPOINT : GA4_ENDPOINT;
-            String uri = endpoint + "?measurement_id=" + measurementId + "&api_secret=" + apiSecret;
-
-            // Build and send HTTP request
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(uri))
-                    .timeout(Duration.ofSeconds(10))
-                    .header("Content-Type", "application/json")
-                    .header("User-Agent", userAgent)
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            // Handle response
-            if (debugMode) {
-                // In debug mode, log the validation response
-                LOG.log(Level.INFO, "GA4 Debug Response (event: {0}): {1}",
-                        new Object[]{eventName, response.body()});
-
-                // Parse and log validation messages if present
+            return new PendingEvent(clientId, eventName, params, outbox.append(clientId, eventName,
+                    params != null ? params.toMap() : null));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not write GA4 event to outbox, sending without durability: " + eventName, e);
+            return new PendingEvent(clientId, eventName, params, PendingEvent.NO_OUTBOX_POSITION);
+        }
+    }
+
+    private void dispatch(String clientId, List<PendingEvent> events) {
+        OutgoingBatch batch = new OutgoingBatch(batchIds.incrementAndGet(), clientId, events);
+        activeBatches.add(batch);
+        try {
+            dispatch(batch);
+        } catch (RejectedExecutionException e) {
+            // E.g. after shutdown; fail the events instead of leaving flush and shutdown waiting for them
+            LOG.log(Level.WARNING, "GA4 dispatcher rejected events: " + eventNames(events), e);
+            metrics.recordDropped(events.size());
+            failAll(events, e);
+            settle(batch);
+        }
+    }
+
+    private void dispatch(OutgoingBatch batch) {
+        dispatcher.dispatch(batch.events.size(), () -> startDeliveries(batch, true),
+                () -> {
+                    metrics.recordDropped(batch.events.size());
+                    failAll(batch.events, new RejectedExecutionException("GA4 dispatch queue is full"));
+                    settle(batch);
+                });
+    }
+
+    /**
+     * Forgets a batch whose events' futures are complete, waking up flush and shutdown once none is left
+     */
+    private void settle(OutgoingBatch batch) {
+        if (activeBatches.remove(batch) && activeBatches.isEmpty()) {
+            synchronized (activeBatches) {
+                activeBatches.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Serializes and compresses the batch once, then sends the same body to every destination
+     *
+     * @param async Whether the batch runs on a dispatcher thread, with in-flight limits and retries
+     */
+    private void startDeliveries(OutgoingBatch batch, boolean async) {
+        if (batch.abandoned) {
+            return;
+        }
+        List<Delivery> deliveries = new ArrayList<>(destinations.size());
+        try {
+            // Stream the JSON payload directly to bytes
+            long serializeStartNanos = System.nanoTime();
+            byte[] body = payloadWriter.write(batch.clientId, batch.events);
+            metrics.recordSerialized(System.nanoTime() - serializeStartNanos, body.length);
+
+            // Compress bodies large enough to benefit from it
+            boolean gzip = gzipEncoder != null && body.length >= gzipMinSize;
+            if (gzip) {
+                body = gzipEncoder.encode(body);
+            }
+            for (DestinationQueue destination : destinationQueues) {
+                deliveries.add(new Delivery(batch, destination, deliveries.isEmpty(),
+                        buildRequest(destination, body, gzip), body.length));
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to send GA4 event: " + eventNames(batch.events), e);
+            metrics.recordFailed(batch.events.size(), MetricsListener.NO_STATUS);
+            failAll(batch.events, e);
+            settle(batch);
+            return;
+        }
+        batch.openDeliveries.set(deliveries.size());
+        if (!async) {
+            for (Delivery delivery : deliveries) {
+                sendAttempt(delivery, false);
+            }
+            return;
+        }
+        // Queue the other destinations first, the primary may wait for an in-flight slot
+        for (Delivery delivery : deliveries.subList(1, deliveries.size())) {
+            sendWithinLimit(delivery);
+        }
+        sendWithinLimit(deliveries.get(0));
+    }
+
+    private HttpRequest buildRequest(DestinationQueue destination, byte[] body, boolean gzip) {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(destination.getDestination().getCollectUri())
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .header("User-Agent", userAgent());
+        if (gzip) {
+            requestBuilder.header("Content-Encoding", "gzip");
+        }
+        return requestBuilder
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    /**
+     * Starts the request once the destination has a free in-flight slot, without waiting for the response.
+     * The primary destination waits for its slot on the dispatcher thread. Other destinations queue the
+     * request in their own backlog and never block, so a slow mirror cannot hold back the primary.
+     */
+    private void sendWithinLimit(Delivery delivery) {
+        if (delivery.batch.abandoned) {
+            return;
+        }
+        DestinationQueue destination = delivery.destination;
+        if (!delivery.primary) {
+            destination.submit(delivery.batch.events.size(), () -> sendQueued(delivery), () -> {
+                LOG.log(Level.FINE, "GA4 destination {0} backlog is full, skipping: {1}", new Object[]{
+                        destination.getDestination().getMeasurementId(), eventNames(delivery.batch.events)});
+                closeDelivery(delivery);
+            });
+            return;
+        }
+        try {
+            if (!BoundedDispatcher.isCallerRunning()) {
+                destination.acquire();
+            } else if (!destination.tryAcquire(maxBlockNanos)) {
+                // The caller is running the send for a full queue and must not wait for a whole request
+                dropDelivery(delivery, new RejectedExecutionException("GA4 in-flight limit reached"));
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finishDelivery(delivery, null, e);
+            return;
+        }
+        sendQueued(delivery);
+    }
+
+    // Runs holding an in-flight slot of the delivery's destination
+    private void sendQueued(Delivery delivery) {
+        DestinationQueue destination = delivery.destination;
+        if (delivery.batch.abandoned) {
+            destination.release();
+            return;
+        }
+        sendAttempt(delivery, true).whenComplete((result, error) -> destination.release());
+    }
+
+    /**
+     * Sends one attempt of a delivery. Unless the attempt is retried, the outcome finishes the delivery.
+     *
+     * @param retry Whether retryable failures are rescheduled according to the retry policy
+     * @return Completed with the outcome of this attempt
+     */
+    private CompletableFuture<DeliveryResult> sendAttempt(Delivery delivery, boolean retry) {
+        List<PendingEvent> pendingEvents = delivery.batch.events;
+        int attempt = ++delivery.attempts;
+        if (retry && attempt == 1) {
+            delivery.destination.getRetryBudget().onRequest();
+        }
+        long startNanos = System.nanoTime();
+        CompletableFuture<DeliveryResult> outcome = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<String>> exchange;
+        try {
+            exchange = httpClient().sendAsync(delivery.request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            // A client that throws instead of failing the future still finishes the delivery and frees its slot
+            exchange = CompletableFuture.failedFuture(e);
+        }
+        exchange.whenComplete((response, error) -> {
+            long roundTripNanos = System.nanoTime() - startNanos;
+            Throwable cause = error != null ? unwrap(error) : null;
+            DeliveryResult result = null;
+            if (response != null) {
+                metrics.recordRequestCompleted(response.statusCode(), delivery.bodySize, roundTripNanos);
+                handleResponse(pendingEvents, response);
+                result = new DeliveryResult(delivery.batch.id, response.statusCode(),
+                        Duration.ofNanos(roundTripNanos), pendingEvents.size(), attempt);
+            } else {
+                metrics.recordRequestFailed(cause, roundTripNanos);
+            }
+            if (!retry || !scheduleRetry(delivery, response, cause)) {
+                finishDelivery(delivery, result, cause);
+            }
+            if (cause != null) {
+                outcome.completeExceptionally(cause);
+            } else {
+                outcome.complete(result);
+            }
+        });
+        return outcome;
+    }
+
+    /**
+     * @return true if a retry of the delivery has been scheduled
+     */
+    private boolean scheduleRetry(Delivery delivery, HttpResponse<String> response, Throwable error) {
+        if (retryScheduler == null) {
+            return false;
+        }
+        boolean retryable = response != null
+                ? RetryPolicy.isRetryableStatus(response.statusCode())
+                : RetryPolicy.isRetryableError(error);
+        if (!retryable) {
+            return false;
+        }
+        List<PendingEvent> events = delivery.batch.events;
+        Duration retryAfter = response != null
+                ? RetryPolicy.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null), Instant.now())
+                : null;
+        long delayNanos = retryPolicy.retryDelayNanos(delivery.attempts, retryAfter);
+        if (delayNanos == RetryPolicy.NO_RETRY) {
+            return false;
+        }
+        if (retryDeadlineSet && System.nanoTime() + delayNanos - retryDeadlineNanos > 0) {
+            LOG.log(Level.FINE, "GA4 retry would pass the flush deadline, not retrying: {0}", eventNames(events));
+            return false;
+        }
+        if (!delivery.destination.getRetryBudget().tryAcquireRetry()) {
+            LOG.log(Level.FINE, "GA4 retry budget of {0} exhausted, not retrying: {1}",
+                    new Object[]{delivery.destination.getDestination().getMeasurementId(), eventNames(events)});
+            return false;
+        }
+        LOG.log(Level.FINE, "Retrying GA4 request in {0}ms (attempt {1}): {2}",
+                new Object[]{TimeUnit.NANOSECONDS.toMillis(delayNanos), delivery.attempts + 1, eventNames(events)});
+        try {
+            retryScheduler.schedule(() -> {
+                if (delivery.batch.abandoned) {
+                    return;
+                }
+                if (!delivery.primary) {
+                    sendWithinLimit(delivery);
+                    return;
+                }
                 try {
-                    Map<String, Object> debugResponse = objectMapper.readValue(response.body(), Map.class);
-                    if (debugResponse.containsKey("validationMessages")) {
-                        Object validationMessages = debugResponse.get("validationMessages");
-                        if (validationMessages instanceof java.util.List) {
-                            java.util.List<?> messages = (java.util.List<?>) validationMessages;
-                            if (!messages.isEmpty()) {
-                                LOG.log(Level.WARNING, "GA4 Validation Messages for event ''{0}'': {1}",
-                                        new Object[]{eventName, objectMapper.writeValueAsString(messages)});
-                            } else {
-                                LOG.log(Level.INFO, "GA4 Validation passed for event ''{0}'' - no validation messages",
-                                        eventName);
-                            }
+                    dispatcher.dispatch(events.size(), () -> sendWithinLimit(delivery),
+                            () -> dropDelivery(delivery, new RejectedExecutionException("GA4 dispatch queue is full")));
+                } catch (RejectedExecutionException e) {
+                    finishDelivery(delivery, null, e);
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+            metrics.recordRetryScheduled(delivery.attempts + 1);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reports the final outcome of a delivery. The primary destination's outcome completes the events'
+     * futures; other destinations only count theirs.
+     */
+    private void finishDelivery(Delivery delivery, DeliveryResult result, Throwable error) {
+        List<PendingEvent> events = delivery.batch.events;
+        if (delivery.primary) {
+            complete(delivery.batch, result, error);
+        } else if (error != null) {
+            LOG.log(Level.WARNING, "Failed to send GA4 event to "
+                    + delivery.destination.getDestination().getMeasurementId() + ": " + eventNames(events), error);
+            delivery.destination.recordFailed(events.size());
+        } else if (result.isSuccess()) {
+            delivery.destination.recordSent(events.size());
+        } else {
+            LOG.log(Level.WARNING, "GA4 request to " + delivery.destination.getDestination().getMeasurementId()
+                    + " failed with code: " + result.getStatusCode());
+            delivery.destination.recordFailed(events.size());
+        }
+        closeDelivery(delivery);
+    }
+
+    private void dropDelivery(Delivery delivery, Throwable error) {
+        List<PendingEvent> events = delivery.batch.events;
+        if (delivery.primary) {
+            metrics.recordDropped(events.size());
+            failAll(events, error);
+        } else {
+            delivery.destination.recordFailed(events.size());
+        }
+        closeDelivery(delivery);
+    }
+
+    /**
+     * Settles the batch once every destination is done with it. Journaled events stay in the outbox until
+     * then, so a crash before the last destination has them sends them again on the next start.
+     */
+    private void closeDelivery(Delivery delivery) {
+        OutgoingBatch batch = delivery.batch;
+        if (batch.openDeliveries.decrementAndGet() == 0) {
+            if (outbox != null && batch.acknowledge) {
+                for (PendingEvent event : batch.events) {
+                    outbox.acknowledge(event.getOutboxPosition());
+                }
+            }
+            settle(batch);
+        }
+    }
+
+    /**
+     * Reports the primary destination's outcome of a batch: logs failures, marks the batch for the outbox
+     * checkpoint and completes the events' futures
+     */
+    private void complete(OutgoingBatch batch, DeliveryResult result, Throwable error) {
+        List<PendingEvent> pendingEvents = batch.events;
+        if (error != null) {
+            LOG.log(Level.WARNING, "Failed to send GA4 event: " + eventNames(pendingEvents), error);
+            metrics.recordFailed(pendingEvents.size(), MetricsListener.NO_STATUS);
+            failAll(pendingEvents, error);
+            return;
+        }
+        if (result.isSuccess()) {
+            metrics.recordSent(pendingEvents.size());
+            long now = System.nanoTime();
+            for (PendingEvent event : pendingEvents) {
+                metrics.recordAcknowledged(now - event.getCreatedNanos());
+            }
+        } else {
+            LOG.log(Level.WARNING, "GA4 request failed with code: " + result.getStatusCode());
+            metrics.recordFailed(pendingEvents.size(), result.getStatusCode());
+        }
+        // Delivered, or rejected in a way that resending cannot fix
+        batch.acknowledge = !RetryPolicy.isRetryableStatus(result.getStatusCode());
+        for (PendingEvent event : pendingEvents) {
+            event.getResult().complete(result);
+        }
+    }
+
+    private void handleResponse(List<PendingEvent> pendingEvents, HttpResponse<String> response) {
+        if (debugMode) {
+            // In debug mode, log the validation response
+            LOG.log(Level.INFO, "GA4 Debug Response (event: {0}): {1}",
+                    new Object[]{eventNames(pendingEvents), response.body()});
+
+            // Parse and log validation messages if present
+            try {
+                Map<String, Object> debugResponse = objectMapper.readValue(response.body(), Map.class);
+                if (debugResponse.containsKey("validationMessages")) {
+                    Object validationMessages = debugResponse.get("validationMessages");
+                    if (validationMessages instanceof java.util.List) {
+                        java.util.List<?> messages = (java.util.List<?>) validationMessages;
+                        if (!messages.isEmpty()) {
+                            LOG.log(Level.WARNING, "GA4 Validation Messages for event ''{0}'': {1}",
+                                    new Object[]{eventNames(pendingEvents), objectMapper.writeValueAsString(messages)});
+                        } else {
+                            LOG.log(Level.INFO, "GA4 Validation passed for event ''{0}'' - no validation messages",
+                                    eventNames(pendingEvents));
                         }
                     }
-                } catch (Exception e) {
-                    LOG.log(Level.FINE, "Could not parse debug response for validation messages", e);
                 }
+            } catch (Exception e) {
+                LOG.log(Level.FINE, "Could not parse debug response for validation messages", e);
             }
+        }
 
+        if (debugMode && (response.statusCode() < 200 || response.statusCode() >= 300)) {
+            LOG.log(Level.WARNING, "GA4 request failed with code: " + response.statusCode() + ", body: " + response.body());
+        }
+    }
+
+    /**
+     * Sends one event to the debug endpoint on behalf of the shape validator
+     *
+     * @return Completed with the descriptions of the validation messages
+     */
+    private CompletableFuture<List<String>> validateOnDebugEndpoint(String eventName, EventParams params) {
+        byte[] body;
+        try {
+            body = payloadWriter.write(clientId, Collections.singletonList(
+                    new PendingEvent(clientId, eventName, params, PendingEvent.NO_OUTBOX_POSITION)));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(debugCollectUri)
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .header("User-Agent", userAgent())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return httpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
             if (response.statusCode() < 200 || response.statusCode() >= 300) {
-                LOG.log(Level.WARNING, "GA4 request failed with code: " + response.statusCode() +
-                        (debugMode ? ", body: " + response.body() : ""));
+                throw new CompletionException(new IOException(
+                        "GA4 debug request failed with code: " + response.statusCode()));
             }
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Failed to send GA4 event: " + eventName, e);
+            List<String> messages = new ArrayList<>();
+            try {
+                for (JsonNode message : objectMapper.readTree(response.body()).path("validationMessages")) {
+                    messages.add(message.path("description").asText(message.toString()));
+                }
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            return messages;
+        });
+    }
+
+    private static void failAll(List<PendingEvent> events, Throwable error) {
+        for (PendingEvent event : events) {
+            event.getResult().completeExceptionally(error);
         }
     }
 
-    private Map<String, String> createValueMap(String value) {
-        Map<String, String> map = new HashMap<>();
-        map.put("value", value);
-        return map;
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
     }
 
-    private void addIfNotNull(Map<String, Object> map, String key, String value) {
-        if (value != null && !value.isEmpty()) {
-            map.put(key, value);
-        }
+    private static String eventNames(List<PendingEvent> events) {
+        return events.stream().map(PendingEvent::getName).collect(Collectors.joining(","));
     }
 
     /**
-     * Generates a client ID in the format required by GA4: <number>.<number>
-     * Uses current timestamp and a random number for uniqueness
+     * @return Number of async events discarded because the dispatch queue was full
      */
-    private static String generateClientId() {
-        long timestamp = System.currentTimeMillis();
-        long random = (long) (Math.random() * 1000000000);
-        return timestamp + "." + random;
+    public long getDroppedEventCount() {
+        return dispatcher.getDroppedEventCount();
     }
 
+    /**
+     * @return Number of async requests waiting to be sent
+     */
+    public int getQueueDepth() {
+        return dispatcher.getQueueDepth();
+    }
+
+    /**
+     * @return The primary destination followed by those added with {@link Builder#withDestination(String, String)}
+     */
+    public List<Destination> getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * @return The registry enabled with {@link Builder#withClientIdRegistry(Path)}, for looking up the stable
+     * client ID of an application user, or null
+     */
+    public ClientIdRegistry getClientIdRegistry() {
+        return clientIdRegistry;
+    }
+
+    /**
+     * @return The shape validator enabled with {@link Builder#withShapeValidation(int, InvalidShapePolicy)},
+     * or null
+     */
+    public ShapeValidator getShapeValidator() {
+        return shapeValidator;
+    }
+
+    /**
+     * @return Time spent constructing this instance, by phase, and the background system info probe time
+     */
+    public StartupTimings getStartupTimings() {
+        Duration systemInfoProbe = systemInfoProvider instanceof CachingSystemInfoProvider
+                ? ((CachingSystemInfoProvider) systemInfoProvider).getProbeTime()
+                : null;
+        return new StartupTimings(startupPhases, startupTime, systemInfoProbe);
+    }
+
+    /**
+     * @return Counters, gauges and latency histograms of this instance
+     */
+    public GA4Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sends buffered rollups and batches, then waits up to the timeout for every async event accepted before
+     * the call to be sent or to fail. Queued batches are sent in parallel, up to the in-flight limit, and
+     * retries that could not start before the deadline are given up.
+     *
+     * @return Events sent and failed while waiting, and events still pending at the deadline
+     */
+    public FlushResult flush(Duration timeout) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + timeout.toNanos();
+        long sentBefore = metrics.getEventsSent();
+        long failedBefore = metrics.getEventsFailed() + metrics.getEventsDropped();
+        shutdown = true;
+        if (aggregator != null) {
+            aggregator.flush();
+        }
+        if (batcher != null) {
+            batcher.flush();
+        }
+        awaitSettled(deadlineNanos);
+        return new FlushResult(metrics.getEventsSent() - sentBefore,
+                metrics.getEventsFailed() + metrics.getEventsDropped() - failedBefore,
+                countEvents(activeBatches), 0, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Stops immediately: queued and in-flight events continue in the background while the process lives.
+     * Use {@link #shutdown(Duration)} to deliver them before exiting. Later asynchronous sends fail with
+     * a {@link RejectedExecutionException} without being counted or written to the outbox.
+     */
     public void shutdown() {
-        executor.shutdown();
+        shutdown = true;
+        if (aggregator != null) {
+            aggregator.close();
+        }
+        if (batcher != null) {
+            batcher.close();
+        }
+        dispatcher.shutdown();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+        if (retryScheduler != null) {
+            retryScheduler.shutdown();
+        }
+        if (outbox != null) {
+            outbox.close();
+        }
+        if (clientIdRegistry != null) {
+            clientIdRegistry.close();
+        }
+        if (gzipEncoder != null) {
+            gzipEncoder.close();
+        }
+        metrics.unregisterMBean();
+    }
+
+    /**
+     * Stops accepting events and waits up to the timeout for buffered, queued and in-flight events to be sent.
+     * Events still pending at the deadline are abandoned: their futures fail with
+     * {@link EventDroppedException.Reason#ABANDONED}, and they are kept for the next start in the outbox
+     * or, with {@link Builder#withSpillFile(Path)}, in the spill file. Delivery stays at-least-once, since an
+     * abandoned request may still reach GA4.
+     *
+     * @return Events sent, failed, abandoned and spilled during shutdown
+     */
+    public FlushResult shutdown(Duration timeout) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + timeout.toNanos();
+        long sentBefore = metrics.getEventsSent();
+        long failedBefore = metrics.getEventsFailed() + metrics.getEventsDropped();
+        shutdown = true;
+        if (aggregator != null) {
+            aggregator.close();
+        }
+        if (batcher != null) {
+            batcher.close();
+        }
+        dispatcher.shutdown();
+        awaitSettled(deadlineNanos);
+
+        List<PendingEvent> abandoned = new ArrayList<>();
+        for (OutgoingBatch batch : activeBatches) {
+            batch.abandoned = true;
+            activeBatches.remove(batch);
+            for (PendingEvent event : batch.events) {
+                // Events already delivered to the primary destination are only pending for the others
+                if (event.getResult().completeExceptionally(
+                        new EventDroppedException(event.getName(), EventDroppedException.Reason.ABANDONED))) {
+                    abandoned.add(event);
+                }
+            }
+        }
+        long sent = metrics.getEventsSent() - sentBefore;
+        long failed = metrics.getEventsFailed() + metrics.getEventsDropped() - failedBefore;
+        long spilled = spill(abandoned);
+
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+        if (retryScheduler != null) {
+            retryScheduler.shutdownNow();
+        }
+        if (outbox != null) {
+            outbox.close();
+        }
+        if (clientIdRegistry != null) {
+            clientIdRegistry.close();
+        }
+        if (gzipEncoder != null) {
+            gzipEncoder.close();
+        }
+        metrics.unregisterMBean();
+        FlushResult result = new FlushResult(sent, failed, abandoned.size(), spilled,
+                Duration.ofNanos(System.nanoTime() - startNanos));
+        if (!abandoned.isEmpty()) {
+            LOG.log(Level.WARNING, "GA4 shutdown deadline passed: {0}", result);
+        }
+        return result;
+    }
+
+    private void awaitSettled(long deadlineNanos) {
+        retryDeadlineNanos = deadlineNanos;
+        retryDeadlineSet = true;
+        try {
+            synchronized (activeBatches) {
+                while (!activeBatches.isEmpty()) {
+                    long remaining = deadlineNanos - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(activeBatches, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            retryDeadlineSet = false;
+        }
+    }
+
+    /**
+     * Keeps abandoned events for the next start: journaled events are still in the outbox, the others
+     * are written to the spill file if one is configured
+     *
+     * @return Number of events kept
+     */
+    private long spill(List<PendingEvent> abandoned) {
+        List<PendingEvent> unjournaled = new ArrayList<>();
+        for (PendingEvent event : abandoned) {
+            if (event.getOutboxPosition() == PendingEvent.NO_OUTBOX_POSITION) {
+                unjournaled.add(event);
+            }
+        }
+        long kept = abandoned.size() - unjournaled.size();
+        if (spillFile == null || unjournaled.isEmpty()) {
+            return kept;
+        }
+        try {
+            SpillFile.write(spillFile, unjournaled);
+            return kept + unjournaled.size();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not write GA4 spill file " + spillFile, e);
+            return kept;
+        }
+    }
+
+    private static long countEvents(Set<OutgoingBatch> batches) {
+        long count = 0;
+        for (OutgoingBatch batch : batches) {
+            count += batch.events.size();
+        }
+        return count;
+    }
+
+    /**
+     * A group of events sent in one request to each destination
+     */
+    private static final class OutgoingBatch {
+        private final long id;
+        private final String clientId;
+        private final List<PendingEvent> events;
+        // Deliveries still queued, in flight or awaiting a retry; the batch settles when none is left
+        private final AtomicInteger openDeliveries = new AtomicInteger();
+        // Set by a shutdown that ran out of time, so that queued sends and retries are skipped
+        private volatile boolean abandoned;
+        // Set once the primary destination's outcome allows removing the events from the outbox
+        private volatile boolean acknowledge;
+
+        private OutgoingBatch(long id, String clientId, List<PendingEvent> events) {
+            this.id = id;
+            this.clientId = clientId;
+            this.events = events;
+        }
+    }
+
+    /**
+     * The request carrying a batch to one destination, possibly sent over several attempts
+     */
+    private static final class Delivery {
+        private final OutgoingBatch batch;
+        private final DestinationQueue destination;
+        private final boolean primary;
+        private final HttpRequest request;
+        private final int bodySize;
+        private int attempts;
+
+        private Delivery(OutgoingBatch batch, DestinationQueue destination, boolean primary, HttpRequest request,
+                         int bodySize) {
+            this.batch = batch;
+            this.destination = destination;
+            this.primary = primary;
+            this.request = request;
+            this.bodySize = bodySize;
+        }
     }
 
     public static class Builder {
@@ -227,8 +1265,45 @@ public class GA4Analytics {
         private String appVersion;
         private String userAgent;
         private boolean debugMode = false;
+        private String endpointBaseUrl = DEFAULT_ENDPOINT_BASE_URL;
         private String validationBehavior;
         private SystemInfoProvider systemInfoProvider;
+        private boolean batching = false;
+        private int maxBatchSize = MAX_EVENTS_PER_REQUEST;
+        private Duration maxBatchLinger = Duration.ofSeconds(1);
+        private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+        private Duration maxBlockTime = Duration.ofMillis(100);
+        private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private Duration initialRetryBackoff = Duration.ofMillis(500);
+        private Duration maxRetryBackoff = Duration.ofSeconds(30);
+        private double retryBudgetRatio = DEFAULT_RETRY_BUDGET_RATIO;
+        private HttpClient httpClient;
+        private Executor executor;
+        private boolean virtualThreads = false;
+        private boolean gzip = false;
+        private int gzipMinSize = DEFAULT_GZIP_MIN_SIZE;
+        private final List<MetricsListener> metricsListeners = new ArrayList<>();
+        private Duration aggregationInterval;
+        private Duration deduplicationWindow;
+        private int deduplicationExpectedEvents;
+        private ValidationAction validationAction;
+        private int shapeValidationMaxShapes;
+        private Duration sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+        private InvalidShapePolicy invalidShapePolicy = InvalidShapePolicy.LOG;
+        private double defaultSampleRate = 1.0;
+        private final Map<String, Double> sampleRates = new HashMap<>();
+        private TokenBucket globalRateLimit;
+        private final Map<String, TokenBucket> rateLimits = new HashMap<>();
+        private boolean jmx = false;
+        private Path outboxDirectory;
+        private int outboxSegmentSize = Outbox.DEFAULT_SEGMENT_SIZE;
+        private Duration outboxSyncInterval = Duration.ofMillis(50);
+        private Path spillFile;
+        private Path clientIdRegistryFile;
+        private final Map<String, String> destinations = new LinkedHashMap<>();
 
         public Builder withMeasurementId(String measurementId) {
             this.measurementId = measurementId;
@@ -265,33 +1340,415 @@ public class GA4Analytics {
             return this;
         }
 
+        /**
+         * Also sends every batch to another GA4 property. The batch is serialized once and sent to all
+         * destinations concurrently; each destination has its own in-flight limit and retry budget.
+         * Event futures and metrics report the primary property set with {@link #withMeasurementId(String)}.
+         * An additional destination at its in-flight limit keeps batches in its own backlog of up to
+         * {@link #withQueueCapacity(int)} batches, so it never holds back the primary. When that backlog is full
+         * a batch is skipped for it: the oldest waiting one with {@link OverflowPolicy#DROP_OLDEST}, the new
+         * one with any other policy. Skips and outcomes of additional destinations are only counted by
+         * {@link Destination}. Journaled events stay in the outbox until every destination is done with them.
+         */
+        public Builder withDestination(String measurementId, String apiSecret) {
+            if (measurementId == null || measurementId.isEmpty() || apiSecret == null || apiSecret.isEmpty()) {
+                throw new IllegalArgumentException("destination measurementId and apiSecret must not be empty");
+            }
+            this.destinations.put(measurementId, apiSecret);
+            return this;
+        }
+
+        /**
+         * Sends to another Measurement Protocol implementation, e.g. a local stub collector, instead of Google.
+         * The /mp/collect and /debug/mp/collect paths are appended to the base URL.
+         */
+        public Builder withEndpointBaseUrl(String endpointBaseUrl) {
+            URI uri;
+            try {
+                uri = endpointBaseUrl != null ? new URI(endpointBaseUrl) : null;
+            } catch (URISyntaxException e) {
+                uri = null;
+            }
+            if (uri == null || uri.getHost() == null
+                    || !("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme()))) {
+                throw new IllegalArgumentException("endpointBaseUrl must be an absolute http or https URL");
+            }
+            this.endpointBaseUrl = endpointBaseUrl.endsWith("/")
+                    ? endpointBaseUrl.substring(0, endpointBaseUrl.length() - 1) : endpointBaseUrl;
+            return this;
+        }
+
         public Builder withValidationBehavior(String validationBehavior) {
             this.validationBehavior = validationBehavior;
             return this;
         }
 
+        /**
+         * A custom provider is queried on the thread that writes the first payload. Wrap it in a
+         * {@link CachingSystemInfoProvider} to query it in the background from build time instead.
+         */
         public Builder withSystemInfoProvider(SystemInfoProvider systemInfoProvider) {
             this.systemInfoProvider = systemInfoProvider;
             return this;
         }
 
+        /**
+         * Enables batching: events sent asynchronously are grouped by client_id and
+         * delivered up to {@link #withMaxBatchSize(int)} events per request
+         */
+        public Builder withBatching(boolean batching) {
+            this.batching = batching;
+            return this;
+        }
+
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1 || maxBatchSize > MAX_EVENTS_PER_REQUEST) {
+                throw new IllegalArgumentException("maxBatchSize must be between 1 and " + MAX_EVENTS_PER_REQUEST);
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public Builder withMaxBatchLinger(Duration maxBatchLinger) {
+            if (maxBatchLinger == null || maxBatchLinger.isNegative()) {
+                throw new IllegalArgumentException("maxBatchLinger must be a non-negative duration");
+            }
+            this.maxBatchLinger = maxBatchLinger;
+            return this;
+        }
+
+        public Builder withMaxBatchBytes(int maxBatchBytes) {
+            if (maxBatchBytes < 1) {
+                throw new IllegalArgumentException("maxBatchBytes must be positive");
+            }
+            this.maxBatchBytes = maxBatchBytes;
+            return this;
+        }
+
+        /**
+         * Maximum number of async requests (single events, or batches when batching is enabled)
+         * waiting to be sent
+         */
+        public Builder withQueueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("queueCapacity must be positive");
+            }
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            if (overflowPolicy == null) {
+                throw new IllegalArgumentException("overflowPolicy must not be null");
+            }
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Maximum time a caller waits for room in a full queue with {@link OverflowPolicy#BLOCK}, or for an
+         * in-flight slot with {@link OverflowPolicy#CALLER_RUNS}
+         */
+        public Builder withMaxBlockTime(Duration maxBlockTime) {
+            if (maxBlockTime == null || maxBlockTime.isNegative()) {
+                throw new IllegalArgumentException("maxBlockTime must be a non-negative duration");
+            }
+            this.maxBlockTime = maxBlockTime;
+            return this;
+        }
+
+        /**
+         * Maximum number of async requests awaiting a response at the same time.
+         * Once reached, further requests wait in the dispatch queue.
+         */
+        public Builder withMaxInFlightRequests(int maxInFlightRequests) {
+            if (maxInFlightRequests < 1) {
+                throw new IllegalArgumentException("maxInFlightRequests must be positive");
+            }
+            this.maxInFlightRequests = maxInFlightRequests;
+            return this;
+        }
+
+        /**
+         * Maximum number of attempts for async requests failing with 429, 5xx or a transport error.
+         * Use 1 to disable retries.
+         */
+        public Builder withMaxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Bounds of the exponential backoff between retries; each delay is randomized below the current bound
+         */
+        public Builder withRetryBackoff(Duration initialRetryBackoff, Duration maxRetryBackoff) {
+            if (initialRetryBackoff == null || initialRetryBackoff.isNegative()
+                    || maxRetryBackoff == null || maxRetryBackoff.compareTo(initialRetryBackoff) < 0) {
+                throw new IllegalArgumentException("retry backoff must satisfy 0 <= initial <= max");
+            }
+            this.initialRetryBackoff = initialRetryBackoff;
+            this.maxRetryBackoff = maxRetryBackoff;
+            return this;
+        }
+
+        /**
+         * Maximum number of retries per first attempt, e.g. 0.1 allows retries to add at most 10% to live traffic
+         */
+        public Builder withRetryBudgetRatio(double retryBudgetRatio) {
+            if (retryBudgetRatio < 0 || retryBudgetRatio > 1) {
+                throw new IllegalArgumentException("retryBudgetRatio must be between 0 and 1");
+            }
+            this.retryBudgetRatio = retryBudgetRatio;
+            return this;
+        }
+
+        /**
+         * Runs send tasks on the given executor instead of the built-in dispatcher threads.
+         * The default HttpClient also uses it for responses. The executor is not shut down by {@link GA4Analytics#shutdown()}.
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Runs each send task on its own virtual thread when running on Java 21 or later.
+         * Ignored with a warning on older runtimes, and when {@link #withExecutor(Executor)} is set.
+         */
+        public Builder withVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Uses the given client instead of a default HttpClient, e.g. to configure a proxy or SSL context
+         */
+        public Builder withHttpClient(HttpClient httpClient) {
+            this.httpClient = httpClient;
+            return this;
+        }
+
+        /**
+         * Enables coalescing of events sent with {@link GA4Analytics#sendAggregatedEvent(String, Map)}
+         * or {@link EventBuilder#aggregated()} into one rollup per name and parameter set and interval
+         */
+        public Builder withAggregation(Duration flushInterval) {
+            if (flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("flushInterval must be positive");
+            }
+            this.aggregationInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * Suppresses events identical to one sent within the window, comparing client_id, name and parameters.
+         * Uses two rotating Bloom filters, so repeats are caught for one to two windows and a small share
+         * of new events may be suppressed by mistake.
+         *
+         * @param expectedEventsPerWindow Number of distinct events per window the filters are sized for
+         */
+        public Builder withDeduplication(Duration window, int expectedEventsPerWindow) {
+            if (window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("window must be positive");
+            }
+            if (expectedEventsPerWindow < 1) {
+                throw new IllegalArgumentException("expectedEventsPerWindow must be positive");
+            }
+            this.deduplicationWindow = window;
+            this.deduplicationExpectedEvents = expectedEventsPerWindow;
+            return this;
+        }
+
+        /**
+         * Keeps client IDs in this file: without {@link #withClientId(String)} the installation reuses the client
+         * ID of its previous runs, and {@link GA4Analytics#getClientIdRegistry()} maps application users to
+         * stable client IDs
+         */
+        public Builder withClientIdRegistry(Path clientIdRegistryFile) {
+            this.clientIdRegistryFile = clientIdRegistryFile;
+            return this;
+        }
+
+        /**
+         * Time without events after which a client's next event starts a new session (default 30 minutes)
+         */
+        public Builder withSessionTimeout(Duration sessionTimeout) {
+            if (sessionTimeout == null || sessionTimeout.isNegative() || sessionTimeout.isZero()) {
+                throw new IllegalArgumentException("sessionTimeout must be a positive duration");
+            }
+            this.sessionTimeout = sessionTimeout;
+            return this;
+        }
+
+        /**
+         * Checks events against the GA4 collection limits before they are serialized: names of at most
+         * 40 letters, digits and underscores without a reserved prefix, at most 25 parameters and string
+         * values of at most 100 characters. The action decides whether offending events are dropped,
+         * truncated to fit or only logged.
+         */
+        public Builder withEventValidation(ValidationAction validationAction) {
+            if (validationAction == null) {
+                throw new IllegalArgumentException("validationAction must not be null");
+            }
+            this.validationAction = validationAction;
+            return this;
+        }
+
+        /**
+         * Validates each new event shape - name, parameter keys and value types - once against the debug
+         * endpoint in the background, while events are sent to the collect endpoint as usual. Events of a
+         * shape that failed validation are logged or rejected according to the policy. Ignored in debug mode.
+         *
+         * @param maxShapes Number of most recently used shapes whose verdict is cached
+         */
+        public Builder withShapeValidation(int maxShapes, InvalidShapePolicy invalidShapePolicy) {
+            if (maxShapes < 1) {
+                throw new IllegalArgumentException("maxShapes must be positive");
+            }
+            if (invalidShapePolicy == null) {
+                throw new IllegalArgumentException("invalidShapePolicy must not be null");
+            }
+            this.shapeValidationMaxShapes = maxShapes;
+            this.invalidShapePolicy = invalidShapePolicy;
+            return this;
+        }
+
+        /**
+         * Keeps each event with the given probability, unless its name has its own sample rate.
+         * Kept events carry the rate in a {@code sample_rate} parameter.
+         */
+        public Builder withSampleRate(double sampleRate) {
+            this.defaultSampleRate = checkSampleRate(sampleRate);
+            return this;
+        }
+
+        /**
+         * Keeps events with the given name with the given probability
+         */
+        public Builder withSampleRate(String eventName, double sampleRate) {
+            this.sampleRates.put(eventName, checkSampleRate(sampleRate));
+            return this;
+        }
+
+        /**
+         * Limits all events to the given rate, dropping events beyond it
+         *
+         * @param burst Number of events that can be sent at once after a quiet period
+         */
+        public Builder withRateLimit(double eventsPerSecond, int burst) {
+            this.globalRateLimit = new TokenBucket(eventsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * Limits events with the given name to the given rate, dropping events beyond it
+         *
+         * @param burst Number of events that can be sent at once after a quiet period
+         */
+        public Builder withRateLimit(String eventName, double eventsPerSecond, int burst) {
+            this.rateLimits.put(eventName, new TokenBucket(eventsPerSecond, burst));
+            return this;
+        }
+
+        private static double checkSampleRate(double sampleRate) {
+            if (!(sampleRate >= 0.0 && sampleRate <= 1.0)) {
+                throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+            }
+            return sampleRate;
+        }
+
+        private boolean hasSampling() {
+            return defaultSampleRate < 1.0 || !sampleRates.isEmpty() || globalRateLimit != null || !rateLimits.isEmpty();
+        }
+
+        /**
+         * Adds a listener notified of every recorded metric, may be called several times
+         */
+        public Builder withMetricsListener(MetricsListener metricsListener) {
+            if (metricsListener == null) {
+                throw new IllegalArgumentException("metricsListener must not be null");
+            }
+            this.metricsListeners.add(metricsListener);
+            return this;
+        }
+
+        /**
+         * Registers the metrics as an MBean with the platform MBean server until {@link GA4Analytics#shutdown()}
+         */
+        public Builder withJmx(boolean jmx) {
+            this.jmx = jmx;
+            return this;
+        }
+
+        /**
+         * Enables Content-Encoding: gzip for request bodies of at least {@link #withGzipMinSize(int)} bytes
+         */
+        public Builder withGzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        public Builder withGzipMinSize(int gzipMinSize) {
+            if (gzipMinSize < 0) {
+                throw new IllegalArgumentException("gzipMinSize must not be negative");
+            }
+            this.gzipMinSize = gzipMinSize;
+            return this;
+        }
+
+        /**
+         * Enables the disk-backed outbox: async events are journaled in this directory before they are
+         * dispatched, and events left undelivered by a previous run are resent on startup
+         */
+        public Builder withOutbox(Path outboxDirectory) {
+            this.outboxDirectory = outboxDirectory;
+            return this;
+        }
+
+        public Builder withOutboxSegmentSize(int outboxSegmentSize) {
+            if (outboxSegmentSize < 4096) {
+                throw new IllegalArgumentException("outboxSegmentSize must be at least 4096 bytes");
+            }
+            this.outboxSegmentSize = outboxSegmentSize;
+            return this;
+        }
+
+        /**
+         * Interval between group commits of journaled events to disk
+         */
+        public Builder withOutboxSyncInterval(Duration outboxSyncInterval) {
+            if (outboxSyncInterval == null || outboxSyncInterval.isNegative() || outboxSyncInterval.isZero()) {
+                throw new IllegalArgumentException("outboxSyncInterval must be a positive duration");
+            }
+            this.outboxSyncInterval = outboxSyncInterval;
+            return this;
+        }
+
+        /**
+         * File in which {@link GA4Analytics#shutdown(Duration)} keeps events it could not deliver before its
+         * deadline; they are resent by the next instance built with the same file. Not needed with the outbox,
+         * which keeps undelivered events anyway.
+         */
+        public Builder withSpillFile(Path spillFile) {
+            this.spillFile = spillFile;
+            return this;
+        }
+
         public GA4Analytics build() {
             if (measurementId == null || apiSecret == null) {
                 throw new IllegalStateException("measurementId and apiSecret are required");
             }
-            if (userAgent == null) {
-                userAgent = buildDefaultUserAgent();
+            if (destinations.containsKey(measurementId)) {
+                throw new IllegalStateException("Destination " + measurementId + " is already the primary measurementId");
             }
             return new GA4Analytics(this);
         }
 
         public String buildDefaultUserAgent() {
-            SystemInfoProvider provider = systemInfoProvider != null ? systemInfoProvider : new ApacheCommonsSystemInfoProvider();
-            return String.format("Java/%s (%s %s; %s)",
-                System.getProperty("java.version"),
-                provider.getOsName(),
-                provider.getOsVersion(),
-                System.getProperty("os.arch"));
+            return defaultUserAgent(systemInfoProvider != null ? systemInfoProvider : new ApacheCommonsSystemInfoProvider());
         }
     }
 }
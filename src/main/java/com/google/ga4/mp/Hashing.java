@@ -0,0 +1,48 @@
+package com.google.ga4.mp;
+
+/**
+ * 64-bit FNV-1a string hashing and the MurmurHash3 finalizer, shared by the duplicate filter, the shape
+ * validator, the session tracker and the client ID registry. The registry stores these hashes on disk,
+ * so the results must not change.
+ */
+public final class Hashing {
+    /** FNV-1a offset basis, the usual starting value of {@link #fnv(long, String)} */
+    public static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    public static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * Continues an FNV-1a hash over the characters of the value; a null value only advances the hash once
+     */
+    public static long fnv(long hash, String value) {
+        if (value == null) {
+            return hash * FNV_PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads all input bits over the 64 output bits
+     */
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @return The FNV-1a hash of the value from the given offset basis, spread by {@link #mix(long)}
+     */
+    public static long hash(String value, long offset) {
+        return mix(fnv(offset, value));
+    }
+}
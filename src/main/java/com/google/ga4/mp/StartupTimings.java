@@ -0,0 +1,60 @@
+package com.google.ga4.mp;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Where {@link GA4Analytics.Builder#build()} spent its time, and how long the default system info
+ * provider took to probe the platform on its background thread
+ */
+public final class StartupTimings {
+    private final Map<String, Duration> phases;
+    private final Duration total;
+    private final Duration systemInfoProbe;
+
+    public StartupTimings(Map<String, Duration> phases, Duration total, Duration systemInfoProbe) {
+        this.phases = Collections.unmodifiableMap(new LinkedHashMap<>(phases));
+        this.total = total;
+        this.systemInfoProbe = systemInfoProbe;
+    }
+
+    /**
+     * @return Time spent in each phase of construction, in the order they ran
+     */
+    public Map<String, Duration> getPhases() {
+        return phases;
+    }
+
+    /**
+     * @return Time spent constructing the GA4Analytics instance
+     */
+    public Duration getTotal() {
+        return total;
+    }
+
+    /**
+     * @return Time the background system info probe took, or null while it is still running or when a custom
+     * SystemInfoProvider is used. This runs in parallel with construction and is not part of the total.
+     */
+    public Duration getSystemInfoProbe() {
+        return systemInfoProbe;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("StartupTimings{total=").append(micros(total)).append("us");
+        for (Map.Entry<String, Duration> phase : phases.entrySet()) {
+            builder.append(", ").append(phase.getKey()).append('=').append(micros(phase.getValue())).append("us");
+        }
+        if (systemInfoProbe != null) {
+            builder.append(", systemInfoProbe=").append(micros(systemInfoProbe)).append("us");
+        }
+        return builder.append('}').toString();
+    }
+
+    private static long micros(Duration duration) {
+        return duration.toNanos() / 1000;
+    }
+}
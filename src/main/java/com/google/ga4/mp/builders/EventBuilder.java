@@ -1,24 +1,74 @@
 package com.google.ga4.mp.builders;
 
+import com.google.ga4.mp.DeliveryResult;
+import com.google.ga4.mp.EventParams;
 import com.google.ga4.mp.GA4Analytics;
+import com.google.ga4.mp.dispatch.VirtualThreads;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Builder for custom events in GA4
+ * Builder for custom events in GA4.
+ * Pooled builders, obtained from {@link GA4Analytics#pooledEvent()}, are reused by their platform thread and hand
+ * their parameters to the event instead of copying them.
  */
 public class EventBuilder {
-    private final GA4Analytics analytics;
+    // Initial capacity of the parameters handed off by a pooled builder, enough for the standard fields and a few custom ones
+    private static final int POOLED_PARAMS_CAPACITY = 16;
+    // Static and holding unbound builders, so that a thread's entry never keeps a GA4Analytics instance reachable
+    private static final ThreadLocal<EventBuilder> THREAD_BUILDERS =
+            ThreadLocal.withInitial(() -> new EventBuilder(null, true, true));
+
+    private GA4Analytics analytics;
+    private final boolean pooled;
+    private final boolean threadBuilder;
+    private String clientId;
     private String category;
     private String action;
     private String label;
     private Integer value;
-    private final Map<String, Object> customParams;
+    private boolean aggregated;
+    private EventParams customParams;
 
     public EventBuilder(GA4Analytics analytics) {
+        this(analytics, false);
+    }
+
+    /**
+     * @param pooled Whether the builder is reused: sending hands its parameters to the event and resets it
+     */
+    public EventBuilder(GA4Analytics analytics, boolean pooled) {
+        this(analytics, pooled, false);
+    }
+
+    private EventBuilder(GA4Analytics analytics, boolean pooled, boolean threadBuilder) {
         this.analytics = analytics;
-        this.customParams = new HashMap<>();
+        this.pooled = pooled;
+        this.threadBuilder = threadBuilder;
+        this.customParams = pooled ? new EventParams(POOLED_PARAMS_CAPACITY) : new EventParams();
+    }
+
+    /**
+     * @return The calling thread's pooled builder, reset and bound to the given instance until the event is sent.
+     *         Virtual threads usually send a single event each, so they get a new pooled builder instead of
+     *         a thread-local one that would only be dropped with the thread.
+     */
+    public static EventBuilder pooled(GA4Analytics analytics) {
+        if (VirtualThreads.isVirtual(Thread.currentThread())) {
+            return new EventBuilder(analytics, true);
+        }
+        EventBuilder builder = THREAD_BUILDERS.get().reset();
+        builder.analytics = analytics;
+        return builder;
+    }
+
+    /**
+     * Sends the event on behalf of this client instead of the instance's client ID.
+     * Aggregated events are always sent with the instance's client ID.
+     */
+    public EventBuilder clientId(String clientId) {
+        this.clientId = clientId;
+        return this;
     }
 
     public EventBuilder eventCategory(String category) {
@@ -46,33 +96,86 @@ public class EventBuilder {
         return this;
     }
 
+    /**
+     * Marks the event as a counter: it is coalesced with events of the same name and parameters
+     * into a periodic rollup when aggregation is enabled
+     */
+    public EventBuilder aggregated() {
+        this.aggregated = true;
+        return this;
+    }
+
     public void send() {
         sendInternal(false);
     }
 
-    public void sendAsync() {
-        sendInternal(true);
+    /**
+     * @return Completed with the delivery result once GA4 has responded, or exceptionally
+     * if the event was dropped or could not be sent
+     */
+    public CompletableFuture<DeliveryResult> sendAsync() {
+        return sendInternal(true);
+    }
+
+    /**
+     * Clears all fields so that a pooled builder can describe the next event
+     */
+    public EventBuilder reset() {
+        clientId = null;
+        category = null;
+        action = null;
+        label = null;
+        value = null;
+        aggregated = false;
+        customParams.clear();
+        return this;
     }
 
-    private void sendInternal(boolean async) {
-        Map<String, Object> params = new HashMap<>(customParams);
+    private CompletableFuture<DeliveryResult> sendInternal(boolean async) {
+        EventParams params = pooled ? customParams : customParams.copy();
 
         if (category != null) {
-            params.put("event_category", category);
+            params.putString("event_category", category);
         }
         if (action != null) {
-            params.put("event_action", action);
+            params.putString("event_action", action);
         }
         if (label != null) {
-            params.put("event_label", label);
+            params.putString("event_label", label);
         }
         if (value != null) {
-            params.put("value", value);
+            params.putLong("value", value);
         }
 
         // Use the action as event name if available, otherwise use a generic name
         String eventName = action != null ? action : "custom_event";
 
-        analytics.sendEvent(eventName, params, async);
+        if (!pooled) {
+            return send(eventName, params, async);
+        }
+        // Async events keep the parameters until they are sent; synchronous sends and rollups,
+        // which copy them into a map, are done with them
+        boolean handOff = async && !aggregated;
+        if (handOff) {
+            customParams = new EventParams(POOLED_PARAMS_CAPACITY);
+        }
+        try {
+            return send(eventName, params, async);
+        } finally {
+            reset();
+            if (threadBuilder) {
+                analytics = null;
+            }
+        }
+    }
+
+    private CompletableFuture<DeliveryResult> send(String eventName, EventParams params, boolean async) {
+        if (aggregated) {
+            // Rollups are always sent in the background
+            return analytics.sendAggregatedEvent(eventName, params.toMap());
+        }
+        return clientId != null
+                ? analytics.sendEvent(clientId, eventName, params, async)
+                : analytics.sendEvent(eventName, params, async);
     }
 }
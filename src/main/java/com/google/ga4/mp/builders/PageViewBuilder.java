@@ -1,9 +1,11 @@
 package com.google.ga4.mp.builders;
 
+import com.google.ga4.mp.DeliveryResult;
 import com.google.ga4.mp.GA4Analytics;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Builder for page_view events in GA4
@@ -37,11 +39,15 @@ public class PageViewBuilder {
         sendInternal(false);
     }
 
-    public void sendAsync() {
-        sendInternal(true);
+    /**
+     * @return Completed with the delivery result once GA4 has responded, or exceptionally
+     * if the event was dropped or could not be sent
+     */
+    public CompletableFuture<DeliveryResult> sendAsync() {
+        return sendInternal(true);
     }
 
-    private void sendInternal(boolean async) {
+    private CompletableFuture<DeliveryResult> sendInternal(boolean async) {
         Map<String, Object> params = new HashMap<>();
 
         if (documentTitle != null) {
@@ -54,6 +60,6 @@ public class PageViewBuilder {
             params.put("page_location", documentLocation);
         }
 
-        analytics.sendEvent("page_view", params, async);
+        return analytics.sendEvent("page_view", params, async);
     }
 }
@@ -1,9 +1,11 @@
 package com.google.ga4.mp.builders;
 
+import com.google.ga4.mp.DeliveryResult;
 import com.google.ga4.mp.GA4Analytics;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Builder for screen_view events in GA4
@@ -31,11 +33,15 @@ public class ScreenViewBuilder {
         sendInternal(false);
     }
 
-    public void sendAsync() {
-        sendInternal(true);
+    /**
+     * @return Completed with the delivery result once GA4 has responded, or exceptionally
+     * if the event was dropped or could not be sent
+     */
+    public CompletableFuture<DeliveryResult> sendAsync() {
+        return sendInternal(true);
     }
 
-    private void sendInternal(boolean async) {
+    private CompletableFuture<DeliveryResult> sendInternal(boolean async) {
         Map<String, Object> params = new HashMap<>();
 
         if (screenName != null) {
@@ -49,6 +55,6 @@ public class ScreenViewBuilder {
         String eventName = "start".equals(sessionControl) ? "session_start" :
                           "end".equals(sessionControl) ? "session_end" : "screen_view";
 
-        analytics.sendEvent(eventName, params, async);
+        return analytics.sendEvent(eventName, params, async);
     }
 }
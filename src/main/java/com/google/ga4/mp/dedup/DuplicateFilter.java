@@ -0,0 +1,122 @@
+package com.google.ga4.mp.dedup;
+
+import com.google.ga4.mp.EventParams;
+import com.google.ga4.mp.Hashing;
+
+import java.time.Duration;
+
+/**
+ * Detects repeats of identical events within a time window using two rotating Bloom filters.
+ * Each event is checked against the current and the previous generation and added to the current one;
+ * every window a fresh generation replaces the oldest. Repeats are therefore caught for at least one window
+ * and at most two, and memory stays bounded by two filters whatever the event volume.
+ */
+public final class DuplicateFilter {
+    private final long windowNanos;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private volatile Generation generation;
+
+    /**
+     * @param window             Minimum time within which repeats are suppressed
+     * @param expectedInsertions Number of distinct events expected per window
+     * @param falsePositiveRate  Wanted probability of suppressing an event that is not a repeat
+     */
+    public DuplicateFilter(Duration window, int expectedInsertions, double falsePositiveRate) {
+        this(window, expectedInsertions, falsePositiveRate, System.nanoTime());
+    }
+
+    DuplicateFilter(Duration window, int expectedInsertions, double falsePositiveRate, long nowNanos) {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.windowNanos = window.toNanos();
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.generation = new Generation(nowNanos, new BloomFilter(expectedInsertions, falsePositiveRate), null);
+    }
+
+    /**
+     * Records the event and reports whether an identical one was seen within the window
+     */
+    public boolean isDuplicate(String clientId, String eventName, EventParams params) {
+        return isDuplicate(canonicalHash(clientId, eventName, params), System.nanoTime());
+    }
+
+    boolean isDuplicate(long hash, long nowNanos) {
+        Generation current = currentGeneration(nowNanos);
+        boolean seen = current.filter.put(hash);
+        return seen || (current.previous != null && current.previous.mightContain(hash));
+    }
+
+    /**
+     * @return Estimated probability that a new event is wrongly reported as a duplicate
+     */
+    public double getFalsePositiveRate() {
+        Generation current = generation;
+        double missRate = 1.0 - current.filter.getFalsePositiveRate();
+        if (current.previous != null) {
+            missRate *= 1.0 - current.previous.getFalsePositiveRate();
+        }
+        return 1.0 - missRate;
+    }
+
+    private Generation currentGeneration(long nowNanos) {
+        Generation current = generation;
+        if (nowNanos - current.startNanos < windowNanos) {
+            return current;
+        }
+        synchronized (this) {
+            current = generation;
+            if (nowNanos - current.startNanos >= windowNanos) {
+                // After a quiet period longer than the window, the previous generation is stale too
+                BloomFilter previous = nowNanos - current.startNanos < 2 * windowNanos ? current.filter : null;
+                current = new Generation(nowNanos, new BloomFilter(expectedInsertions, falsePositiveRate), previous);
+                generation = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Hashes client_id, event name and parameters. Parameter order does not matter; numbers and booleans
+     * are hashed from their slot, other values by their string form.
+     */
+    static long canonicalHash(String clientId, String eventName, EventParams params) {
+        long hash = Hashing.hash(clientId, Hashing.FNV_OFFSET) * 31 + Hashing.hash(eventName, Hashing.FNV_OFFSET);
+        if (params != null) {
+            long paramsHash = 0;
+            for (int i = 0; i < params.size(); i++) {
+                long keyHash = Hashing.fnv(Hashing.FNV_OFFSET, params.getKey(i)) ^ '=';
+                long entryHash;
+                switch (params.getType(i)) {
+                    case LONG:
+                    case DOUBLE:
+                    case BOOLEAN:
+                        entryHash = (keyHash ^ params.getType(i).ordinal()) * Hashing.FNV_PRIME ^ params.getLong(i);
+                        break;
+                    default:
+                        Object value = params.getObject(i);
+                        entryHash = Hashing.fnv(keyHash,
+                                value instanceof String ? (String) value : String.valueOf(value));
+                }
+                // Summing mixed entry hashes makes the result independent of iteration order
+                paramsHash += Hashing.mix(entryHash);
+            }
+            hash = hash * 31 + paramsHash;
+        }
+        return Hashing.mix(hash);
+    }
+
+    private static final class Generation {
+        private final long startNanos;
+        private final BloomFilter filter;
+        private final BloomFilter previous;
+
+        private Generation(long startNanos, BloomFilter filter, BloomFilter previous) {
+            this.startNanos = startNanos;
+            this.filter = filter;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.google.ga4.mp.dispatch;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs send tasks on a fixed number of threads, or on a caller-supplied executor, fed by a bounded queue.
+ * When the queue is full the configured {@link OverflowPolicy} decides whether the task is dropped,
+ * replaces the oldest queued task, waits for room or runs on the caller thread.
+ */
+public class BoundedDispatcher {
+    private static final Logger LOG = Logger.getLogger(BoundedDispatcher.class.getName());
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+    // Set while a task runs on the caller's thread under OverflowPolicy.CALLER_RUNS
+    private static final ThreadLocal<Boolean> CALLER_RUNNING = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor executor;
+    // Runs short hand-off tasks with the internal threads, which may all be waiting for an in-flight slot
+    private final ThreadPoolExecutor handoffExecutor;
+    private final Executor externalExecutor;
+    // Limits the tasks running on the external executor, so that excess tasks wait in the bounded queue
+    private final Semaphore externalDrains;
+    private final AtomicInteger pendingExternalTasks = new AtomicInteger();
+    private volatile boolean externalShutdown;
+    private final BlockingQueue<Runnable> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final long maxBlockNanos;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong droppedRequests = new AtomicLong();
+
+    /**
+     * @param threads        Number of threads sending requests
+     * @param queueCapacity  Maximum number of requests waiting for a thread
+     * @param overflowPolicy Policy applied when the queue is full
+     * @param maxBlockTime   Maximum time a caller waits for room with {@link OverflowPolicy#BLOCK}
+     */
+    public BoundedDispatcher(int threads, int queueCapacity, OverflowPolicy overflowPolicy, Duration maxBlockTime) {
+        this.overflowPolicy = overflowPolicy;
+        this.maxBlockNanos = maxBlockTime.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        int pool = POOL_COUNTER.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue,
+                runnable -> new Thread(runnable, "ga4-dispatcher-" + pool + "-" + threadCounter.incrementAndGet()),
+                new OverflowHandler());
+        this.handoffExecutor = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ga4-dispatcher-" + pool + "-handoff");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        handoffExecutor.allowCoreThreadTimeOut(true);
+        this.externalExecutor = null;
+        this.externalDrains = null;
+    }
+
+    /**
+     * Runs queued tasks on the given executor, e.g. a virtual-thread-per-task executor, with at most
+     * maxConcurrentTasks of them running at once. The executor is not shut down by {@link #shutdown()}.
+     *
+     * @param executor           Executor running the send tasks
+     * @param maxConcurrentTasks Maximum number of tasks running on the executor at once
+     * @param queueCapacity      Maximum number of requests waiting for the executor to pick them up
+     * @param overflowPolicy     Policy applied when the queue is full
+     * @param maxBlockTime       Maximum time a caller waits for room with {@link OverflowPolicy#BLOCK}
+     */
+    public BoundedDispatcher(Executor executor, int maxConcurrentTasks, int queueCapacity,
+                             OverflowPolicy overflowPolicy, Duration maxBlockTime) {
+        this.overflowPolicy = overflowPolicy;
+        this.maxBlockNanos = maxBlockTime.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.executor = null;
+        this.handoffExecutor = null;
+        this.externalExecutor = executor;
+        this.externalDrains = new Semaphore(maxConcurrentTasks);
+    }
+
+    /**
+     * Queues a send task covering the given number of events
+     */
+    public void dispatch(int eventCount, Runnable task) {
+        dispatch(eventCount, task, null);
+    }
+
+    /**
+     * Queues a send task covering the given number of events
+     *
+     * @param onDrop Run if the task is discarded by the overflow policy, may be null
+     */
+    public void dispatch(int eventCount, Runnable task, Runnable onDrop) {
+        DispatchTask dispatchTask = new DispatchTask(eventCount, task, onDrop);
+        if (executor != null) {
+            executor.execute(dispatchTask);
+            return;
+        }
+        if (externalShutdown) {
+            throw new RejectedExecutionException("BoundedDispatcher is shut down");
+        }
+        if (!queue.offer(dispatchTask) && !overflow(dispatchTask)) {
+            return;
+        }
+        startExternalDrains();
+    }
+
+    /**
+     * Runs a short task that must not wait behind queued sends, e.g. starting the next send of a destination
+     * whose in-flight slot was freed by a completion callback. The task bypasses the queue and its overflow
+     * policy: it runs on the external executor, or on a dispatcher thread kept apart from those that may be
+     * waiting for an in-flight slot.
+     *
+     * @throws RejectedExecutionException If the executor does not accept the task
+     */
+    public void execute(Runnable task) {
+        if (handoffExecutor != null) {
+            handoffExecutor.execute(task);
+        } else {
+            externalExecutor.execute(task);
+        }
+    }
+
+    /**
+     * Starts a drain on the external executor for each queued task, as long as drain permits are left
+     */
+    private void startExternalDrains() {
+        while (!queue.isEmpty() && externalDrains.tryAcquire()) {
+            pendingExternalTasks.incrementAndGet();
+            try {
+                externalExecutor.execute(this::runNextExternal);
+            } catch (RejectedExecutionException e) {
+                externalDrains.release();
+                finishExternalTask();
+                // Nothing will run the queued tasks any more
+                Runnable task;
+                while ((task = queue.poll()) != null) {
+                    drop(task);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs queued tasks until the queue is empty, then gives up its permit
+     */
+    private void runNextExternal() {
+        try {
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "GA4 send task failed", e);
+                }
+            }
+        } finally {
+            externalDrains.release();
+            finishExternalTask();
+        }
+        // A task queued while this drain was finishing may have found no permit
+        startExternalDrains();
+    }
+
+    private void finishExternalTask() {
+        if (pendingExternalTasks.decrementAndGet() == 0 && externalShutdown) {
+            synchronized (pendingExternalTasks) {
+                pendingExternalTasks.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return Whether the current thread is running a task for a full queue with {@link OverflowPolicy#CALLER_RUNS}.
+     * Such a task must not wait longer than the max block time.
+     */
+    public static boolean isCallerRunning() {
+        return CALLER_RUNNING.get() != null;
+    }
+
+    /**
+     * @return Number of events discarded because the queue was full
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * @return Number of requests discarded because the queue was full
+     */
+    public long getDroppedRequestCount() {
+        return droppedRequests.get();
+    }
+
+    /**
+     * @return Number of requests waiting for a dispatcher thread
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        } else {
+            externalShutdown = true;
+        }
+    }
+
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        if (executor != null) {
+            return executor.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (pendingExternalTasks) {
+            while (!externalShutdown || pendingExternalTasks.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(pendingExternalTasks, remaining);
+            }
+        }
+        return true;
+    }
+
+    private void drop(Runnable runnable) {
+        DispatchTask task = (DispatchTask) runnable;
+        int eventCount = task.eventCount;
+        long total = droppedEvents.addAndGet(eventCount);
+        droppedRequests.incrementAndGet();
+        if (total == eventCount) {
+            LOG.log(Level.WARNING, "GA4 dispatch queue is full, dropping events (policy: {0})", overflowPolicy);
+        } else {
+            LOG.log(Level.FINE, "GA4 dispatch queue is full, dropped {0} events", eventCount);
+        }
+        if (task.onDrop != null) {
+            task.onDrop.run();
+        }
+    }
+
+    private final class OverflowHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("BoundedDispatcher is shut down");
+            }
+            overflow(runnable);
+        }
+    }
+
+    /**
+     * Applies the overflow policy to a task that did not fit into the queue
+     *
+     * @return true if the task has been queued after all
+     */
+    private boolean overflow(Runnable runnable) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                while (!queue.offer(runnable)) {
+                    Runnable oldest = queue.poll();
+                    if (oldest != null) {
+                        drop(oldest);
+                    }
+                }
+                return true;
+            case BLOCK:
+                try {
+                    if (queue.offer(runnable, maxBlockNanos, TimeUnit.NANOSECONDS)) {
+                        return true;
+                    }
+                    drop(runnable);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(runnable);
+                }
+                return false;
+            case CALLER_RUNS:
+                CALLER_RUNNING.set(Boolean.TRUE);
+                try {
+                    runnable.run();
+                } finally {
+                    CALLER_RUNNING.remove();
+                }
+                return false;
+            case DROP_NEWEST:
+            default:
+                drop(runnable);
+                return false;
+        }
+    }
+
+    private static final class DispatchTask implements Runnable {
+        private final int eventCount;
+        private final Runnable task;
+        private final Runnable onDrop;
+
+        private DispatchTask(int eventCount, Runnable task, Runnable onDrop) {
+            this.eventCount = eventCount;
+            this.task = task;
+            this.onDrop = onDrop;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.google.ga4.mp.dispatch;
+
+import java.net.URI;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A GA4 property that batches are sent to, with its delivery counters. Its in-flight limit, backlog
+ * and retry budget are kept by a {@link DestinationQueue}, so a slow or failing property does not hold
+ * back the others.
+ */
+public final class Destination {
+    private final String measurementId;
+    private final URI collectUri;
+    private final LongAdder eventsSent = new LongAdder();
+    private final LongAdder eventsFailed = new LongAdder();
+    private final LongAdder eventsSkipped = new LongAdder();
+
+    /**
+     * @param collectUri Collect URI including measurement_id and api_secret
+     */
+    Destination(String measurementId, URI collectUri) {
+        this.measurementId = measurementId;
+        this.collectUri = collectUri;
+    }
+
+    public String getMeasurementId() {
+        return measurementId;
+    }
+
+    public URI getCollectUri() {
+        return collectUri;
+    }
+
+    void recordSent(int count) {
+        eventsSent.add(count);
+    }
+
+    void recordFailed(int count) {
+        eventsFailed.add(count);
+    }
+
+    void recordSkipped(int count) {
+        eventsSkipped.add(count);
+    }
+
+    /**
+     * @return Number of events accepted by this destination
+     */
+    public long getEventsSent() {
+        return eventsSent.sum();
+    }
+
+    /**
+     * @return Number of events rejected by this destination or lost to transport errors
+     */
+    public long getEventsFailed() {
+        return eventsFailed.sum();
+    }
+
+    /**
+     * @return Number of events not sent to this secondary destination because its backlog was full
+     */
+    public long getEventsSkipped() {
+        return eventsSkipped.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Destination{measurementId=" + measurementId + ", sent=" + getEventsSent()
+                + ", failed=" + getEventsFailed() + ", skipped=" + getEventsSkipped() + "}";
+    }
+}
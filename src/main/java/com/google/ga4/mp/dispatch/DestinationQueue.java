@@ -0,0 +1,173 @@
+package com.google.ga4.mp.dispatch;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flow control for one {@link Destination}: its in-flight limit, retry budget and a bounded backlog of
+ * sends waiting for an in-flight slot. The primary destination waits for a slot on the dispatcher thread,
+ * which is what bounds the dispatch queue; other destinations queue their sends here instead, so they
+ * never wait on the dispatcher thread and a slow property only fills its own backlog.
+ */
+public final class DestinationQueue {
+    private final Destination destination;
+    private final int maxInFlightRequests;
+    private final Semaphore inFlightRequests;
+    private final RetryBudget retryBudget;
+    private final int backlogCapacity;
+    private final boolean dropOldest;
+    private final Executor executor;
+    // Guarded by itself
+    private final Deque<Entry> backlog = new ArrayDeque<>();
+
+    /**
+     * @param collectUri          Collect URI including measurement_id and api_secret
+     * @param maxInFlightRequests Maximum number of requests to this destination awaiting a response
+     * @param backlogCapacity     Maximum number of sends waiting for an in-flight slot
+     * @param overflowPolicy      {@link OverflowPolicy#DROP_OLDEST} skips the oldest waiting send when the
+     *                            backlog is full, any other policy skips the new one
+     * @param executor            Starts the waiting sends handed a slot by {@link #release()}, so that they do not
+     *                            run inside the callback of the request that finished
+     */
+    public DestinationQueue(String measurementId, URI collectUri, int maxInFlightRequests, RetryBudget retryBudget,
+                            int backlogCapacity, OverflowPolicy overflowPolicy, Executor executor) {
+        this.destination = new Destination(measurementId, collectUri);
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.inFlightRequests = new Semaphore(maxInFlightRequests);
+        this.retryBudget = retryBudget;
+        this.backlogCapacity = backlogCapacity;
+        this.dropOldest = overflowPolicy == OverflowPolicy.DROP_OLDEST;
+        this.executor = executor;
+    }
+
+    public Destination getDestination() {
+        return destination;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Waits for an in-flight slot
+     */
+    public void acquire() throws InterruptedException {
+        inFlightRequests.acquire();
+    }
+
+    /**
+     * Waits up to the timeout for an in-flight slot
+     *
+     * @return Whether a slot was acquired
+     */
+    public boolean tryAcquire(long timeoutNanos) throws InterruptedException {
+        return inFlightRequests.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs the send once it holds an in-flight slot: on the calling thread if one is free, otherwise on the
+     * executor when a running send calls {@link #release()}. When the backlog is full a waiting send is skipped
+     * instead: its events are counted as skipped and its skip callback runs.
+     *
+     * @param eventCount Number of events the send carries
+     * @param send       Starts the request; must call {@link #release()} once the request has finished
+     * @param skip       Runs instead of the send if it is skipped
+     */
+    public void submit(int eventCount, Runnable send, Runnable skip) {
+        Entry skipped = null;
+        Entry entry = new Entry(eventCount, send, skip);
+        synchronized (backlog) {
+            if (backlog.size() < backlogCapacity) {
+                backlog.addLast(entry);
+            } else if (dropOldest && !backlog.isEmpty()) {
+                skipped = backlog.pollFirst();
+                backlog.addLast(entry);
+            } else {
+                skipped = entry;
+            }
+        }
+        if (skipped != null) {
+            destination.recordSkipped(skipped.eventCount);
+            skipped.skip.run();
+        }
+        drain();
+    }
+
+    /**
+     * Frees an in-flight slot, handing it to the next waiting send on the executor if there is one
+     */
+    public void release() {
+        inFlightRequests.release();
+        if (getBacklogSize() == 0) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Shut down; the waiting sends still have to finish
+            drain();
+        }
+    }
+
+    // Starts waiting sends while slots are free. Re-checks the backlog after giving a slot back, because
+    // a send queued in the meantime may have found no free slot.
+    private void drain() {
+        while (inFlightRequests.tryAcquire()) {
+            Entry next;
+            synchronized (backlog) {
+                next = backlog.pollFirst();
+            }
+            if (next != null) {
+                next.send.run();
+                continue;
+            }
+            inFlightRequests.release();
+            synchronized (backlog) {
+                if (backlog.isEmpty()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of requests to this destination awaiting a response
+     */
+    public int getInFlightRequests() {
+        return maxInFlightRequests - inFlightRequests.availablePermits();
+    }
+
+    /**
+     * @return Number of sends waiting for an in-flight slot
+     */
+    public int getBacklogSize() {
+        synchronized (backlog) {
+            return backlog.size();
+        }
+    }
+
+    public void recordSent(int count) {
+        destination.recordSent(count);
+    }
+
+    public void recordFailed(int count) {
+        destination.recordFailed(count);
+    }
+
+    private static final class Entry {
+        private final int eventCount;
+        private final Runnable send;
+        private final Runnable skip;
+
+        private Entry(int eventCount, Runnable send, Runnable skip) {
+            this.eventCount = eventCount;
+            this.send = send;
+            this.skip = skip;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.google.ga4.mp.dispatch;
+
+import com.google.ga4.mp.DeliveryResult;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces counter-style events that share client_id, name and parameters into one rollup event per
+ * flush interval. The rollup carries the summed "value" and the number of coalesced events in
+ * {@value #COUNT_PARAM}; events without a numeric value count as 1.
+ * Rollups live in a ConcurrentHashMap, so concurrent updates of different keys do not contend.
+ */
+public class EventAggregator implements AutoCloseable {
+    /** Parameter summed across coalesced events */
+    public static final String VALUE_PARAM = "value";
+    /** Parameter holding the number of coalesced events */
+    public static final String COUNT_PARAM = "aggregate_count";
+    private static final Logger LOG = Logger.getLogger(EventAggregator.class.getName());
+
+    /**
+     * Sends a rollup event
+     */
+    public interface Sink {
+        CompletableFuture<DeliveryResult> send(String clientId, String eventName, Map<String, Object> params);
+    }
+
+    private final Sink sink;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ConcurrentHashMap<Key, Rollup> rollups = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * @param flushInterval Time between two rollups of the same key
+     * @param sink          Sends each rollup event
+     */
+    public EventAggregator(Duration flushInterval, Sink sink) {
+        this.sink = sink;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ga4-aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = flushInterval.toNanos();
+        scheduler.scheduleAtFixedRate(this::flush, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds an event to the rollup of its key
+     *
+     * @return Completed with the delivery result of the rollup, shared by all events coalesced into it
+     */
+    public CompletableFuture<DeliveryResult> add(String clientId, String eventName, Map<String, Object> params) {
+        if (closed) {
+            throw new IllegalStateException("EventAggregator is closed");
+        }
+        // Copied, since the key keeps the map and caches its hash while the caller may reuse its own
+        Map<String, Object> dimensions = new HashMap<>(params);
+        Object value = dimensions.remove(VALUE_PARAM);
+        // compute() runs under the lock of the key's bin, which flush() also takes when removing the rollup
+        Rollup rollup = rollups.compute(new Key(clientId, eventName, dimensions), (key, existing) -> {
+            Rollup updated = existing != null ? existing : new Rollup(key);
+            updated.add(value);
+            return updated;
+        });
+        return rollup.result;
+    }
+
+    /**
+     * @return Number of keys with a pending rollup
+     */
+    public int getPendingRollupCount() {
+        return rollups.size();
+    }
+
+    /**
+     * Sends the rollups of all keys without waiting for the flush interval
+     */
+    public void flush() {
+        for (Key key : rollups.keySet()) {
+            Rollup rollup = rollups.remove(key);
+            if (rollup != null) {
+                emit(rollup);
+            }
+        }
+    }
+
+    /**
+     * Flushes pending rollups and stops accepting new events
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        flush();
+    }
+
+    private void emit(Rollup rollup) {
+        Map<String, Object> params = new HashMap<>(rollup.key.params);
+        params.put(VALUE_PARAM, rollup.getValue());
+        params.put(COUNT_PARAM, rollup.count);
+        try {
+            sink.send(rollup.key.clientId, rollup.key.eventName, params).whenComplete((result, error) -> {
+                if (error != null) {
+                    rollup.result.completeExceptionally(error);
+                } else {
+                    rollup.result.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Failed to send GA4 rollup of " + rollup.count + " " + rollup.key.eventName
+                    + " events", e);
+            rollup.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class Key {
+        private final String clientId;
+        private final String eventName;
+        private final Map<String, Object> params;
+        private final int hash;
+
+        private Key(String clientId, String eventName, Map<String, Object> params) {
+            this.clientId = clientId;
+            this.eventName = eventName;
+            this.params = params;
+            this.hash = Objects.hash(clientId, eventName, params);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && clientId.equals(key.clientId) && eventName.equals(key.eventName)
+                    && params.equals(key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Mutated only inside ConcurrentHashMap.compute() for its key
+     */
+    private static final class Rollup {
+        private final Key key;
+        private final CompletableFuture<DeliveryResult> result = new CompletableFuture<>();
+        private long count;
+        private long longSum;
+        private double doubleSum;
+        private boolean integral = true;
+
+        private Rollup(Key key) {
+            this.key = key;
+        }
+
+        private void add(Object value) {
+            count++;
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                longSum += ((Number) value).longValue();
+            } else if (value instanceof Number) {
+                doubleSum += ((Number) value).doubleValue();
+                integral = false;
+            } else {
+                longSum++;
+            }
+        }
+
+        private Number getValue() {
+            if (integral) {
+                return longSum;
+            }
+            return longSum + doubleSum;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.google.ga4.mp.dispatch;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Groups pending events by client_id into Measurement Protocol batches.
+ * A batch is handed to the sink as soon as it reaches the maximum number of events or bytes,
+ * or when its oldest event has waited for the maximum linger time.
+ */
+public class EventBatcher implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(EventBatcher.class.getName());
+
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final int maxBatchBytes;
+    private final BiConsumer<String, List<PendingEvent>> sink;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<String, Batch> batches = new HashMap<>();
+    private boolean closed;
+
+    /**
+     * @param maxBatchSize  Maximum number of events per batch
+     * @param maxLinger     Maximum time an event waits for its batch to fill up
+     * @param maxBatchBytes Maximum estimated size in bytes of the events of a batch
+     * @param sink          Receives each completed batch along with its client_id
+     */
+    public EventBatcher(int maxBatchSize, Duration maxLinger, int maxBatchBytes,
+                        BiConsumer<String, List<PendingEvent>> sink) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = maxLinger.toNanos();
+        this.maxBatchBytes = maxBatchBytes;
+        this.sink = sink;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ga4-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    public void add(PendingEvent event) {
+        Batch overflow = null;
+        Batch full = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("EventBatcher is closed");
+            }
+            String clientId = event.getClientId();
+            Batch batch = batches.get(clientId);
+            if (batch != null && batch.bytes + event.getEstimatedSize() > maxBatchBytes) {
+                overflow = detach(batch);
+                batch = null;
+            }
+            if (batch == null) {
+                Batch created = new Batch(clientId);
+                created.lingerTimer = scheduler.schedule(() -> expire(created), maxLingerNanos, TimeUnit.NANOSECONDS);
+                batches.put(clientId, created);
+                batch = created;
+            }
+            batch.events.add(event);
+            batch.bytes += event.getEstimatedSize();
+            if (batch.events.size() >= maxBatchSize || batch.bytes >= maxBatchBytes) {
+                full = detach(batch);
+            }
+        }
+        emit(overflow);
+        emit(full);
+    }
+
+    /**
+     * Hands every buffered batch to the sink without waiting for the linger time
+     */
+    public void flush() {
+        List<Batch> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(batches.values());
+            pending.forEach(this::detach);
+        }
+        pending.forEach(this::emit);
+    }
+
+    /**
+     * Flushes buffered batches and stops accepting new events
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        scheduler.shutdown();
+    }
+
+    private void expire(Batch batch) {
+        synchronized (this) {
+            if (batches.get(batch.clientId) != batch) {
+                return;
+            }
+            batches.remove(batch.clientId);
+        }
+        emit(batch);
+    }
+
+    private Batch detach(Batch batch) {
+        batches.remove(batch.clientId);
+        batch.lingerTimer.cancel(false);
+        return batch;
+    }
+
+    private void emit(Batch batch) {
+        if (batch == null) {
+            return;
+        }
+        try {
+            sink.accept(batch.clientId, batch.events);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Failed to dispatch GA4 batch of " + batch.events.size() + " events", e);
+        }
+    }
+
+    private static final class Batch {
+        private final String clientId;
+        private final List<PendingEvent> events = new ArrayList<>();
+        private int bytes;
+        private ScheduledFuture<?> lingerTimer;
+
+        private Batch(String clientId) {
+            this.clientId = clientId;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.google.ga4.mp.dispatch;
+
+/**
+ * What to do with an async send when the dispatch queue is full
+ */
+public enum OverflowPolicy {
+    /** Discard the request being submitted */
+    DROP_NEWEST,
+    /** Discard the oldest queued request to make room for the new one */
+    DROP_OLDEST,
+    /** Wait up to the configured block time for room in the queue, then discard the new request */
+    BLOCK,
+    /** Send the request on the calling thread, waiting up to the configured block time for an in-flight slot */
+    CALLER_RUNS
+}
@@ -0,0 +1,110 @@
+package com.google.ga4.mp.dispatch;
+
+import com.google.ga4.mp.DeliveryResult;
+import com.google.ga4.mp.EventParams;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An event accepted by GA4Analytics that has not been sent yet
+ */
+public final class PendingEvent {
+    /** Outbox position of an event that was not journaled */
+    public static final long NO_OUTBOX_POSITION = -1L;
+    // {"name":"","params":{}} plus separators
+    private static final int EVENT_OVERHEAD = 28;
+    // Rough upper bound for a serialized number or boolean
+    private static final int SCALAR_SIZE = 24;
+
+    private final String clientId;
+    private final String name;
+    private final EventParams params;
+    private final int estimatedSize;
+    private final long outboxPosition;
+    private final long createdNanos = System.nanoTime();
+    private final CompletableFuture<DeliveryResult> result = new CompletableFuture<>();
+
+    /**
+     * @param params Parameters, copied into an {@link EventParams}; may be null
+     */
+    public PendingEvent(String clientId, String name, Map<String, Object> params) {
+        this(clientId, name, params, NO_OUTBOX_POSITION);
+    }
+
+    /**
+     * @param params         Parameters, copied into an {@link EventParams}; may be null
+     * @param outboxPosition Position of the event in the outbox, or {@link #NO_OUTBOX_POSITION}
+     */
+    public PendingEvent(String clientId, String name, Map<String, Object> params, long outboxPosition) {
+        this(clientId, name, params != null ? EventParams.of(params) : null, outboxPosition);
+    }
+
+    /**
+     * @param params         Parameters, used as is; may be null
+     * @param outboxPosition Position of the event in the outbox, or {@link #NO_OUTBOX_POSITION}
+     */
+    public PendingEvent(String clientId, String name, EventParams params, long outboxPosition) {
+        this.clientId = clientId;
+        this.name = name;
+        this.params = params;
+        this.estimatedSize = estimateSize(name, params);
+        this.outboxPosition = outboxPosition;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Parameters of the event, may be null
+     */
+    public EventParams getParams() {
+        return params;
+    }
+
+    /**
+     * @return Approximate size in bytes of this event once serialized inside the "events" array
+     */
+    public int getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * @return Position of the event in the outbox, or {@link #NO_OUTBOX_POSITION} if it was not journaled
+     */
+    public long getOutboxPosition() {
+        return outboxPosition;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the event was accepted
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    /**
+     * @return Completed with the outcome of the request carrying this event, or exceptionally
+     * if the event was dropped or could not be sent
+     */
+    public CompletableFuture<DeliveryResult> getResult() {
+        return result;
+    }
+
+    private static int estimateSize(String name, EventParams params) {
+        int size = EVENT_OVERHEAD + name.length();
+        if (params != null) {
+            for (int i = 0; i < params.size(); i++) {
+                size += params.getKey(i).length() + 6;
+                size += params.getType(i) == EventParams.Type.STRING && params.getObject(i) != null
+                        ? ((String) params.getObject(i)).length() : SCALAR_SIZE;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,60 @@
+package com.google.ga4.mp.dispatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a fraction of live traffic so that retries cannot amplify an outage.
+ * Every first attempt deposits {@code ratio} of a token, every retry withdraws a whole token.
+ * The balance starts with a small reserve and is capped, which bounds retry bursts.
+ */
+public class RetryBudget {
+    private static final long SCALE = 1000;
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    /**
+     * @param ratio         Maximum number of retries per first attempt, e.g. 0.1 for 10%
+     * @param initialTokens Retries allowed before any traffic has been seen
+     * @param maxTokens     Maximum number of retries that can be saved up
+     */
+    public RetryBudget(double ratio, int initialTokens, int maxTokens) {
+        this.depositPerRequest = Math.round(ratio * SCALE);
+        this.maxBalance = (long) maxTokens * SCALE;
+        this.balance = new AtomicLong(Math.min((long) initialTokens * SCALE, maxBalance));
+    }
+
+    /**
+     * Records a first attempt
+     */
+    public void onRequest() {
+        long current;
+        long next;
+        do {
+            current = balance.get();
+            next = Math.min(maxBalance, current + depositPerRequest);
+        } while (current != next && !balance.compareAndSet(current, next));
+    }
+
+    /**
+     * @return true if a retry may be made, in which case its cost has been withdrawn
+     */
+    public boolean tryAcquireRetry() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * @return Number of retries currently allowed
+     */
+    public long getAvailableRetries() {
+        return balance.get() / SCALE;
+    }
+}
@@ -0,0 +1,103 @@
+package com.google.ga4.mp.dispatch;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which failed requests are retried and how long to wait before each retry.
+ * Delays grow exponentially from the initial backoff up to the maximum backoff, with full jitter.
+ * A Retry-After header from GA4 raises the delay to at least the requested time.
+ */
+public class RetryPolicy {
+    /** Retry-After values beyond this are treated as "do not retry" */
+    public static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(5);
+    /** Returned by {@link #retryDelayNanos(int, Duration)} when the request should not be retried */
+    public static final long NO_RETRY = -1L;
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    /**
+     * @param maxAttempts    Maximum number of attempts per request, including the first one
+     * @param initialBackoff Upper bound of the delay before the first retry
+     * @param maxBackoff     Upper bound of the delay before any retry
+     */
+    public RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = Math.max(initialBackoffNanos, maxBackoff.toNanos());
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return true for throttling (429) and server errors (5xx)
+     */
+    public static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * @return true for transport failures such as timeouts, refused connections and connection resets
+     */
+    public static boolean isRetryableError(Throwable error) {
+        return error instanceof IOException;
+    }
+
+    /**
+     * @param attempts   Number of attempts already made
+     * @param retryAfter Delay requested by the server, may be null
+     * @return Delay before the next attempt in nanoseconds, or {@link #NO_RETRY}
+     */
+    public long retryDelayNanos(int attempts, Duration retryAfter) {
+        if (attempts >= maxAttempts) {
+            return NO_RETRY;
+        }
+        if (retryAfter != null && retryAfter.compareTo(MAX_RETRY_AFTER) > 0) {
+            return NO_RETRY;
+        }
+        long ceiling = initialBackoffNanos;
+        for (int i = 1; i < attempts && ceiling < maxBackoffNanos; i++) {
+            ceiling *= 2;
+        }
+        ceiling = Math.min(ceiling, maxBackoffNanos);
+        long delay = ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+        if (retryAfter != null) {
+            delay = Math.max(delay, retryAfter.toNanos());
+        }
+        return delay;
+    }
+
+    /**
+     * Parses a Retry-After header, given either in seconds or as an HTTP date
+     *
+     * @return The requested delay, or null if the value is missing or invalid
+     */
+    public static Duration parseRetryAfter(String value, Instant now) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds >= 0 ? Duration.ofSeconds(seconds) : null;
+        } catch (NumberFormatException e) {
+            // Not delta-seconds, try HTTP date
+        }
+        try {
+            Instant retryAt = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            Duration delay = Duration.between(now, retryAt);
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
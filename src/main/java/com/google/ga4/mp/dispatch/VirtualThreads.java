@@ -0,0 +1,35 @@
+package com.google.ga4.mp.dispatch;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads. This is the Java 11 variant; the multi-release JAR replaces it with
+ * the one in src/main/java21 when running on Java 21 or later.
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if {@link #newThreadPerTaskExecutor(String)} is available on this runtime
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * @return true if the thread is a virtual thread; always false before Java 21
+     */
+    public static boolean isVirtual(Thread thread) {
+        return false;
+    }
+
+    /**
+     * @param namePrefix Prefix of the thread names, followed by a sequence number
+     * @return An executor starting a new virtual thread for each task
+     * @throws UnsupportedOperationException if the runtime is older than Java 21
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+}
@@ -0,0 +1,310 @@
+package com.google.ga4.mp.identity;
+
+import com.google.ga4.mp.Hashing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Maps application user keys to stable GA client IDs, so that a desktop installation keeps its client ID
+ * across restarts and a server reuses the client ID of each of its users.
+ * <p>
+ * The mapping is stored in an on-disk open-addressing hash table of 32-byte slots: two independent 64-bit
+ * hashes of the user key and the two numbers of the client ID. Lookups probe linearly from the slot the
+ * hash selects until they find the key or a free slot, which at the 70% maximum load takes a few reads on
+ * average but can take more in a crowded run. Recently used mappings are cached in memory. New mappings are
+ * written to the file immediately, so they survive a crash of the process; {@link #sync()} and
+ * {@link #close()} also force them to the disk. The table is rebuilt into a new file, moved into place, when
+ * it is more than 70% full; if that fails the current table stays in use until it is full.
+ */
+public final class ClientIdRegistry implements Closeable {
+    /** User key of the installation itself, used for the default client ID of GA4Analytics */
+    public static final String INSTALLATION_KEY = "";
+    /** Default number of mappings cached in memory */
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private static final Logger LOG = Logger.getLogger(ClientIdRegistry.class.getName());
+    private static final int MAGIC = 0x47344349; // "G4CI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Offset basis of the second, independent hash of each user key
+    private static final long FNV_OFFSET_2 = 0x84222325cbf29ce4L;
+
+    private final Path file;
+    private final Map<String, String> cache;
+    private final ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+    private FileChannel channel;
+    private int capacity;
+    private int size;
+
+    public ClientIdRegistry(Path file) throws IOException {
+        this(file, DEFAULT_CACHE_SIZE, INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param cacheSize Number of most recently used mappings kept in memory
+     */
+    public ClientIdRegistry(Path file, int cacheSize) throws IOException {
+        this(file, cacheSize, INITIAL_CAPACITY);
+    }
+
+    ClientIdRegistry(Path file, int cacheSize, int initialCapacity) throws IOException {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must not be negative");
+        }
+        if (Integer.bitCount(initialCapacity) != 1) {
+            throw new IllegalArgumentException("initialCapacity must be a power of two");
+        }
+        this.file = file;
+        this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            initialize(channel, initialCapacity);
+            this.capacity = initialCapacity;
+        } else {
+            readHeader();
+        }
+    }
+
+    /**
+     * Generates a client ID in the format used by GA: a random 31-bit number and the creation time in
+     * epoch seconds. The thread-local generator needs no coordination between threads.
+     */
+    public static String generateClientId() {
+        return format(ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE), System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * @return The client ID of the user, generating and storing one for a new user
+     */
+    public synchronized String getOrCreate(String userKey) throws IOException {
+        String clientId = get(userKey);
+        if (clientId != null) {
+            return clientId;
+        }
+        if ((size + 1) * 10L > capacity * 7L) {
+            try {
+                grow();
+            } catch (IOException e) {
+                if (size + 1 >= capacity) {
+                    throw e;
+                }
+                LOG.log(Level.WARNING, "Could not grow GA4 client ID registry " + file + ", keeping the current table", e);
+            }
+        }
+        long random = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+        long seconds = System.currentTimeMillis() / 1000;
+        long hash = hash(userKey, Hashing.FNV_OFFSET);
+        long check = hash(userKey, FNV_OFFSET_2);
+        int index = (int) hash & (capacity - 1);
+        while (readSlot(index)) {
+            index = (index + 1) & (capacity - 1);
+        }
+        writeSlot(channel, index, hash, check, random, seconds);
+        size++;
+        writeSize();
+        clientId = format(random, seconds);
+        cache.put(userKey, clientId);
+        return clientId;
+    }
+
+    /**
+     * @return The client ID of the user, or null if none was created
+     */
+    public synchronized String get(String userKey) throws IOException {
+        if (userKey == null) {
+            throw new IllegalArgumentException("userKey must not be null");
+        }
+        String cached = cache.get(userKey);
+        if (cached != null) {
+            return cached;
+        }
+        long hash = hash(userKey, Hashing.FNV_OFFSET);
+        long check = hash(userKey, FNV_OFFSET_2);
+        for (int index = (int) hash & (capacity - 1); readSlot(index); index = (index + 1) & (capacity - 1)) {
+            if (slot.getLong(0) == hash && slot.getLong(8) == check) {
+                String clientId = format(slot.getLong(16), slot.getLong(24));
+                cache.put(userKey, clientId);
+                return clientId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Number of stored mappings
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Forces stored mappings to the disk
+     */
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not close GA4 client ID registry " + file, e);
+        }
+    }
+
+    /**
+     * Copies the mappings into a table of twice the capacity in a new file, then moves it into place.
+     * The current table stays open and in use until then, so a failure leaves it untouched.
+     */
+    private void grow() throws IOException {
+        int newCapacity = capacity * 2;
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            initialize(target, newCapacity);
+            ByteBuffer probe = ByteBuffer.allocate(8);
+            for (int i = 0; i < capacity; i++) {
+                if (!readSlot(i)) {
+                    continue;
+                }
+                int index = (int) slot.getLong(0) & (newCapacity - 1);
+                while (isOccupied(target, index, probe)) {
+                    index = (index + 1) & (newCapacity - 1);
+                }
+                writeSlot(target, index, slot.getLong(0), slot.getLong(8), slot.getLong(16), slot.getLong(24));
+            }
+            ByteBuffer header = ByteBuffer.allocate(4).putInt(0, size);
+            target.write(header, 12);
+            target.force(false);
+            // The open channel follows the new table to its final name
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                target.close();
+                Files.deleteIfExists(temporary);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        FileChannel previous = channel;
+        channel = target;
+        capacity = newCapacity;
+        try {
+            previous.close();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Could not close the replaced GA4 client ID registry table", e);
+        }
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        int magic = header.getInt(0);
+        int version = header.getInt(4);
+        int storedCapacity = header.getInt(8);
+        if (magic != MAGIC || version != VERSION || Integer.bitCount(storedCapacity) != 1
+                || channel.size() < offset(storedCapacity)) {
+            channel.close();
+            throw new IOException(file + " is not a GA4 client ID registry");
+        }
+        this.capacity = storedCapacity;
+        this.size = header.getInt(12);
+    }
+
+    private static void initialize(FileChannel target, int capacity) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(capacity)
+                .putInt(0);
+        header.flip();
+        target.write(header, 0);
+        // Extends the file with zeroed, that is free, slots
+        target.write(ByteBuffer.allocate(1), offset(capacity) - 1);
+    }
+
+    /**
+     * Reads the slot into the shared buffer
+     *
+     * @return Whether the slot is occupied
+     */
+    private boolean readSlot(int index) throws IOException {
+        slot.clear();
+        while (slot.hasRemaining()) {
+            if (channel.read(slot, offset(index) + slot.position()) < 0) {
+                throw new IOException("Unexpected end of GA4 client ID registry " + file);
+            }
+        }
+        return slot.getLong(0) != 0;
+    }
+
+    private static boolean isOccupied(FileChannel target, int index, ByteBuffer probe) throws IOException {
+        probe.clear();
+        target.read(probe, offset(index));
+        return probe.getLong(0) != 0;
+    }
+
+    private static void writeSlot(FileChannel target, int index, long hash, long check, long random, long seconds)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE)
+                .putLong(hash)
+                .putLong(check)
+                .putLong(random)
+                .putLong(seconds);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer, offset(index) + buffer.position());
+        }
+    }
+
+    private void writeSize() throws IOException {
+        channel.write(ByteBuffer.allocate(4).putInt(0, size), 12);
+    }
+
+    private static long offset(int index) {
+        return HEADER_SIZE + (long) index * SLOT_SIZE;
+    }
+
+    private static String format(long random, long seconds) {
+        return random + "." + seconds;
+    }
+
+    /**
+     * FNV-1a hash of the user key, spread by the MurmurHash3 finalizer; never 0, which marks a free slot
+     */
+    private static long hash(String userKey, long offset) {
+        long hash = Hashing.hash(userKey, offset);
+        return hash != 0 ? hash : 1;
+    }
+}
@@ -0,0 +1,446 @@
+package com.google.ga4.mp.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counters, gauges and latency histograms of one GA4Analytics instance.
+ * Recording is lock-free and does not allocate; every recorded value is also passed to the registered
+ * {@link MetricsListener}s.
+ */
+public class GA4Metrics implements GA4MetricsMBean {
+    /** JMX domain of the registered MBeans */
+    public static final String JMX_DOMAIN = "com.google.ga4.mp";
+    private static final Logger LOG = Logger.getLogger(GA4Metrics.class.getName());
+    private static final AtomicInteger INSTANCE_COUNTER = new AtomicInteger();
+
+    private final MetricsListener[] listeners;
+    private final IntSupplier queueDepth;
+    private final IntSupplier inFlightRequests;
+    private final DoubleSupplier deduplicationFalsePositiveRate;
+    private final LongAdder eventsEnqueued = new LongAdder();
+    private final LongAdder eventsSent = new LongAdder();
+    private final LongAdder eventsDropped = new LongAdder();
+    private final LongAdder eventsAggregated = new LongAdder();
+    private final LongAdder eventsDeduplicated = new LongAdder();
+    private final LongAdder eventsInvalid = new LongAdder();
+    private final LongAdder eventsInvalidShape = new LongAdder();
+    private final LongAdder eventsSampledOut = new LongAdder();
+    private final LongAdder eventsRateLimited = new LongAdder();
+    private final LongAdder eventsFailedClientError = new LongAdder();
+    private final LongAdder eventsFailedServerError = new LongAdder();
+    private final LongAdder eventsFailedTransport = new LongAdder();
+    private final LongAdder eventsFailedOther = new LongAdder();
+    private final LongAdder requestsSent = new LongAdder();
+    private final LongAdder retriesScheduled = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LatencyHistogram serializeLatency = new LatencyHistogram();
+    private final LatencyHistogram roundTripLatency = new LatencyHistogram();
+    private final LatencyHistogram enqueueToAckLatency = new LatencyHistogram();
+    private ObjectName objectName;
+
+    /**
+     * @param queueDepth       Current number of requests waiting for a dispatcher thread
+     * @param inFlightRequests Current number of requests awaiting a response
+     */
+    public GA4Metrics(List<MetricsListener> listeners, IntSupplier queueDepth, IntSupplier inFlightRequests) {
+        this(listeners, queueDepth, inFlightRequests, () -> 0.0);
+    }
+
+    /**
+     * @param deduplicationFalsePositiveRate Current false positive estimate of the duplicate filter
+     */
+    public GA4Metrics(List<MetricsListener> listeners, IntSupplier queueDepth, IntSupplier inFlightRequests,
+                      DoubleSupplier deduplicationFalsePositiveRate) {
+        this.listeners = listeners.toArray(new MetricsListener[0]);
+        this.queueDepth = queueDepth;
+        this.inFlightRequests = inFlightRequests;
+        this.deduplicationFalsePositiveRate = deduplicationFalsePositiveRate;
+    }
+
+    public void recordEnqueued(int count) {
+        eventsEnqueued.add(count);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsEnqueued(count);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordDropped(int count) {
+        eventsDropped.add(count);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsDropped(count);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordAggregated(int count) {
+        eventsAggregated.add(count);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsAggregated(count);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordDeduplicated(int count) {
+        eventsDeduplicated.add(count);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsDeduplicated(count);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordInvalid(int count) {
+        eventsInvalid.add(count);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsInvalid(count);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordInvalidShape(int count) {
+        eventsInvalidShape.add(count);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsInvalidShape(count);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordSampledOut(int count) {
+        eventsSampledOut.add(count);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsSampledOut(count);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordRateLimited(int count) {
+        eventsRateLimited.add(count);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsRateLimited(count);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordSerialized(long nanos, int bytes) {
+        serializeLatency.record(nanos);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onSerialized(nanos, bytes);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordRequestCompleted(int statusCode, int bytes, long roundTripNanos) {
+        requestsSent.increment();
+        bytesSent.add(bytes);
+        roundTripLatency.record(roundTripNanos);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onRequestCompleted(statusCode, bytes, roundTripNanos);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordRequestFailed(Throwable error, long roundTripNanos) {
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onRequestFailed(error, roundTripNanos);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordRetryScheduled(int attempt) {
+        retriesScheduled.increment();
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onRetryScheduled(attempt);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordSent(int count) {
+        eventsSent.add(count);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsSent(count);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    /**
+     * @param statusCode Status of the last response, or {@link MetricsListener#NO_STATUS}
+     */
+    public void recordFailed(int count, int statusCode) {
+        if (statusCode == MetricsListener.NO_STATUS) {
+            eventsFailedTransport.add(count);
+        } else if (statusCode >= 400 && statusCode < 500) {
+            eventsFailedClientError.add(count);
+        } else if (statusCode >= 500 && statusCode < 600) {
+            eventsFailedServerError.add(count);
+        } else {
+            eventsFailedOther.add(count);
+        }
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventsFailed(count, statusCode);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    public void recordAcknowledged(long enqueueToAckNanos) {
+        enqueueToAckLatency.record(enqueueToAckNanos);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onEventAcknowledged(enqueueToAckNanos);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+    }
+
+    private static void listenerFailed(RuntimeException e) {
+        LOG.log(Level.FINE, "GA4 metrics listener failed", e);
+    }
+
+    /**
+     * Registers this instance with the platform MBean server under
+     * {@code com.google.ga4.mp:type=GA4Analytics,name=<name>}. A sequence number is appended to the name
+     * if it is already taken.
+     *
+     * @return The name the MBean was registered under
+     */
+    public synchronized ObjectName registerMBean(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String baseName = name != null ? name : "default";
+        try {
+            while (objectName == null) {
+                ObjectName candidate = new ObjectName(JMX_DOMAIN + ":type=GA4Analytics,name="
+                        + ObjectName.quote(baseName + "-" + INSTANCE_COUNTER.incrementAndGet()));
+                try {
+                    server.registerMBean(this, candidate);
+                    objectName = candidate;
+                } catch (InstanceAlreadyExistsException e) {
+                    // Registered by another class loader, try the next sequence number
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register GA4 metrics MBean", e);
+        }
+        return objectName;
+    }
+
+    /**
+     * Removes the MBean registered by {@link #registerMBean(String)}, if any
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOG.log(Level.FINE, "Could not unregister GA4 metrics MBean " + objectName, e);
+        }
+        objectName = null;
+    }
+
+    public LatencyHistogram getSerializeLatency() {
+        return serializeLatency;
+    }
+
+    public LatencyHistogram getRoundTripLatency() {
+        return roundTripLatency;
+    }
+
+    public LatencyHistogram getEnqueueToAckLatency() {
+        return enqueueToAckLatency;
+    }
+
+    @Override
+    public long getEventsEnqueued() {
+        return eventsEnqueued.sum();
+    }
+
+    @Override
+    public long getEventsSent() {
+        return eventsSent.sum();
+    }
+
+    @Override
+    public long getEventsDropped() {
+        return eventsDropped.sum();
+    }
+
+    @Override
+    public long getEventsAggregated() {
+        return eventsAggregated.sum();
+    }
+
+    @Override
+    public long getEventsDeduplicated() {
+        return eventsDeduplicated.sum();
+    }
+
+    @Override
+    public long getEventsInvalid() {
+        return eventsInvalid.sum();
+    }
+
+    @Override
+    public long getEventsInvalidShape() {
+        return eventsInvalidShape.sum();
+    }
+
+    @Override
+    public double getDeduplicationFalsePositiveRate() {
+        return deduplicationFalsePositiveRate.getAsDouble();
+    }
+
+    @Override
+    public long getEventsSampledOut() {
+        return eventsSampledOut.sum();
+    }
+
+    @Override
+    public long getEventsRateLimited() {
+        return eventsRateLimited.sum();
+    }
+
+    @Override
+    public long getEventsFailed() {
+        return eventsFailedClientError.sum() + eventsFailedServerError.sum() + eventsFailedTransport.sum()
+                + eventsFailedOther.sum();
+    }
+
+    @Override
+    public long getEventsFailedClientError() {
+        return eventsFailedClientError.sum();
+    }
+
+    @Override
+    public long getEventsFailedServerError() {
+        return eventsFailedServerError.sum();
+    }
+
+    @Override
+    public long getEventsFailedTransport() {
+        return eventsFailedTransport.sum();
+    }
+
+    @Override
+    public long getRequestsSent() {
+        return requestsSent.sum();
+    }
+
+    @Override
+    public long getRetriesScheduled() {
+        return retriesScheduled.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return inFlightRequests.getAsInt();
+    }
+
+    @Override
+    public long getSerializeLatencyP50Micros() {
+        return micros(serializeLatency.getPercentileNanos(50.0));
+    }
+
+    @Override
+    public long getSerializeLatencyP99Micros() {
+        return micros(serializeLatency.getPercentileNanos(99.0));
+    }
+
+    @Override
+    public long getRoundTripLatencyP50Micros() {
+        return micros(roundTripLatency.getPercentileNanos(50.0));
+    }
+
+    @Override
+    public long getRoundTripLatencyP99Micros() {
+        return micros(roundTripLatency.getPercentileNanos(99.0));
+    }
+
+    @Override
+    public long getRoundTripLatencyMaxMicros() {
+        return micros(roundTripLatency.getMaxNanos());
+    }
+
+    @Override
+    public long getEnqueueToAckLatencyP50Micros() {
+        return micros(enqueueToAckLatency.getPercentileNanos(50.0));
+    }
+
+    @Override
+    public long getEnqueueToAckLatencyP99Micros() {
+        return micros(enqueueToAckLatency.getPercentileNanos(99.0));
+    }
+
+    @Override
+    public long getEnqueueToAckLatencyMaxMicros() {
+        return micros(enqueueToAckLatency.getMaxNanos());
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
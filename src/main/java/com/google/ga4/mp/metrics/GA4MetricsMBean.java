@@ -0,0 +1,69 @@
+package com.google.ga4.mp.metrics;
+
+/**
+ * JMX view of {@link GA4Metrics}. Latencies are in microseconds.
+ */
+public interface GA4MetricsMBean {
+    long getEventsEnqueued();
+
+    long getEventsSent();
+
+    long getEventsDropped();
+
+    long getEventsAggregated();
+
+    long getEventsDeduplicated();
+
+    /**
+     * @return Events, including rollups, dropped by the event validator
+     */
+    long getEventsInvalid();
+
+    /**
+     * @return Events rejected because the shape validator found their shape invalid
+     */
+    long getEventsInvalidShape();
+
+    /**
+     * @return Estimated share of new events wrongly suppressed as duplicates, 0 without deduplication
+     */
+    double getDeduplicationFalsePositiveRate();
+
+    long getEventsSampledOut();
+
+    long getEventsRateLimited();
+
+    long getEventsFailed();
+
+    long getEventsFailedClientError();
+
+    long getEventsFailedServerError();
+
+    long getEventsFailedTransport();
+
+    long getRequestsSent();
+
+    long getRetriesScheduled();
+
+    long getBytesSent();
+
+    int getQueueDepth();
+
+    int getInFlightRequests();
+
+    long getSerializeLatencyP50Micros();
+
+    long getSerializeLatencyP99Micros();
+
+    long getRoundTripLatencyP50Micros();
+
+    long getRoundTripLatencyP99Micros();
+
+    long getRoundTripLatencyMaxMicros();
+
+    long getEnqueueToAckLatencyP50Micros();
+
+    long getEnqueueToAckLatencyP99Micros();
+
+    long getEnqueueToAckLatencyMaxMicros();
+}
@@ -0,0 +1,101 @@
+package com.google.ga4.mp.metrics;
+
+/**
+ * Receives metric events from GA4Analytics as they happen, e.g. to forward them to Micrometer or Prometheus.
+ * Callbacks run on the sending threads and must be fast and non-blocking; exceptions are logged and ignored.
+ */
+public interface MetricsListener {
+    /** Status code reported for events that failed without an HTTP response */
+    int NO_STATUS = -1;
+
+    default void onEventsEnqueued(int count) {
+    }
+
+    /**
+     * Events discarded by the overflow policy because the dispatch queue was full
+     */
+    default void onEventsDropped(int count) {
+    }
+
+    /**
+     * Events coalesced into a rollup instead of being enqueued individually
+     */
+    default void onEventsAggregated(int count) {
+    }
+
+    /**
+     * Events not sent because an identical event was seen within the deduplication window
+     */
+    default void onEventsDeduplicated(int count) {
+    }
+
+    /**
+     * Events, including rollups, not sent because the event validator rejected them
+     */
+    default void onEventsInvalid(int count) {
+    }
+
+    /**
+     * Events not sent because the shape validator found their shape invalid, with {@code InvalidShapePolicy.REJECT}
+     */
+    default void onEventsInvalidShape(int count) {
+    }
+
+    /**
+     * Events not sent because of their sample rate
+     */
+    default void onEventsSampledOut(int count) {
+    }
+
+    /**
+     * Events not sent because a rate limit was exceeded
+     */
+    default void onEventsRateLimited(int count) {
+    }
+
+    /**
+     * @param bytes Size of the request body before compression
+     */
+    default void onSerialized(long nanos, int bytes) {
+    }
+
+    /**
+     * An HTTP response was received, whatever its status
+     *
+     * @param bytes Size of the request body as sent
+     */
+    default void onRequestCompleted(int statusCode, int bytes, long roundTripNanos) {
+    }
+
+    /**
+     * A request failed without an HTTP response
+     */
+    default void onRequestFailed(Throwable error, long roundTripNanos) {
+    }
+
+    /**
+     * @param attempt Number of the attempt that has been scheduled
+     */
+    default void onRetryScheduled(int attempt) {
+    }
+
+    /**
+     * Events accepted by GA4 with a 2xx response
+     */
+    default void onEventsSent(int count) {
+    }
+
+    /**
+     * Events that finally failed, after retries
+     *
+     * @param statusCode Status of the last response, or {@link #NO_STATUS}
+     */
+    default void onEventsFailed(int count, int statusCode) {
+    }
+
+    /**
+     * @param enqueueToAckNanos Time from the creation of an event to its successful delivery
+     */
+    default void onEventAcknowledged(long enqueueToAckNanos) {
+    }
+}
@@ -0,0 +1,371 @@
+package com.google.ga4.mp.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.ga4.mp.dispatch.PendingEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Disk-backed, append-only log of events that have been accepted but not yet delivered.
+ * <p>
+ * Events are appended to fixed-size memory-mapped segment files before they are dispatched and
+ * acknowledged in place once GA4 has accepted them. A background thread forces dirty segments to disk
+ * every sync interval, so a single fsync commits every append made since the previous one.
+ * Segments whose records are all acknowledged are deleted; unacknowledged records found on startup
+ * are handed back through {@link #replay(Consumer)}. Delivery is at-least-once: an event acknowledged
+ * right before a crash may be replayed.
+ * <p>
+ * Record layout: length (int), state (byte), CRC32 of the body (int), body (JSON). The length is written
+ * last, so a torn append reads as the end of the segment.
+ * <p>
+ * An outbox holds an exclusive lock on a file in its directory until it is closed, so a second outbox,
+ * in this or another process, cannot replay or acknowledge the same records.
+ */
+public class Outbox implements Closeable {
+    private static final Logger LOG = Logger.getLogger(Outbox.class.getName());
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** Default size of a segment file */
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String LOCK_FILE = "outbox.lock";
+    private static final int HEADER_SIZE = 9;
+    private static final int STATE_OFFSET = 4;
+    private static final int CRC_OFFSET = 5;
+    private static final byte STATE_PENDING = 1;
+    private static final byte STATE_ACKED = 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FileChannel lockChannel;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService syncer;
+    private final Object appendLock = new Object();
+    private List<PendingEvent> recovered;
+    private Segment active;
+    private volatile boolean closed;
+
+    /**
+     * Opens the outbox in the given directory, recovering segments left by a previous run
+     *
+     * @param segmentSize  Size of each segment file in bytes
+     * @param syncInterval Interval between group commits of appended records to disk
+     * @throws IOException If the directory cannot be read or written, or another outbox has it open
+     */
+    public Outbox(Path directory, int segmentSize, Duration syncInterval) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.lockChannel = lock(this.directory);
+        try {
+            TreeMap<Integer, Path> existing = listSegments();
+            this.recovered = recoverSegments(existing);
+            this.active = openSegment(existing.isEmpty() ? 1 : existing.lastKey() + 1);
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+
+        this.syncer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ga4-outbox-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = Math.max(1, syncInterval.toNanos());
+        syncer.scheduleWithFixedDelay(this::sync, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Appends an event to the log
+     *
+     * @return The position of the record, to be passed to {@link #acknowledge(long)} once delivered
+     */
+    public long append(String clientId, String name, Map<String, Object> params) throws IOException {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("c", clientId);
+        record.put("n", name);
+        record.put("p", params);
+        byte[] body = objectMapper.writeValueAsBytes(record);
+        int recordSize = HEADER_SIZE + body.length;
+        if (recordSize > segmentSize - 4) {
+            throw new IOException("Event of " + body.length + " bytes does not fit in an outbox segment");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IOException("Outbox is closed");
+            }
+            // Keep 4 zero bytes after the last record as end marker
+            if (active.writeOffset + recordSize > segmentSize - 4) {
+                rollSegment();
+            }
+            Segment segment = active;
+            int offset = segment.writeOffset;
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.put(offset + STATE_OFFSET, STATE_PENDING);
+            buffer.putInt(offset + CRC_OFFSET, (int) crc.getValue());
+            ByteBuffer bodyView = buffer.duplicate();
+            bodyView.position(offset + HEADER_SIZE);
+            bodyView.put(body);
+            buffer.putInt(offset, body.length);
+            segment.writeOffset = offset + recordSize;
+            segment.pending.incrementAndGet();
+            segment.dirty = true;
+            return position(segment.sequence, offset);
+        }
+    }
+
+    /**
+     * Marks a record as delivered. Segments are deleted once all their records are acknowledged.
+     */
+    public void acknowledge(long position) {
+        if (position == PendingEvent.NO_OUTBOX_POSITION) {
+            return;
+        }
+        Segment segment = segments.get((int) (position >>> 32));
+        if (segment == null) {
+            return;
+        }
+        int offset = (int) position;
+        if (segment.buffer.get(offset + STATE_OFFSET) == STATE_ACKED) {
+            return;
+        }
+        segment.buffer.put(offset + STATE_OFFSET, STATE_ACKED);
+        segment.dirty = true;
+        if (segment.pending.decrementAndGet() == 0 && segment.sealed) {
+            deleteSegment(segment);
+        }
+    }
+
+    /**
+     * Hands every unacknowledged event found on startup to the consumer, once
+     */
+    public void replay(Consumer<PendingEvent> consumer) {
+        List<PendingEvent> events;
+        synchronized (appendLock) {
+            events = recovered;
+            recovered = null;
+        }
+        if (events != null) {
+            events.forEach(consumer);
+        }
+    }
+
+    /**
+     * Forces appended and acknowledged records to disk
+     */
+    public void sync() {
+        for (Segment segment : segments.values()) {
+            if (segment.dirty) {
+                segment.dirty = false;
+                try {
+                    segment.buffer.force();
+                } catch (RuntimeException e) {
+                    segment.dirty = true;
+                    LOG.log(Level.WARNING, "Could not sync GA4 outbox segment " + segment.path, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of appended records that have not been acknowledged
+     */
+    public long getPendingCount() {
+        long pending = 0;
+        for (Segment segment : segments.values()) {
+            pending += segment.pending.get();
+        }
+        return pending;
+    }
+
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            closed = true;
+        }
+        syncer.shutdown();
+        sync();
+        try {
+            // Closing the channel releases the lock
+            lockChannel.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not release the GA4 outbox lock in " + directory, e);
+        }
+    }
+
+    /**
+     * Takes the exclusive lock on the directory, failing at once if another outbox holds it
+     *
+     * @return The open channel of the lock file, which holds the lock until it is closed
+     */
+    private static FileChannel lock(Path directory) throws IOException {
+        Path lockFile = directory.resolve(LOCK_FILE);
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another outbox in this JVM
+            lock = null;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("GA4 outbox " + directory + " is already in use; " + lockFile + " is locked");
+        }
+        return channel;
+    }
+
+    private void rollSegment() throws IOException {
+        Segment previous = active;
+        active = openSegment(previous.sequence + 1);
+        previous.sealed = true;
+        if (previous.pending.get() == 0) {
+            deleteSegment(previous);
+        }
+    }
+
+    private Segment openSegment(int sequence) throws IOException {
+        Path path = directory.resolve(String.format("%010d%s", sequence, SEGMENT_SUFFIX));
+        Segment segment = new Segment(sequence, path, map(path));
+        segments.put(sequence, segment);
+        return segment;
+    }
+
+    private MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), segmentSize);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private TreeMap<Integer, Path> listSegments() throws IOException {
+        TreeMap<Integer, Path> existing = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                try {
+                    existing.put(Integer.parseInt(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length())), path);
+                } catch (NumberFormatException e) {
+                    LOG.log(Level.WARNING, "Ignoring unexpected file in GA4 outbox: {0}", path);
+                }
+            }
+        }
+        return existing;
+    }
+
+    private List<PendingEvent> recoverSegments(TreeMap<Integer, Path> existing) throws IOException {
+        List<PendingEvent> events = new ArrayList<>();
+        for (Map.Entry<Integer, Path> entry : existing.entrySet()) {
+            Segment segment = new Segment(entry.getKey(), entry.getValue(), map(entry.getValue()));
+            segment.sealed = true;
+            scan(segment, events);
+            if (segment.pending.get() == 0) {
+                deleteSegment(segment);
+            } else {
+                segments.put(segment.sequence, segment);
+            }
+        }
+        if (!events.isEmpty()) {
+            LOG.log(Level.INFO, "Recovered {0} undelivered GA4 events from outbox", events.size());
+        }
+        return events;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void scan(Segment segment, List<PendingEvent> events) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        int limit = buffer.capacity();
+        while (offset + HEADER_SIZE <= limit) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_SIZE + length > limit) {
+                break;
+            }
+            byte[] body = new byte[length];
+            ByteBuffer bodyView = buffer.duplicate();
+            bodyView.position(offset + HEADER_SIZE);
+            bodyView.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(offset + CRC_OFFSET)) {
+                LOG.log(Level.WARNING, "Truncating corrupt GA4 outbox segment {0} at offset {1}",
+                        new Object[]{segment.path, offset});
+                break;
+            }
+            if (buffer.get(offset + STATE_OFFSET) == STATE_PENDING) {
+                try {
+                    Map<String, Object> record = objectMapper.readValue(body, Map.class);
+                    events.add(new PendingEvent((String) record.get("c"), (String) record.get("n"),
+                            (Map<String, Object>) record.get("p"), position(segment.sequence, offset)));
+                    segment.pending.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    LOG.log(Level.WARNING, "Skipping unreadable GA4 outbox record in " + segment.path, e);
+                }
+            }
+            offset += HEADER_SIZE + length;
+        }
+        segment.writeOffset = offset;
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.sequence);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            // Still mapped on some platforms; it is removed on the next startup once fully acknowledged
+            LOG.log(Level.FINE, "Could not delete GA4 outbox segment " + segment.path, e);
+        }
+    }
+
+    private static long position(int sequence, int offset) {
+        return ((long) sequence << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static final class Segment {
+        private final int sequence;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger pending = new AtomicInteger();
+        private int writeOffset;
+        private volatile boolean sealed;
+        private volatile boolean dirty;
+
+        private Segment(int sequence, Path path, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
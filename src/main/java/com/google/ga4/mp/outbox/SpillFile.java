@@ -0,0 +1,94 @@
+package com.google.ga4.mp.outbox;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.ga4.mp.dispatch.PendingEvent;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Events left over by a deadline-bounded shutdown, one JSON object per line, for sending on the next start.
+ * Unlike the {@link Outbox}, nothing is written while events are sent; the file only exists between a
+ * shutdown that ran out of time and the following start.
+ */
+public final class SpillFile {
+    private static final Logger LOG = Logger.getLogger(SpillFile.class.getName());
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> RECORD_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    private SpillFile() {
+    }
+
+    /**
+     * Appends the events to the file. The lines are first written to a temporary file and then moved into
+     * place, so a crash while spilling leaves the previous content intact.
+     */
+    public static void write(Path file, Collection<PendingEvent> events) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            if (Files.exists(file)) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            for (PendingEvent event : events) {
+                Map<String, Object> record = new LinkedHashMap<>();
+                record.put("client_id", event.getClientId());
+                record.put("name", event.getName());
+                record.put("params", event.getParams() != null ? event.getParams().toMap() : null);
+                writer.write(objectMapper.writeValueAsString(record));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads and deletes the file
+     *
+     * @return The spilled events, or an empty list if there is no file. Unreadable lines are skipped.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<PendingEvent> take(Path file) throws IOException {
+        List<PendingEvent> events = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return events;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    Map<String, Object> record = objectMapper.readValue(line, RECORD_TYPE);
+                    events.add(new PendingEvent((String) record.get("client_id"), (String) record.get("name"),
+                            (Map<String, Object>) record.get("params")));
+                } catch (IOException | ClassCastException e) {
+                    LOG.log(Level.WARNING, "Skipping unreadable GA4 spill record in " + file, e);
+                }
+            }
+        }
+        Files.delete(file);
+        return events;
+    }
+}
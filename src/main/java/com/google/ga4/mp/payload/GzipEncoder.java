@@ -0,0 +1,137 @@
+package com.google.ga4.mp.payload;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip-compresses request bodies with Deflaters and output buffers taken from a small bounded pool,
+ * so sends do not allocate native zlib state for every request. The pool is shared by all threads
+ * rather than kept per thread, because with virtual threads every send runs on a new thread.
+ */
+public final class GzipEncoder {
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, // magic
+            Deflater.DEFLATED, // compression method
+            0,                 // flags
+            0, 0, 0, 0,        // modification time
+            0,                 // extra flags
+            (byte) 0xff        // operating system: unknown
+    };
+    private static final int TRAILER_SIZE = 8;
+    // Buffers that grew beyond this size are not kept around for the next body
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+    // Encoders kept when no caller asks for the pool size, matching the default dispatcher threads
+    private static final int DEFAULT_POOL_SIZE = 2;
+
+    private final int level;
+    private final BlockingQueue<Context> pool;
+    private volatile boolean closed;
+
+    /**
+     * @param level Deflate compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public GzipEncoder(int level) {
+        this(level, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param level    Deflate compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     * @param poolSize Maximum number of idle Deflaters and buffers kept for reuse, usually the number of sends
+     *                 running at once; encodes beyond it use a Deflater of their own and end it afterwards
+     */
+    public GzipEncoder(int level, int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be positive");
+        }
+        this.level = level;
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * @return The gzip encoding of the body
+     */
+    public byte[] encode(byte[] body) {
+        Context context = pool.poll();
+        if (context == null) {
+            context = new Context(new Deflater(level, true));
+        }
+        try {
+            return encode(context, body);
+        } finally {
+            release(context);
+        }
+    }
+
+    /**
+     * Ends the pooled Deflaters, releasing their native memory. Encodes still running end theirs when they
+     * finish, and later encodes use a Deflater of their own.
+     */
+    public void close() {
+        closed = true;
+        Context context;
+        while ((context = pool.poll()) != null) {
+            context.deflater.end();
+        }
+    }
+
+    private void release(Context context) {
+        if (!closed && pool.offer(context)) {
+            // close() may have drained the pool just before the offer; whoever removes the context ends it
+            if (!closed || !pool.remove(context)) {
+                return;
+            }
+        }
+        context.deflater.end();
+    }
+
+    private static byte[] encode(Context context, byte[] body) {
+        Deflater zlib = context.deflater;
+        zlib.reset();
+        zlib.setInput(body);
+        zlib.finish();
+
+        byte[] out = context.buffer;
+        System.arraycopy(HEADER, 0, out, 0, HEADER.length);
+        int length = HEADER.length;
+        while (!zlib.finished()) {
+            if (length == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            length += zlib.deflate(out, length, out.length - length);
+        }
+        if (length + TRAILER_SIZE > out.length) {
+            out = Arrays.copyOf(out, length + TRAILER_SIZE);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        length = writeIntLittleEndian(out, length, (int) crc.getValue());
+        length = writeIntLittleEndian(out, length, body.length);
+
+        if (out.length <= MAX_RETAINED_BUFFER) {
+            context.buffer = out;
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    private static int writeIntLittleEndian(byte[] out, int offset, int value) {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >>> 8);
+        out[offset + 2] = (byte) (value >>> 16);
+        out[offset + 3] = (byte) (value >>> 24);
+        return offset + 4;
+    }
+
+    private static final class Context {
+        private final Deflater deflater;
+        private byte[] buffer = new byte[8192];
+
+        private Context(Deflater deflater) {
+            this.deflater = deflater;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.google.ga4.mp.payload;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.ga4.mp.EventParams;
+import com.google.ga4.mp.dispatch.PendingEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams Measurement Protocol request bodies straight to UTF-8 bytes with a JsonGenerator.
+ * Field names are pre-encoded, the static user_properties and device segments are copied as raw bytes,
+ * and output buffers are reused from a small bounded pool, so no intermediate maps or Strings are created.
+ * The pool is shared rather than kept per thread, because with virtual threads every send runs on a new thread.
+ */
+public final class PayloadWriter {
+    private static final SerializableString CLIENT_ID = new SerializedString("client_id");
+    private static final SerializableString VALIDATION_BEHAVIOR = new SerializedString("validation_behavior");
+    private static final SerializableString USER_PROPERTIES = new SerializedString("user_properties");
+    private static final SerializableString DEVICE = new SerializedString("device");
+    private static final SerializableString EVENTS = new SerializedString("events");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString PARAMS = new SerializedString("params");
+
+    // Buffers that grew beyond this size are not kept around for the next payload
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+    // Buffers kept when no caller asks for the pool size, matching the default dispatcher threads
+    private static final int DEFAULT_POOL_SIZE = 2;
+
+    private final JsonFactory jsonFactory;
+    private final StaticPayload staticPayload;
+    private final String validationBehavior;
+    private final BlockingQueue<PayloadBuffer> buffers;
+
+    /**
+     * @param objectMapper       Used for parameter values that are not strings, numbers or booleans
+     * @param staticPayload      Pre-encoded user_properties and device segments
+     * @param validationBehavior Optional validation_behavior value, may be null
+     */
+    public PayloadWriter(ObjectMapper objectMapper, StaticPayload staticPayload, String validationBehavior) {
+        this(objectMapper, staticPayload, validationBehavior, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param objectMapper       Used for parameter values that are not strings, numbers or booleans
+     * @param staticPayload      Pre-encoded user_properties and device segments
+     * @param validationBehavior Optional validation_behavior value, may be null
+     * @param poolSize           Maximum number of idle output buffers kept for reuse, usually the number of sends
+     *                           running at once
+     */
+    public PayloadWriter(ObjectMapper objectMapper, StaticPayload staticPayload, String validationBehavior,
+                         int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be positive");
+        }
+        this.buffers = new ArrayBlockingQueue<>(poolSize);
+        this.jsonFactory = objectMapper.getFactory();
+        this.staticPayload = staticPayload;
+        this.validationBehavior = validationBehavior != null && !validationBehavior.isEmpty() ? validationBehavior : null;
+    }
+
+    /**
+     * @return The UTF-8 encoded request body for the given events
+     */
+    public byte[] write(String clientId, List<PendingEvent> events) throws IOException {
+        PayloadBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new PayloadBuffer();
+        }
+        buffer.reset();
+        try (JsonGenerator generator = jsonFactory.createGenerator(buffer)) {
+            generator.writeStartObject();
+            generator.writeFieldName(CLIENT_ID);
+            generator.writeString(clientId);
+
+            if (validationBehavior != null) {
+                generator.writeFieldName(VALIDATION_BEHAVIOR);
+                generator.writeString(validationBehavior);
+            }
+
+            generator.writeFieldName(USER_PROPERTIES);
+            generator.writeRawValue(staticPayload.getUserProperties());
+            if (staticPayload.getDevice() != null) {
+                generator.writeFieldName(DEVICE);
+                generator.writeRawValue(staticPayload.getDevice());
+            }
+
+            generator.writeFieldName(EVENTS);
+            generator.writeStartArray();
+            for (int i = 0; i < events.size(); i++) {
+                writeEvent(generator, events.get(i));
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        byte[] body = buffer.toByteArray();
+        if (buffer.capacity() <= MAX_RETAINED_BUFFER) {
+            buffers.offer(buffer);
+        }
+        return body;
+    }
+
+    private void writeEvent(JsonGenerator generator, PendingEvent event) throws IOException {
+        EventParams eventParams = event.getParams();
+
+        generator.writeStartObject();
+        generator.writeFieldName(NAME);
+        generator.writeString(event.getName());
+        generator.writeFieldName(PARAMS);
+        generator.writeStartObject();
+        if (eventParams != null) {
+            for (int i = 0; i < eventParams.size(); i++) {
+                writeSlot(generator, eventParams, i);
+            }
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeSlot(JsonGenerator generator, EventParams params, int index) throws IOException {
+        switch (params.getType(index)) {
+            case LONG:
+                generator.writeFieldName(params.getKey(index));
+                generator.writeNumber(params.getLong(index));
+                break;
+            case DOUBLE:
+                generator.writeFieldName(params.getKey(index));
+                generator.writeNumber(params.getDouble(index));
+                break;
+            case BOOLEAN:
+                generator.writeFieldName(params.getKey(index));
+                generator.writeBoolean(params.getBoolean(index));
+                break;
+            default:
+                writeParam(generator, params.getKey(index), params.getObject(index));
+                break;
+        }
+    }
+
+    private static void writeParam(JsonGenerator generator, String key, Object value) throws IOException {
+        generator.writeFieldName(key);
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else {
+            generator.writeObject(value);
+        }
+    }
+
+    private static final class PayloadBuffer extends ByteArrayOutputStream {
+        private PayloadBuffer() {
+            super(4096);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.google.ga4.mp.payload;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.ga4.mp.providers.SystemInfoProvider;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parts of the Measurement Protocol request that are the same for every event sent by a
+ * GA4Analytics instance: the collect URI and the pre-encoded user_properties and device JSON objects.
+ * The SystemInfoProvider is queried only once, when the first payload is written, so that creating this
+ * object does not wait for a slow provider.
+ */
+public final class StaticPayload {
+    private final URI collectUri;
+    private final ObjectMapper objectMapper;
+    private final SystemInfoProvider systemInfoProvider;
+    private final String appName;
+    private final String appVersion;
+    private volatile Encoded encoded;
+
+    public StaticPayload(ObjectMapper objectMapper, SystemInfoProvider systemInfoProvider,
+                         String appName, String appVersion, String endpoint,
+                         String measurementId, String apiSecret) {
+        this.collectUri = collectUri(endpoint, measurementId, apiSecret);
+        this.objectMapper = objectMapper;
+        this.systemInfoProvider = systemInfoProvider;
+        this.appName = appName;
+        this.appVersion = appVersion;
+    }
+
+    /**
+     * @return The collect (or debug collect) URI including measurement_id and api_secret
+     */
+    public URI getCollectUri() {
+        return collectUri;
+    }
+
+    /**
+     * @return The URI of the given collect (or debug collect) endpoint for a GA4 property
+     */
+    public static URI collectUri(String endpoint, String measurementId, String apiSecret) {
+        return URI.create(endpoint + "?measurement_id=" + measurementId + "&api_secret=" + apiSecret);
+    }
+
+    /**
+     * @return The user_properties JSON object
+     */
+    public SerializableString getUserProperties() {
+        return encoded().userProperties;
+    }
+
+    /**
+     * @return The device JSON object, or null if the provider reported no device information
+     */
+    public SerializableString getDevice() {
+        return encoded().device;
+    }
+
+    private Encoded encoded() {
+        Encoded current = encoded;
+        if (current == null) {
+            synchronized (this) {
+                current = encoded;
+                if (current == null) {
+                    current = new Encoded(objectMapper, systemInfoProvider, appName, appVersion);
+                    encoded = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static SerializableString encode(ObjectMapper objectMapper, Map<String, Object> value) {
+        try {
+            SerializedString json = new SerializedString(objectMapper.writeValueAsString(value));
+            // Encode to UTF-8 now so that every request reuses the cached bytes
+            json.asUnquotedUTF8();
+            return json;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode static GA4 payload", e);
+        }
+    }
+
+    private static Map<String, String> createValueMap(String value) {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("value", value);
+        return map;
+    }
+
+    private static void addIfNotNull(Map<String, Object> map, String key, String value) {
+        if (value != null && !value.isEmpty()) {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * The user_properties and device objects, encoded from one reading of the SystemInfoProvider
+     */
+    private static final class Encoded {
+        private final SerializableString userProperties;
+        private final SerializableString device;
+
+        private Encoded(ObjectMapper objectMapper, SystemInfoProvider systemInfoProvider,
+                        String appName, String appVersion) {
+            String osName = systemInfoProvider.getOsName();
+            String osVersion = systemInfoProvider.getOsVersion();
+
+            Map<String, Object> userPropertiesMap = new LinkedHashMap<>();
+            userPropertiesMap.put("app_name", createValueMap(appName));
+            userPropertiesMap.put("app_version", createValueMap(appVersion));
+            userPropertiesMap.put("os_name", createValueMap(osName));
+            userPropertiesMap.put("os_version", createValueMap(osVersion));
+            this.userProperties = encode(objectMapper, userPropertiesMap);
+
+            Map<String, Object> deviceMap = new LinkedHashMap<>();
+            addIfNotNull(deviceMap, "category", systemInfoProvider.getDeviceCategory());
+            addIfNotNull(deviceMap, "language", systemInfoProvider.getLanguage());
+            addIfNotNull(deviceMap, "screen_resolution", systemInfoProvider.getScreenResolution());
+            addIfNotNull(deviceMap, "operating_system", osName);
+            addIfNotNull(deviceMap, "operating_system_version", osVersion);
+            addIfNotNull(deviceMap, "model", systemInfoProvider.getDeviceModel());
+            addIfNotNull(deviceMap, "brand", systemInfoProvider.getDeviceBrand());
+            addIfNotNull(deviceMap, "browser", systemInfoProvider.getBrowser());
+            addIfNotNull(deviceMap, "browser_version", systemInfoProvider.getBrowserVersion());
+            this.device = deviceMap.isEmpty() ? null : encode(objectMapper, deviceMap);
+        }
+    }
+}
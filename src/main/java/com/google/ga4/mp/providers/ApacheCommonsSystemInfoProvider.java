@@ -47,6 +47,10 @@ public class ApacheCommonsSystemInfoProvider implements SystemInfoProvider {
 
     @Override
     public String getScreenResolution() {
+        // Loading AWT takes hundreds of milliseconds and a headless JVM has no screen to report
+        if (Boolean.getBoolean("java.awt.headless")) {
+            return null;
+        }
         try {
             Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
             return (int) screenSize.getWidth() + "x" + (int) screenSize.getHeight();
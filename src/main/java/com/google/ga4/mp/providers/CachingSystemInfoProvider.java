@@ -0,0 +1,188 @@
+package com.google.ga4.mp.providers;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SystemInfoProvider that queries another provider once, on a background thread started when it is
+ * created, and then returns the cached values. Getters wait for the probe only if it has not finished yet,
+ * so creating one costs a thread start no matter how slow the wrapped provider is. A probe that fails or takes
+ * longer than the maximum wait leaves every value unset.
+ * GA4Analytics wraps its default provider in one.
+ */
+public final class CachingSystemInfoProvider implements SystemInfoProvider {
+    private static final Logger LOG = Logger.getLogger(CachingSystemInfoProvider.class.getName());
+
+    /** Default time getters wait for the probe before giving up on it */
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(5);
+
+    private final CompletableFuture<Snapshot> snapshot = new CompletableFuture<>();
+    private final long maxWaitNanos;
+
+    public CachingSystemInfoProvider(SystemInfoProvider delegate) {
+        this(delegate, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * @param maxWait Time a getter waits for the probe to finish; once it passes, every value stays unset
+     */
+    public CachingSystemInfoProvider(SystemInfoProvider delegate, Duration maxWait) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must not be null");
+        }
+        if (maxWait == null || maxWait.isNegative() || maxWait.isZero()) {
+            throw new IllegalArgumentException("maxWait must be positive");
+        }
+        this.maxWaitNanos = maxWait.toNanos();
+        Thread thread = new Thread(() -> {
+            try {
+                snapshot.complete(new Snapshot(delegate));
+            } catch (Throwable e) {
+                // Whatever the wrapped provider throws, getters must not wait for a snapshot that never comes
+                LOG.log(Level.WARNING, "Could not query the GA4 system info provider, leaving every value unset", e);
+                snapshot.complete(Snapshot.UNSET);
+            }
+        }, "ga4-system-info");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return Time the wrapped provider took to answer every getter, or null while it is still being queried
+     *         or if the probe failed or was given up
+     */
+    public Duration getProbeTime() {
+        Snapshot current = snapshot.getNow(null);
+        return current != null && current != Snapshot.UNSET ? Duration.ofNanos(current.probeNanos) : null;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot.getNow(null);
+        if (current != null) {
+            return current;
+        }
+        try {
+            return snapshot.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Later getters do not wait again; a late probe result is discarded
+            if (snapshot.complete(Snapshot.UNSET)) {
+                LOG.log(Level.WARNING, "GA4 system info probe took longer than {0} ms, leaving every value unset",
+                        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+            }
+            return snapshot.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Snapshot.UNSET;
+        } catch (ExecutionException e) {
+            // Never completed exceptionally
+            return Snapshot.UNSET;
+        }
+    }
+
+    @Override
+    public String getOsName() {
+        return snapshot().osName;
+    }
+
+    @Override
+    public String getOsVersion() {
+        return snapshot().osVersion;
+    }
+
+    @Override
+    public String getDeviceCategory() {
+        return snapshot().deviceCategory;
+    }
+
+    @Override
+    public String getLanguage() {
+        return snapshot().language;
+    }
+
+    @Override
+    public String getScreenResolution() {
+        return snapshot().screenResolution;
+    }
+
+    @Override
+    public String getDeviceModel() {
+        return snapshot().deviceModel;
+    }
+
+    @Override
+    public String getDeviceBrand() {
+        return snapshot().deviceBrand;
+    }
+
+    @Override
+    public String getBrowser() {
+        return snapshot().browser;
+    }
+
+    @Override
+    public String getBrowserVersion() {
+        return snapshot().browserVersion;
+    }
+
+    /**
+     * Every value of the wrapped provider, read once
+     */
+    private static final class Snapshot {
+        // Every value unset, used when the probe failed or took too long
+        private static final Snapshot UNSET = new Snapshot();
+
+        private final String osName;
+        private final String osVersion;
+        private final String deviceCategory;
+        private final String language;
+        private final String screenResolution;
+        private final String deviceModel;
+        private final String deviceBrand;
+        private final String browser;
+        private final String browserVersion;
+        private final long probeNanos;
+
+        private Snapshot() {
+            this.osName = null;
+            this.osVersion = null;
+            this.deviceCategory = null;
+            this.language = null;
+            this.screenResolution = null;
+            this.deviceModel = null;
+            this.deviceBrand = null;
+            this.browser = null;
+            this.browserVersion = null;
+            this.probeNanos = 0;
+        }
+
+        private Snapshot(SystemInfoProvider delegate) {
+            long startNanos = System.nanoTime();
+            this.osName = probe("OS name", delegate::getOsName);
+            this.osVersion = probe("OS version", delegate::getOsVersion);
+            this.deviceCategory = probe("device category", delegate::getDeviceCategory);
+            this.language = probe("language", delegate::getLanguage);
+            this.screenResolution = probe("screen resolution", delegate::getScreenResolution);
+            this.deviceModel = probe("device model", delegate::getDeviceModel);
+            this.deviceBrand = probe("device brand", delegate::getDeviceBrand);
+            this.browser = probe("browser", delegate::getBrowser);
+            this.browserVersion = probe("browser version", delegate::getBrowserVersion);
+            this.probeNanos = System.nanoTime() - startNanos;
+        }
+
+        // A failing getter leaves its value unset instead of failing every event later
+        private static String probe(String name, Supplier<String> getter) {
+            try {
+                return getter.get();
+            } catch (RuntimeException | LinkageError e) {
+                LOG.log(Level.WARNING, "Could not determine the " + name + " for GA4, leaving it unset", e);
+                return null;
+            }
+        }
+    }
+}
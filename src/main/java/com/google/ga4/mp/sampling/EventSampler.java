@@ -0,0 +1,60 @@
+package com.google.ga4.mp.sampling;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether an event is sent, before any payload is built: first by the sample rate of its name,
+ * then by the per-name and global rate limits
+ */
+public final class EventSampler {
+    /** Parameter added to sampled events, holding the rate they were kept with */
+    public static final String SAMPLE_RATE_PARAM = "sample_rate";
+
+    private final double defaultSampleRate;
+    private final Map<String, Double> sampleRates;
+    private final TokenBucket globalLimit;
+    private final Map<String, TokenBucket> rateLimits;
+
+    /**
+     * @param defaultSampleRate Sample rate of event names without their own rate
+     * @param sampleRates       Sample rates by event name
+     * @param globalLimit       Limit applied to all events, may be null
+     * @param rateLimits        Limits by event name
+     */
+    public EventSampler(double defaultSampleRate, Map<String, Double> sampleRates, TokenBucket globalLimit,
+                        Map<String, TokenBucket> rateLimits) {
+        this.defaultSampleRate = defaultSampleRate;
+        this.sampleRates = new HashMap<>(sampleRates);
+        this.globalLimit = globalLimit;
+        this.rateLimits = new HashMap<>(rateLimits);
+    }
+
+    /**
+     * @return Probability between 0 and 1 that an event with the given name is kept
+     */
+    public double getSampleRate(String eventName) {
+        Double sampleRate = sampleRates.get(eventName);
+        return sampleRate != null ? sampleRate : defaultSampleRate;
+    }
+
+    public SamplingDecision decide(String eventName) {
+        double sampleRate = getSampleRate(eventName);
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return SamplingDecision.SAMPLED_OUT;
+        }
+        TokenBucket rateLimit = rateLimits.get(eventName);
+        if (rateLimit != null && !rateLimit.tryAcquire()) {
+            return SamplingDecision.RATE_LIMITED;
+        }
+        if (globalLimit != null && !globalLimit.tryAcquire()) {
+            // The event is not sent, so it must not use up its name's allowance
+            if (rateLimit != null) {
+                rateLimit.refund();
+            }
+            return SamplingDecision.RATE_LIMITED;
+        }
+        return SamplingDecision.KEEP;
+    }
+}
@@ -0,0 +1,10 @@
+package com.google.ga4.mp.sampling;
+
+/**
+ * Outcome of {@link EventSampler#decide(String)}
+ */
+public enum SamplingDecision {
+    KEEP,
+    SAMPLED_OUT,
+    RATE_LIMITED
+}
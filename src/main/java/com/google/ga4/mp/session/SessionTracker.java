@@ -0,0 +1,189 @@
+package com.google.ga4.mp.session;
+
+import com.google.ga4.mp.EventParams;
+import com.google.ga4.mp.Hashing;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks the GA4 session of each client ID: a client's session rotates after a period without events, and
+ * each event reports the time since the client's previous event as its engagement time.
+ * <p>
+ * State is kept in striped open-addressing tables of primitive arrays, keyed by a 64-bit hash of the client
+ * ID. A slot takes 20 bytes and tables are kept between 3/8 and 3/4 full, so 10 million active sessions
+ * take 270 to 530 MB. Sessions past the inactivity timeout are evicted whenever a stripe would grow, so
+ * memory follows the number of recently active clients rather than all clients ever seen.
+ */
+public final class SessionTracker {
+    /** Parameter holding the session start in epoch seconds */
+    public static final String SESSION_ID = "session_id";
+    /** Parameter holding the time since the client's previous event in the session */
+    public static final String ENGAGEMENT_TIME_MSEC = "engagement_time_msec";
+    /** Number of parameters added to each event */
+    public static final int PARAM_COUNT = 2;
+    /** Engagement time reported by the first event of a session */
+    public static final long FIRST_EVENT_ENGAGEMENT_MILLIS = 100;
+
+    private static final int DEFAULT_STRIPES = 64;
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    private final long timeoutMillis;
+    private final LongSupplier clock;
+    private final Stripe[] stripes;
+
+    /**
+     * @param inactivityTimeout Time without events after which a client's next event starts a new session
+     */
+    public SessionTracker(Duration inactivityTimeout) {
+        this(inactivityTimeout, DEFAULT_STRIPES, System::currentTimeMillis);
+    }
+
+    SessionTracker(Duration inactivityTimeout, int stripeCount, LongSupplier clock) {
+        if (inactivityTimeout.isNegative() || inactivityTimeout.isZero()) {
+            throw new IllegalArgumentException("inactivityTimeout must be positive");
+        }
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("stripeCount must be a power of two");
+        }
+        this.timeoutMillis = inactivityTimeout.toMillis();
+        this.clock = clock;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Records an event of the client and adds session_id and engagement_time_msec to its parameters,
+     * unless the caller set them
+     */
+    public void track(String clientId, EventParams params) {
+        long key = key(clientId);
+        long now = clock.getAsLong();
+        // Stripes are picked by the high bits of the hash, slots within a stripe by the low bits
+        Stripe stripe = stripes[(int) (key >>> 40) & (stripes.length - 1)];
+        long sessionId;
+        long engagementMillis;
+        synchronized (stripe) {
+            int slot = stripe.find(key);
+            if (slot < 0) {
+                slot = stripe.insert(key, now, timeoutMillis);
+                engagementMillis = FIRST_EVENT_ENGAGEMENT_MILLIS;
+                stripe.sessionStarts[slot] = (int) (now / 1000);
+            } else if (now - stripe.lastEventMillis[slot] > timeoutMillis) {
+                engagementMillis = FIRST_EVENT_ENGAGEMENT_MILLIS;
+                stripe.sessionStarts[slot] = (int) (now / 1000);
+            } else {
+                engagementMillis = Math.max(1, now - stripe.lastEventMillis[slot]);
+            }
+            stripe.lastEventMillis[slot] = Math.max(now, stripe.lastEventMillis[slot]);
+            // Epoch seconds fit an unsigned int until 2106
+            sessionId = Integer.toUnsignedLong(stripe.sessionStarts[slot]);
+        }
+        if (!params.containsKey(SESSION_ID)) {
+            params.putLong(SESSION_ID, sessionId);
+        }
+        if (!params.containsKey(ENGAGEMENT_TIME_MSEC)) {
+            params.putLong(ENGAGEMENT_TIME_MSEC, engagementMillis);
+        }
+    }
+
+    /**
+     * @return Number of tracked clients, including those whose session expired but was not evicted yet
+     */
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes the clients whose session expired
+     */
+    public void evictExpired() {
+        long now = clock.getAsLong();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.rebuild(stripe.keys.length, now, timeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * FNV-1a hash of the client ID, spread by the MurmurHash3 finalizer; 0 marks a free slot
+     */
+    static long key(String clientId) {
+        long hash = Hashing.hash(clientId, Hashing.FNV_OFFSET);
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Open-addressing table with linear probing; guarded by its own monitor
+     */
+    private static final class Stripe {
+        private long[] keys = new long[INITIAL_STRIPE_CAPACITY];
+        private long[] lastEventMillis = new long[INITIAL_STRIPE_CAPACITY];
+        private int[] sessionStarts = new int[INITIAL_STRIPE_CAPACITY];
+        private int size;
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = (int) key & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private int insert(long key, long now, long timeoutMillis) {
+            // Keep the load factor at or below 3/4, evicting expired sessions before growing
+            if ((size + 1) * 4L > keys.length * 3L) {
+                int live = 0;
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] != 0 && now - lastEventMillis[i] <= timeoutMillis) {
+                        live++;
+                    }
+                }
+                rebuild((live + 1) * 8L > keys.length * 3L ? keys.length * 2 : keys.length, now, timeoutMillis);
+            }
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            size++;
+            return slot;
+        }
+
+        private void rebuild(int capacity, long now, long timeoutMillis) {
+            long[] oldKeys = keys;
+            long[] oldLastEventMillis = lastEventMillis;
+            int[] oldSessionStarts = sessionStarts;
+            keys = new long[capacity];
+            lastEventMillis = new long[capacity];
+            sessionStarts = new int[capacity];
+            size = 0;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0 || now - oldLastEventMillis[i] > timeoutMillis) {
+                    continue;
+                }
+                int slot = (int) oldKeys[i] & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                lastEventMillis[slot] = oldLastEventMillis[i];
+                sessionStarts[slot] = oldSessionStarts[i];
+                size++;
+            }
+        }
+    }
+}
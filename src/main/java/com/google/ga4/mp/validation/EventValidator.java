@@ -0,0 +1,226 @@
+package com.google.ga4.mp.validation;
+
+import com.google.ga4.mp.EventParams;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks events against the GA4 collection limits before they are serialized, so that data the collector
+ * would silently discard never costs a request. Valid events are checked without allocating; only a
+ * violation allocates, to log it or to shorten a name or value.
+ */
+public final class EventValidator {
+    /** Maximum length of event and parameter names */
+    public static final int MAX_NAME_LENGTH = 40;
+    /** Maximum number of parameters per event */
+    public static final int MAX_PARAMS = 25;
+    /** Maximum length of string parameter values, except for the page parameters below */
+    public static final int MAX_VALUE_LENGTH = 100;
+    private static final Map<String, Integer> VALUE_LENGTH_EXCEPTIONS = Map.of(
+            "page_location", 1000,
+            "page_referrer", 420,
+            "page_title", 300);
+    private static final String[] RESERVED_PREFIXES = {"firebase_", "ga_", "google_"};
+    private static final Set<String> RESERVED_EVENT_NAMES = Set.of(
+            "ad_activeview", "ad_click", "ad_exposure", "ad_query", "ad_reward", "adunit_exposure",
+            "app_background", "app_clear_data", "app_exception", "app_install", "app_remove",
+            "app_store_refund", "app_update", "app_upgrade", "dynamic_link_app_open", "dynamic_link_app_update",
+            "dynamic_link_first_open", "error", "first_open", "first_visit", "in_app_purchase",
+            "notification_dismiss", "notification_foreground", "notification_open", "notification_receive",
+            "os_update", "session_start", "session_start_with_rollout", "user_engagement");
+    private static final Logger LOG = Logger.getLogger(EventValidator.class.getName());
+
+    private final ValidationAction action;
+    private final int maxParams;
+    private final LongAdder violations = new LongAdder();
+
+    public EventValidator(ValidationAction action) {
+        this(action, MAX_PARAMS);
+    }
+
+    /**
+     * @param maxParams Parameters allowed per event, less than 25 when parameters are added to every event
+     */
+    public EventValidator(ValidationAction action, int maxParams) {
+        if (action == null) {
+            throw new IllegalArgumentException("action must not be null");
+        }
+        if (maxParams < 0 || maxParams > MAX_PARAMS) {
+            throw new IllegalArgumentException("maxParams must be between 0 and " + MAX_PARAMS);
+        }
+        this.action = action;
+        this.maxParams = maxParams;
+    }
+
+    /**
+     * @return The first limit broken by the event, or null if it is valid
+     */
+    public Violation check(String eventName, EventParams params) {
+        if (eventName == null || !isValidName(eventName)) {
+            return Violation.EVENT_NAME_INVALID;
+        }
+        if (eventName.length() > MAX_NAME_LENGTH) {
+            return Violation.EVENT_NAME_TOO_LONG;
+        }
+        if (hasReservedPrefix(eventName) || RESERVED_EVENT_NAMES.contains(eventName)) {
+            return Violation.EVENT_NAME_RESERVED;
+        }
+        if (params == null) {
+            return null;
+        }
+        if (params.size() > maxParams) {
+            return Violation.TOO_MANY_PARAMS;
+        }
+        for (int i = 0; i < params.size(); i++) {
+            Violation violation = checkParam(params, i);
+            if (violation != null) {
+                return violation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies the configured action to the event. With {@link ValidationAction#TRUNCATE} the parameters
+     * are modified in place.
+     *
+     * @return The event name to send, shortened if needed, or null if the event must be dropped
+     */
+    public String apply(String eventName, EventParams params) {
+        Violation violation = check(eventName, params);
+        if (violation == null) {
+            return eventName;
+        }
+        violations.increment();
+        switch (action) {
+            case WARN:
+                LOG.log(Level.WARNING, "GA4 event ''{0}'' breaks a collection limit: {1}",
+                        new Object[]{eventName, violation});
+                return eventName;
+            case TRUNCATE:
+                return truncate(eventName, params);
+            default:
+                LOG.log(Level.FINE, "Dropping GA4 event ''{0}'': {1}", new Object[]{eventName, violation});
+                return null;
+        }
+    }
+
+    /**
+     * @return Number of events that broke a limit
+     */
+    public long getViolationCount() {
+        return violations.sum();
+    }
+
+    private String truncate(String eventName, EventParams params) {
+        if (eventName == null || !isValidName(eventName)) {
+            LOG.log(Level.FINE, "Dropping GA4 event with invalid name ''{0}''", eventName);
+            return null;
+        }
+        String name = eventName.length() > MAX_NAME_LENGTH ? eventName.substring(0, MAX_NAME_LENGTH) : eventName;
+        if (hasReservedPrefix(name) || RESERVED_EVENT_NAMES.contains(name)) {
+            LOG.log(Level.FINE, "Dropping GA4 event with reserved name ''{0}''", eventName);
+            return null;
+        }
+        if (params == null) {
+            return name;
+        }
+        for (int i = params.size() - 1; i >= 0; i--) {
+            String key = params.getKey(i);
+            if (!isValidName(key)) {
+                params.remove(i);
+                continue;
+            }
+            if (key.length() > MAX_NAME_LENGTH) {
+                String shortKey = key.substring(0, MAX_NAME_LENGTH);
+                if (params.containsKey(shortKey)) {
+                    params.remove(i);
+                    continue;
+                }
+                params.setKey(i, shortKey);
+                key = shortKey;
+            }
+            if (hasReservedPrefix(key)) {
+                params.remove(i);
+                continue;
+            }
+            if (params.getType(i) == EventParams.Type.STRING) {
+                String value = (String) params.getObject(i);
+                int maxLength = maxValueLength(key);
+                if (value != null && value.length() > maxLength) {
+                    params.putString(key, shorten(value, maxLength));
+                }
+            }
+        }
+        while (params.size() > maxParams) {
+            params.remove(params.size() - 1);
+        }
+        LOG.log(Level.FINE, "Truncated GA4 event ''{0}'' to fit the collection limits", eventName);
+        return name;
+    }
+
+    private static Violation checkParam(EventParams params, int index) {
+        String key = params.getKey(index);
+        if (!isValidName(key)) {
+            return Violation.PARAM_NAME_INVALID;
+        }
+        if (key.length() > MAX_NAME_LENGTH) {
+            return Violation.PARAM_NAME_TOO_LONG;
+        }
+        if (hasReservedPrefix(key)) {
+            return Violation.PARAM_NAME_RESERVED;
+        }
+        if (params.getType(index) == EventParams.Type.STRING) {
+            String value = (String) params.getObject(index);
+            if (value != null && value.length() > MAX_VALUE_LENGTH && value.length() > maxValueLength(key)) {
+                return Violation.PARAM_VALUE_TOO_LONG;
+            }
+        }
+        return null;
+    }
+
+    private static int maxValueLength(String key) {
+        return VALUE_LENGTH_EXCEPTIONS.getOrDefault(key, MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * Names start with a letter and contain only letters, digits and underscores
+     */
+    private static boolean isValidName(String name) {
+        if (name.isEmpty() || !isAsciiLetter(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!isAsciiLetter(c) && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean hasReservedPrefix(String name) {
+        for (String prefix : RESERVED_PREFIXES) {
+            if (name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cuts the value to the length without splitting a surrogate pair
+     */
+    private static String shorten(String value, int maxLength) {
+        int end = Character.isHighSurrogate(value.charAt(maxLength - 1)) ? maxLength - 1 : maxLength;
+        return value.substring(0, end);
+    }
+}
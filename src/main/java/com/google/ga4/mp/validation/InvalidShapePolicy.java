@@ -0,0 +1,11 @@
+package com.google.ga4.mp.validation;
+
+/**
+ * What to do with events whose shape failed validation against the debug endpoint
+ */
+public enum InvalidShapePolicy {
+    /** Send them anyway; the validation messages are logged once per shape */
+    LOG,
+    /** Drop them before they are sent */
+    REJECT
+}
@@ -0,0 +1,184 @@
+package com.google.ga4.mp.validation;
+
+import com.google.ga4.mp.EventParams;
+import com.google.ga4.mp.Hashing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Validates each event shape - its name, parameter keys and value types - once against the debug endpoint,
+ * and remembers the verdict for the most recently used shapes. Events of a shape not yet validated are
+ * sent as usual while the validation runs in the background, so only the first event of each shape costs
+ * an extra request. Cached verdicts are read without locking, and a full cache evicts its least recently
+ * used shapes in bulk.
+ */
+public final class ShapeValidator {
+    private static final Logger LOG = Logger.getLogger(ShapeValidator.class.getName());
+    // Share of the cache evicted at once when it is full, so that the full scan is rare
+    private static final int EVICTION_DIVISOR = 10;
+
+    /**
+     * Sends one event to the debug endpoint
+     */
+    @FunctionalInterface
+    public interface DebugClient {
+        /**
+         * @return Completed with the validation messages, empty if the event is valid
+         */
+        CompletableFuture<List<String>> validate(String eventName, EventParams params);
+    }
+
+    private final int maxShapes;
+    private final DebugClient debugClient;
+    private final Map<Long, CachedShape> verdicts = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+    // Advanced by every new shape; cache hits are stamped with its current value
+    private final AtomicLong clock = new AtomicLong();
+    private final LongAdder validations = new LongAdder();
+    private final LongAdder invalidShapes = new LongAdder();
+
+    /**
+     * @param maxShapes Number of shapes whose verdict is cached; the least recently used are evicted
+     */
+    public ShapeValidator(int maxShapes, DebugClient debugClient) {
+        if (maxShapes < 1) {
+            throw new IllegalArgumentException("maxShapes must be at least 1");
+        }
+        this.maxShapes = maxShapes;
+        this.debugClient = debugClient;
+    }
+
+    /**
+     * Returns the cached verdict of the event's shape, starting a background validation for a new shape
+     */
+    public ShapeVerdict check(String eventName, EventParams params) {
+        Long shape = fingerprint(eventName, params);
+        CachedShape cached = verdicts.get(shape);
+        if (cached == null) {
+            // Stamped ahead of the clock, so that hits after this insert count as more recent than it
+            CachedShape added = new CachedShape(clock.getAndAdd(2) + 1);
+            cached = verdicts.putIfAbsent(shape, added);
+            if (cached == null) {
+                evictOverflow();
+                validate(shape, added, eventName, params != null ? params.copy() : new EventParams(0));
+                return ShapeVerdict.UNKNOWN;
+            }
+        }
+        long now = clock.get();
+        if (cached.lastUsed != now) {
+            cached.lastUsed = now;
+        }
+        return cached.verdict;
+    }
+
+    // Removes the least recently used shapes once the cache is full, a tenth of it at a time. Shapes last used
+    // between the same two inserts share a stamp and are evicted together.
+    private void evictOverflow() {
+        if (verdicts.size() <= maxShapes) {
+            return;
+        }
+        synchronized (evictionLock) {
+            int overflow = verdicts.size() - maxShapes;
+            if (overflow <= 0) {
+                return;
+            }
+            long[] stamps = new long[verdicts.size()];
+            int count = 0;
+            for (CachedShape cached : verdicts.values()) {
+                if (count == stamps.length) {
+                    break;
+                }
+                stamps[count++] = cached.lastUsed;
+            }
+            int evicted = Math.min(overflow + maxShapes / EVICTION_DIVISOR, count);
+            if (evicted == 0) {
+                return;
+            }
+            Arrays.sort(stamps, 0, count);
+            long threshold = stamps[evicted - 1];
+            verdicts.values().removeIf(cached -> cached.lastUsed <= threshold);
+        }
+    }
+
+    private void validate(Long shape, CachedShape cached, String eventName, EventParams params) {
+        validations.increment();
+        CompletableFuture<List<String>> messages;
+        try {
+            messages = debugClient.validate(eventName, params);
+        } catch (RuntimeException e) {
+            messages = CompletableFuture.failedFuture(e);
+        }
+        messages.whenComplete((result, error) -> {
+            if (error != null) {
+                // Forget the shape so that a later event retries the validation
+                LOG.log(Level.FINE, "Could not validate GA4 event shape of " + eventName, error);
+                verdicts.remove(shape, cached);
+                return;
+            }
+            ShapeVerdict verdict = result.isEmpty() ? ShapeVerdict.VALID : ShapeVerdict.INVALID;
+            // Still applied if the shape was evicted meanwhile, where it is simply unused
+            cached.verdict = verdict;
+            // Counted once the verdict is cached, so a caller seeing the count also sees the verdict
+            if (verdict == ShapeVerdict.INVALID) {
+                invalidShapes.increment();
+                LOG.log(Level.WARNING, "GA4 event ''{0}'' with parameters {1} failed validation: {2}",
+                        new Object[]{eventName, params.toMap().keySet(), result});
+            }
+        });
+    }
+
+    /**
+     * @return Number of validation requests sent to the debug endpoint
+     */
+    public long getValidationCount() {
+        return validations.sum();
+    }
+
+    /**
+     * @return Number of shapes found invalid
+     */
+    public long getInvalidShapeCount() {
+        return invalidShapes.sum();
+    }
+
+    /**
+     * @return Number of shapes whose verdict is cached or pending
+     */
+    public int getCachedShapeCount() {
+        return verdicts.size();
+    }
+
+    /**
+     * Hashes the event name and each parameter's key and value type. Parameter values and order do not matter.
+     */
+    static long fingerprint(String eventName, EventParams params) {
+        long hash = Hashing.hash(eventName, Hashing.FNV_OFFSET);
+        if (params != null) {
+            long paramsHash = 0;
+            for (int i = 0; i < params.size(); i++) {
+                long entryHash = Hashing.fnv(Hashing.FNV_OFFSET, params.getKey(i)) ^ '=';
+                // Summing mixed entry hashes makes the result independent of iteration order
+                paramsHash += Hashing.mix((entryHash ^ params.getType(i).ordinal()) * Hashing.FNV_PRIME);
+            }
+            hash = hash * 31 + paramsHash;
+        }
+        return Hashing.mix(hash);
+    }
+
+    private static final class CachedShape {
+        private volatile ShapeVerdict verdict = ShapeVerdict.UNKNOWN;
+        private volatile long lastUsed;
+
+        private CachedShape(long lastUsed) {
+            this.lastUsed = lastUsed;
+        }
+    }
+}
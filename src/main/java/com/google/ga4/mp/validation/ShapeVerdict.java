@@ -0,0 +1,13 @@
+package com.google.ga4.mp.validation;
+
+/**
+ * Outcome of {@link ShapeValidator#check(String, com.google.ga4.mp.EventParams)}
+ */
+public enum ShapeVerdict {
+    /** First seen or still being validated; the event is sent */
+    UNKNOWN,
+    /** Accepted by the debug endpoint */
+    VALID,
+    /** The debug endpoint returned validation messages for this shape */
+    INVALID
+}
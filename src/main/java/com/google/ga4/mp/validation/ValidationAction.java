@@ -0,0 +1,13 @@
+package com.google.ga4.mp.validation;
+
+/**
+ * What {@link EventValidator} does with an event that breaks a GA4 limit
+ */
+public enum ValidationAction {
+    /** Drop the event before it is serialized */
+    DROP,
+    /** Shorten names and values and remove parameters until the event fits; drop it if it cannot be fixed */
+    TRUNCATE,
+    /** Log the violation and send the event unchanged */
+    WARN
+}
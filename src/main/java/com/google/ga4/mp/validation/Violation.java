@@ -0,0 +1,23 @@
+package com.google.ga4.mp.validation;
+
+/**
+ * A GA4 collection limit broken by an event, as reported by {@link EventValidator#check(String, com.google.ga4.mp.EventParams)}
+ */
+public enum Violation {
+    /** The event name is longer than 40 characters */
+    EVENT_NAME_TOO_LONG,
+    /** The event name is empty, does not start with a letter or has characters other than letters, digits and '_' */
+    EVENT_NAME_INVALID,
+    /** The event name is reserved by Google or starts with a reserved prefix */
+    EVENT_NAME_RESERVED,
+    /** The event has more than 25 parameters */
+    TOO_MANY_PARAMS,
+    /** A parameter name is longer than 40 characters */
+    PARAM_NAME_TOO_LONG,
+    /** A parameter name does not start with a letter or has characters other than letters, digits and '_' */
+    PARAM_NAME_INVALID,
+    /** A parameter name starts with a reserved prefix */
+    PARAM_NAME_RESERVED,
+    /** A string parameter value is longer than 100 characters, or the longer limit of its parameter */
+    PARAM_VALUE_TOO_LONG
+}
@@ -0,0 +1,34 @@
+package com.google.ga4.mp.dispatch;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads, Java 21 variant packaged under META-INF/versions/21
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if {@link #newThreadPerTaskExecutor(String)} is available on this runtime
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * @return true if the thread is a virtual thread
+     */
+    public static boolean isVirtual(Thread thread) {
+        return thread.isVirtual();
+    }
+
+    /**
+     * @param namePrefix Prefix of the thread names, followed by a sequence number
+     * @return An executor starting a new virtual thread for each task
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 1).factory());
+    }
+}
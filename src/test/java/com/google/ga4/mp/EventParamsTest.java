@@ -0,0 +1,114 @@
+package com.google.ga4.mp;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventParamsTest {
+
+    @Test
+    void testTypedSlots() {
+        EventParams params = new EventParams()
+                .putLong("count", 3)
+                .putDouble("price", 9.5)
+                .putBoolean("logged_in", true)
+                .putString("label", "signup");
+
+        assertEquals(4, params.size());
+        assertEquals(EventParams.Type.LONG, params.getType(0));
+        assertEquals(3L, params.getLong(0));
+        assertEquals(9.5, params.getDouble(params.indexOf("price")));
+        assertTrue(params.getBoolean(params.indexOf("logged_in")));
+        assertEquals("signup", params.getObject(params.indexOf("label")));
+        assertEquals(-1, params.indexOf("missing"));
+    }
+
+    @Test
+    void testPutUnboxesByType() {
+        EventParams params = new EventParams()
+                .put("int", 7)
+                .put("float", 1.5f)
+                .put("bool", Boolean.FALSE)
+                .put("text", "x")
+                .put("decimal", BigDecimal.ONE)
+                .put("nothing", null);
+
+        assertEquals(EventParams.Type.LONG, params.getType(0));
+        assertEquals(EventParams.Type.DOUBLE, params.getType(1));
+        assertEquals(EventParams.Type.BOOLEAN, params.getType(2));
+        assertEquals(EventParams.Type.STRING, params.getType(3));
+        assertEquals(EventParams.Type.OBJECT, params.getType(4));
+        assertEquals(EventParams.Type.OBJECT, params.getType(5));
+        assertNull(params.getValue(5));
+    }
+
+    @Test
+    void testPutReplacesExistingKey() {
+        EventParams params = new EventParams().putString("value", "1").putLong("value", 2);
+
+        assertEquals(1, params.size());
+        assertEquals(EventParams.Type.LONG, params.getType(0));
+        assertEquals(2L, params.getValue(0));
+    }
+
+    @Test
+    void testGrowsBeyondInitialCapacity() {
+        EventParams params = new EventParams(1);
+        for (int i = 0; i < 20; i++) {
+            params.putLong("p" + i, i);
+        }
+
+        assertEquals(20, params.size());
+        assertEquals(19L, params.getLong(params.indexOf("p19")));
+    }
+
+    @Test
+    void testMapRoundTrip() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", "1");
+        map.put("b", 2L);
+        map.put("c", 3.0);
+        map.put("d", true);
+
+        assertEquals(map, EventParams.of(map).toMap());
+    }
+
+    @Test
+    void testCopyIsIndependent() {
+        EventParams params = new EventParams().putLong("a", 1);
+        EventParams copy = params.copy();
+        copy.putLong("b", 2);
+        params.clear();
+
+        assertTrue(params.isEmpty());
+        assertEquals(2, copy.size());
+    }
+
+    @Test
+    void testRemoveAndRename() {
+        EventParams params = new EventParams().putLong("a", 1).putString("b", "two").putBoolean("c", true);
+
+        params.remove(1);
+        params.setKey(1, "d");
+
+        assertEquals(2, params.size());
+        assertEquals("a", params.getKey(0));
+        assertEquals("d", params.getKey(1));
+        assertTrue(params.getBoolean(1));
+        assertFalse(params.containsKey("b"));
+        assertThrows(IllegalArgumentException.class, () -> params.setKey(1, "a"));
+        assertThrows(IndexOutOfBoundsException.class, () -> params.remove(2));
+    }
+
+    @Test
+    void testRejectsNullKeyAndInvalidIndex() {
+        EventParams params = new EventParams();
+
+        assertThrows(IllegalArgumentException.class, () -> params.putString(null, "x"));
+        assertThrows(IndexOutOfBoundsException.class, () -> params.getKey(0));
+    }
+}
@@ -1,8 +1,47 @@
 package com.google.ga4.mp;
 
+import com.google.ga4.mp.dispatch.Destination;
+import com.google.ga4.mp.dispatch.OverflowPolicy;
+import com.google.ga4.mp.metrics.MetricsListener;
+import com.google.ga4.mp.outbox.Outbox;
 import com.google.ga4.mp.providers.SystemInfoProvider;
+import com.google.ga4.mp.testing.LatencyDistribution;
+import com.google.ga4.mp.testing.StubCollector;
+import com.google.ga4.mp.validation.InvalidShapePolicy;
+import com.google.ga4.mp.validation.ShapeValidator;
+import com.google.ga4.mp.validation.ValidationAction;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -148,6 +187,53 @@ class GA4AnalyticsTest {
         assertTrue(userAgent.contains("Java/"));
     }
 
+    @Test
+    void testStartupTimings() throws Exception {
+        try (StubCollector collector = StubCollector.start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .build();
+
+            StartupTimings timings = analytics.getStartupTimings();
+            assertTrue(timings.getPhases().containsKey("systemInfo"));
+            assertTrue(timings.getPhases().containsKey("dispatcher"));
+            for (Duration phase : timings.getPhases().values()) {
+                assertTrue(phase.compareTo(timings.getTotal()) <= 0);
+            }
+
+            // The first request waits for the background probe
+            analytics.event().eventAction("first_event").send();
+            assertTrue(collector.awaitEventsAccepted(1, Duration.ofSeconds(5)));
+            assertNotNull(analytics.getStartupTimings().getSystemInfoProbe());
+        }
+    }
+
+    @Test
+    void testCustomSystemInfoProviderIsNotQueriedByBuild() {
+        AtomicInteger calls = new AtomicInteger();
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withSystemInfoProvider(new SystemInfoProvider() {
+                    @Override
+                    public String getOsName() {
+                        calls.incrementAndGet();
+                        return "Custom OS";
+                    }
+
+                    @Override
+                    public String getOsVersion() {
+                        return "1.0";
+                    }
+                })
+                .build();
+
+        assertEquals(0, calls.get());
+        assertNull(analytics.getStartupTimings().getSystemInfoProbe());
+    }
+
     @Test
     void testEventBuilderCreation() {
         analytics = GA4Analytics.builder()
@@ -202,4 +288,830 @@ class GA4AnalyticsTest {
 
         assertDoesNotThrow(() -> analytics.shutdown());
     }
+
+    @Test
+    void testClientThatThrowsDoesNotLeakInFlightSlots() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withDestination("G-MIRROR1", "mirror-secret")
+                .withHttpClient(new ThrowingHttpClient())
+                .withMaxInFlightRequests(1)
+                .build();
+        List<CompletableFuture<DeliveryResult>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(analytics.event().eventAction("rejected_event").sendAsync());
+        }
+
+        assertTrue(analytics.flush(Duration.ofSeconds(5)).isComplete());
+        for (CompletableFuture<DeliveryResult> result : results) {
+            CompletionException error = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(IllegalArgumentException.class, error.getCause());
+        }
+        assertEquals(5, analytics.getDestinations().get(1).getEventsFailed());
+    }
+
+    @Test
+    void testEventsRejectedAfterShutdownFailAndSettle() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .build();
+        analytics.shutdown();
+
+        CompletableFuture<DeliveryResult> result = analytics.event().eventAction("late_event").sendAsync();
+        FlushResult flush = analytics.flush(Duration.ofSeconds(5));
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        assertTrue(flush.isComplete());
+        assertTrue(flush.getElapsed().compareTo(Duration.ofSeconds(1)) < 0);
+        assertEquals(0, analytics.getMetrics().getEventsEnqueued());
+    }
+
+    @Test
+    void testBatchedEventsAfterShutdownFailWithoutBeingJournaled(@TempDir Path outboxDirectory) throws Exception {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withBatching(true)
+                .withAggregation(Duration.ofHours(1))
+                .withOutbox(outboxDirectory)
+                .build();
+        analytics.shutdown();
+
+        CompletableFuture<DeliveryResult> event = analytics.event().eventAction("late_event").sendAsync();
+        CompletableFuture<DeliveryResult> rollup = analytics.sendAggregatedEvent("late_tick", new HashMap<>());
+
+        for (CompletableFuture<DeliveryResult> result : List.of(event, rollup)) {
+            CompletionException error = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        }
+        assertEquals(0, analytics.getMetrics().getEventsEnqueued());
+        assertEquals(0, analytics.getMetrics().getEventsAggregated());
+        try (Outbox outbox = new Outbox(outboxDirectory, Outbox.DEFAULT_SEGMENT_SIZE, Duration.ofMillis(10))) {
+            assertEquals(0, outbox.getPendingCount());
+        }
+    }
+
+    @Test
+    void testBuilderWithBatching() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withBatching(true)
+                .withMaxBatchSize(10)
+                .withMaxBatchLinger(Duration.ofMillis(200))
+                .withMaxBatchBytes(50_000)
+                .build();
+
+        assertNotNull(analytics);
+        assertDoesNotThrow(() -> analytics.event().eventAction("batched_event").sendAsync());
+    }
+
+    @Test
+    void testBuilderRejectsInvalidBatchSize() {
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withMaxBatchSize(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> GA4Analytics.builder().withMaxBatchSize(GA4Analytics.MAX_EVENTS_PER_REQUEST + 1));
+    }
+
+    @Test
+    void testBuilderWithBoundedQueue() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withQueueCapacity(100)
+                .withOverflowPolicy(OverflowPolicy.BLOCK)
+                .withMaxBlockTime(Duration.ofMillis(10))
+                .build();
+
+        assertNotNull(analytics);
+        assertEquals(0, analytics.getDroppedEventCount());
+        assertTrue(analytics.getQueueDepth() >= 0);
+    }
+
+    @Test
+    void testBuilderRejectsInvalidQueueCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withQueueCapacity(0));
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withOverflowPolicy(null));
+    }
+
+    @Test
+    void testBuilderWithOutbox(@TempDir Path outboxDirectory) {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withOutbox(outboxDirectory)
+                .withOutboxSyncInterval(Duration.ofMillis(10))
+                .build();
+
+        assertNotNull(analytics);
+        assertDoesNotThrow(() -> analytics.event().eventAction("journaled_event").sendAsync());
+    }
+
+    @Test
+    void testBuilderWithRetryConfiguration() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withMaxAttempts(5)
+                .withRetryBackoff(Duration.ofMillis(100), Duration.ofSeconds(10))
+                .withRetryBudgetRatio(0.2)
+                .build();
+
+        assertNotNull(analytics);
+    }
+
+    @Test
+    void testBuilderRejectsInvalidRetryConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withMaxAttempts(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> GA4Analytics.builder().withRetryBackoff(Duration.ofSeconds(10), Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withRetryBudgetRatio(1.5));
+    }
+
+    @Test
+    void testBuilderWithGzip() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withGzip(true)
+                .withGzipMinSize(0)
+                .build();
+
+        assertNotNull(analytics);
+        assertDoesNotThrow(() -> analytics.event().eventAction("compressed_event").send());
+    }
+
+    @Test
+    void testBuilderWithHttpClient() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withHttpClient(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build())
+                .build();
+
+        assertNotNull(analytics);
+        assertDoesNotThrow(() -> analytics.event().eventAction("custom_client_event").send());
+    }
+
+    @Test
+    void testBuilderWithMetrics() {
+        MetricsListener listener = new MetricsListener() {
+        };
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withMetricsListener(listener)
+                .withJmx(true)
+                .build();
+
+        analytics.event().eventAction("measured_event").sendAsync();
+
+        assertEquals(1, analytics.getMetrics().getEventsEnqueued());
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withMetricsListener(null));
+    }
+
+    @Test
+    void testBuilderWithExecutor() {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withExecutor(executor)
+                    .build();
+
+            assertNotNull(analytics);
+            assertDoesNotThrow(() -> analytics.event().eventAction("executor_event").sendAsync());
+        } finally {
+            analytics.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testBuilderWithVirtualThreads() {
+        // Falls back to the platform dispatcher threads before Java 21
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withVirtualThreads(true)
+                .build();
+
+        assertNotNull(analytics);
+        assertDoesNotThrow(() -> analytics.event().eventAction("virtual_thread_event").sendAsync());
+    }
+
+    @Test
+    void testVirtualThreadsKeepTheQueueBoundedWhenTheCollectorStalls() {
+        assertStalledCollectorDropsFlood(GA4Analytics.builder().withVirtualThreads(true));
+    }
+
+    @Test
+    void testThreadPerTaskExecutorKeepsTheQueueBoundedWhenTheCollectorStalls() {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            assertStalledCollectorDropsFlood(GA4Analytics.builder().withExecutor(executor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertStalledCollectorDropsFlood(GA4Analytics.Builder builder) {
+        try (StubCollector collector = StubCollector.builder()
+                .withLatency(LatencyDistribution.fixed(Duration.ofSeconds(30)))
+                .start()) {
+            analytics = builder
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withMaxInFlightRequests(2)
+                    .withQueueCapacity(4)
+                    .withMaxAttempts(1)
+                    .build();
+
+            for (int i = 0; i < 50; i++) {
+                analytics.event().eventAction("flood_event").sendAsync();
+            }
+
+            // Two requests in flight, at most two sends waiting for them and four queued; the rest are dropped
+            assertTrue(analytics.getMetrics().getEventsDropped() >= 42);
+            assertTrue(analytics.getQueueDepth() <= 4);
+        }
+    }
+
+    @Test
+    void testCallerRunsWaitsNoLongerThanMaxBlockTimeForAnInFlightSlot() {
+        try (StubCollector collector = StubCollector.builder()
+                .withLatency(LatencyDistribution.fixed(Duration.ofSeconds(30)))
+                .start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withMaxInFlightRequests(1)
+                    .withQueueCapacity(1)
+                    .withOverflowPolicy(OverflowPolicy.CALLER_RUNS)
+                    .withMaxBlockTime(Duration.ofMillis(50))
+                    .withMaxAttempts(1)
+                    .build();
+
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                analytics.event().eventAction("flood_event").sendAsync();
+            }
+
+            // One request in flight, at most one dispatcher thread waiting and one queued; callers give up on the rest
+            assertTrue(System.nanoTime() - startNanos < Duration.ofSeconds(5).toNanos());
+            assertTrue(analytics.getMetrics().getEventsDropped() >= 5);
+        }
+    }
+
+    @Test
+    void testSampledOutEventsAreNotSent() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withSampleRate("noisy_event", 0.0)
+                .build();
+
+        CompletableFuture<DeliveryResult> result = analytics.sendEvent("noisy_event", new HashMap<>(), true);
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertEquals(EventDroppedException.Reason.SAMPLED_OUT, ((EventDroppedException) error.getCause()).getReason());
+        assertEquals(1, analytics.getMetrics().getEventsSampledOut());
+        assertEquals(0, analytics.getMetrics().getEventsEnqueued());
+    }
+
+    @Test
+    void testSampledOutEventsDoNotReachTheDuplicateFilter() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withSampleRate("noisy_event", 0.0)
+                .withDeduplication(Duration.ofMinutes(1), 1000)
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            CompletionException error = assertThrows(CompletionException.class,
+                    () -> analytics.sendEvent("noisy_event", new HashMap<>(), true).join());
+            assertEquals(EventDroppedException.Reason.SAMPLED_OUT,
+                    ((EventDroppedException) error.getCause()).getReason());
+        }
+        assertEquals(2, analytics.getMetrics().getEventsSampledOut());
+        assertEquals(0, analytics.getMetrics().getEventsDeduplicated());
+    }
+
+    @Test
+    void testRateLimitedEventsAreNotSent() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withRateLimit(0.001, 1)
+                .build();
+
+        analytics.sendEvent("first_event", new HashMap<>(), true);
+        CompletableFuture<DeliveryResult> result = analytics.sendEvent("second_event", new HashMap<>(), true);
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertEquals(EventDroppedException.Reason.RATE_LIMITED, ((EventDroppedException) error.getCause()).getReason());
+        assertEquals(1, analytics.getMetrics().getEventsRateLimited());
+    }
+
+    @Test
+    void testBuilderRejectsInvalidSampleRate() {
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withSampleRate(1.5));
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withSampleRate("click", -0.1));
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withRateLimit(0.0, 1));
+    }
+
+    @Test
+    void testAggregatedEventsShareOneRollup() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withAggregation(Duration.ofHours(1))
+                .build();
+
+        CompletableFuture<DeliveryResult> first = analytics.event().eventAction("tick").eventValue(1).aggregated().sendAsync();
+        CompletableFuture<DeliveryResult> second = analytics.event().eventAction("tick").eventValue(4).aggregated().sendAsync();
+
+        assertSame(first, second);
+        assertEquals(2, analytics.getMetrics().getEventsAggregated());
+        assertEquals(0, analytics.getMetrics().getEventsEnqueued());
+
+        analytics.shutdown();
+        assertEquals(1, analytics.getMetrics().getEventsEnqueued());
+    }
+
+    @Test
+    void testRollupsAreValidated() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withAggregation(Duration.ofHours(1))
+                .withEventValidation(ValidationAction.DROP)
+                .build();
+        Map<String, Object> dimensions = new HashMap<>();
+        for (int i = 0; i < 22; i++) {
+            dimensions.put("dimension_" + i, i);
+        }
+
+        CompletableFuture<DeliveryResult> reserved = analytics.sendAggregatedEvent("ga_tick", new HashMap<>());
+        // 22 dimensions fit an event, but not with the rollup's value, aggregate_count and session parameters
+        CompletableFuture<DeliveryResult> crowded = analytics.sendAggregatedEvent("tick", dimensions);
+        analytics.flush(Duration.ofSeconds(5));
+
+        for (CompletableFuture<DeliveryResult> rollup : List.of(reserved, crowded)) {
+            CompletionException error = assertThrows(CompletionException.class, rollup::join);
+            assertEquals(EventDroppedException.Reason.INVALID, ((EventDroppedException) error.getCause()).getReason());
+        }
+        assertEquals(0, analytics.getMetrics().getEventsEnqueued());
+        assertEquals(2, analytics.getMetrics().getEventsInvalid());
+    }
+
+    @Test
+    void testBuilderRejectsInvalidAggregationInterval() {
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withAggregation(Duration.ZERO));
+    }
+
+    @Test
+    void testDuplicateEventsAreSuppressed() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withDeduplication(Duration.ofMinutes(1), 10_000)
+                .build();
+
+        analytics.event().eventAction("checkout").eventLabel("cart-1").sendAsync();
+        CompletableFuture<DeliveryResult> repeat = analytics.event().eventAction("checkout").eventLabel("cart-1").sendAsync();
+        analytics.event().eventAction("checkout").eventLabel("cart-2").sendAsync();
+
+        CompletionException error = assertThrows(CompletionException.class, repeat::join);
+        assertEquals(EventDroppedException.Reason.DUPLICATE, ((EventDroppedException) error.getCause()).getReason());
+        assertEquals(1, analytics.getMetrics().getEventsDeduplicated());
+        assertEquals(2, analytics.getMetrics().getEventsEnqueued());
+        assertTrue(analytics.getMetrics().getDeduplicationFalsePositiveRate() < 0.001);
+    }
+
+    @Test
+    void testBuilderRejectsInvalidDeduplication() {
+        assertThrows(IllegalArgumentException.class,
+                () -> GA4Analytics.builder().withDeduplication(Duration.ZERO, 100));
+        assertThrows(IllegalArgumentException.class,
+                () -> GA4Analytics.builder().withDeduplication(Duration.ofMinutes(1), 0));
+    }
+
+    @Test
+    void testSendEventWithEventParams() {
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .build();
+
+        CompletableFuture<DeliveryResult> result = analytics.sendEvent("typed_event",
+                new EventParams().putLong("value", 3).putBoolean("logged_in", true), true);
+
+        assertNotNull(result);
+        assertEquals(1, analytics.getMetrics().getEventsEnqueued());
+    }
+
+    @Test
+    void testBuilderRejectsInvalidEndpointBaseUrl() {
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withEndpointBaseUrl(null));
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withEndpointBaseUrl("localhost:8080"));
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withEndpointBaseUrl("ftp://example.com"));
+        assertDoesNotThrow(() -> GA4Analytics.builder().withEndpointBaseUrl("http://127.0.0.1:8080/"));
+    }
+
+    @Test
+    void testFlushWaitsForQueuedEvents() {
+        try (StubCollector collector = StubCollector.builder()
+                .withLatency(LatencyDistribution.fixed(Duration.ofMillis(20)))
+                .start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withBatching(true)
+                    .withMaxBatchSize(5)
+                    .withMaxBatchLinger(Duration.ofHours(1))
+                    .build();
+            for (int i = 0; i < 12; i++) {
+                analytics.event().eventAction("flushed_event").sendAsync();
+            }
+
+            FlushResult result = analytics.flush(Duration.ofSeconds(10));
+
+            assertTrue(result.isComplete());
+            assertEquals(12, result.getEventsSent());
+            assertEquals(12, collector.getEventsAccepted());
+        }
+    }
+
+    @Test
+    void testShutdownSpillsEventsPendingAtTheDeadline(@TempDir Path directory) throws Exception {
+        Path spillFile = directory.resolve("ga4-spill.jsonl");
+        CompletableFuture<DeliveryResult> pending;
+        try (StubCollector slowCollector = StubCollector.builder()
+                .withLatency(LatencyDistribution.fixed(Duration.ofSeconds(5)))
+                .start()) {
+            GA4Analytics slow = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withEndpointBaseUrl(slowCollector.getBaseUrl())
+                    .withSpillFile(spillFile)
+                    .build();
+            pending = slow.event().eventAction("slow_event").sendAsync();
+
+            FlushResult result = slow.shutdown(Duration.ofMillis(200));
+
+            assertFalse(result.isComplete());
+            assertEquals(1, result.getEventsAbandoned());
+            assertEquals(1, result.getEventsSpilled());
+            assertTrue(result.getElapsed().compareTo(Duration.ofSeconds(2)) < 0);
+        }
+        CompletionException error = assertThrows(CompletionException.class, pending::join);
+        assertEquals(EventDroppedException.Reason.ABANDONED, ((EventDroppedException) error.getCause()).getReason());
+
+        try (StubCollector collector = StubCollector.start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withSpillFile(spillFile)
+                    .build();
+
+            assertTrue(collector.awaitEventsAccepted(1, Duration.ofSeconds(5)));
+            assertEquals(1, collector.getEventsAccepted("slow_event"));
+        }
+    }
+
+    @Test
+    void testBatchesAreSerializedOnceForAllDestinations() {
+        try (StubCollector collector = StubCollector.start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withDestination("G-MIRROR1", "mirror-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withBatching(true)
+                    .withMaxBatchSize(5)
+                    .withMaxBatchLinger(Duration.ofHours(1))
+                    .build();
+            for (int i = 0; i < 10; i++) {
+                analytics.event().eventAction("mirrored_event").sendAsync();
+            }
+
+            FlushResult result = analytics.flush(Duration.ofSeconds(10));
+
+            assertTrue(result.isComplete());
+            assertEquals(10, result.getEventsSent());
+            assertEquals(20, collector.getEventsAccepted());
+            assertEquals(4, collector.getRequestCount());
+            assertEquals(2, analytics.getMetrics().getSerializeLatency().getCount());
+            Destination mirror = analytics.getDestinations().get(1);
+            assertEquals("G-MIRROR1", mirror.getMeasurementId());
+            assertEquals(10, mirror.getEventsSent());
+            assertEquals(0, mirror.getEventsFailed());
+        }
+    }
+
+    @Test
+    void testSyncSendReachesAllDestinations() throws Exception {
+        try (StubCollector collector = StubCollector.start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withDestination("G-MIRROR1", "mirror-secret")
+                    .withDestination("G-MIRROR2", "mirror-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .build();
+
+            analytics.event().eventAction("sync_event").send();
+
+            assertTrue(collector.awaitEventsAccepted(3, Duration.ofSeconds(5)));
+            assertEquals(3, analytics.getDestinations().size());
+            assertTrue(analytics.getDestinations().get(0).getCollectUri().toString().contains("G-TEST123"));
+        }
+    }
+
+    @Test
+    void testStalledMirrorDoesNotHoldBackThePrimary(@TempDir Path outboxDirectory) throws Exception {
+        CountDownLatch mirrorStalled = new CountDownLatch(1);
+        AtomicInteger mirrorRequests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/mp/collect", exchange -> {
+            try {
+                if (exchange.getRequestURI().getQuery().contains("G-MIRROR1")) {
+                    mirrorRequests.incrementAndGet();
+                    mirrorStalled.await(30, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withDestination("G-MIRROR1", "mirror-secret")
+                    .withEndpointBaseUrl("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                            + server.getAddress().getPort())
+                    .withMaxInFlightRequests(1)
+                    .withOutbox(outboxDirectory)
+                    .build();
+            List<CompletableFuture<DeliveryResult>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                results.add(analytics.event().eventAction("mirrored_event").sendAsync());
+            }
+
+            // The primary delivers every batch while the mirror still holds its first request
+            for (CompletableFuture<DeliveryResult> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS).isSuccess());
+            }
+            Destination mirror = analytics.getDestinations().get(1);
+            assertEquals(1, mirrorRequests.get());
+            assertEquals(0, mirror.getEventsSkipped());
+
+            // Events stay journaled until the mirror is done with them
+            analytics.shutdown(Duration.ofMillis(100));
+            analytics = null;
+            try (Outbox outbox = new Outbox(outboxDirectory, Outbox.DEFAULT_SEGMENT_SIZE, Duration.ofMillis(10))) {
+                assertEquals(5, outbox.getPendingCount());
+            }
+        } finally {
+            mirrorStalled.countDown();
+            server.stop(0);
+            serverExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testMirrorBacklogDeliversEveryBatch() throws Exception {
+        try (StubCollector collector = StubCollector.builder()
+                .withLatency(LatencyDistribution.fixed(Duration.ofMillis(20)))
+                .start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withDestination("G-MIRROR1", "mirror-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withMaxInFlightRequests(1)
+                    .build();
+            for (int i = 0; i < 10; i++) {
+                analytics.event().eventAction("mirrored_event").sendAsync();
+            }
+
+            assertTrue(analytics.flush(Duration.ofSeconds(10)).isComplete());
+            Destination mirror = analytics.getDestinations().get(1);
+            assertEquals(10, mirror.getEventsSent());
+            assertEquals(0, mirror.getEventsSkipped());
+            assertEquals(20, collector.getEventsAccepted());
+        }
+    }
+
+    @Test
+    void testBuilderRejectsInvalidDestination() {
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withDestination(null, "secret"));
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withDestination("G-MIRROR1", ""));
+        assertThrows(IllegalStateException.class, () -> GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withDestination("G-TEST123", "other-secret")
+                .build());
+    }
+
+    @Test
+    void testShapeValidationRejectsInvalidShapes() throws Exception {
+        try (StubCollector collector = StubCollector.builder()
+                .withValidationMessage("bad_event", "Event name is reserved")
+                .start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withShapeValidation(100, InvalidShapePolicy.REJECT)
+                    .build();
+            ShapeValidator validator = analytics.getShapeValidator();
+
+            // The first event of a shape is sent while its shape is validated
+            assertTrue(analytics.event().eventAction("bad_event").sendAsync().join().isSuccess());
+            for (int i = 0; i < 5; i++) {
+                assertTrue(analytics.event().eventAction("good_event").eventValue(i).sendAsync().join().isSuccess());
+            }
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (validator.getInvalidShapeCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            CompletionException error = assertThrows(CompletionException.class,
+                    () -> analytics.event().eventAction("bad_event").sendAsync().join());
+            assertEquals(EventDroppedException.Reason.INVALID_SHAPE,
+                    ((EventDroppedException) error.getCause()).getReason());
+            assertEquals(2, collector.getDebugRequestCount());
+            assertEquals(1, analytics.getMetrics().getEventsInvalidShape());
+            assertEquals(1, collector.getEventsAccepted("bad_event"));
+            assertEquals(5, collector.getEventsAccepted("good_event"));
+        }
+    }
+
+    @Test
+    void testBuilderRejectsInvalidShapeValidation() {
+        assertThrows(IllegalArgumentException.class,
+                () -> GA4Analytics.builder().withShapeValidation(0, InvalidShapePolicy.LOG));
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withShapeValidation(10, null));
+    }
+
+    @Test
+    void testEventValidationDropsInvalidEventsWithoutARequest() {
+        try (StubCollector collector = StubCollector.start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withEventValidation(ValidationAction.DROP)
+                    .build();
+
+            CompletionException error = assertThrows(CompletionException.class,
+                    () -> analytics.event().eventAction("an event name that is not allowed").sendAsync().join());
+
+            assertEquals(EventDroppedException.Reason.INVALID, ((EventDroppedException) error.getCause()).getReason());
+            assertEquals(0, collector.getRequestCount());
+            assertEquals(1, analytics.getMetrics().getEventsInvalid());
+            assertTrue(analytics.event().eventAction("valid_event").sendAsync().join().isSuccess());
+            assertEquals(1, analytics.getMetrics().getEventsInvalid());
+        }
+    }
+
+    @Test
+    void testBuilderRejectsNullValidationAction() {
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withEventValidation(null));
+    }
+
+    @Test
+    void testEventsOnBehalfOfOtherClients() throws Exception {
+        try (StubCollector collector = StubCollector.start()) {
+            analytics = GA4Analytics.builder()
+                    .withMeasurementId("G-TEST123")
+                    .withApiSecret("test-secret")
+                    .withEndpointBaseUrl(collector.getBaseUrl())
+                    .withSessionTimeout(Duration.ofMinutes(10))
+                    .build();
+
+            EventParams params = new EventParams().putString("page", "/home");
+            DeliveryResult result = analytics.sendEvent("42.1", "server_event", params, true).join();
+            analytics.event().clientId("43.1").eventAction("server_event").send();
+
+            assertTrue(result.isSuccess());
+            assertTrue(collector.awaitEventsAccepted(2, Duration.ofSeconds(5)));
+            assertTrue(params.containsKey("session_id"));
+            assertTrue(params.containsKey("engagement_time_msec"));
+            assertThrows(IllegalArgumentException.class, () -> analytics.sendEvent("", "server_event", null, true));
+        }
+    }
+
+    @Test
+    void testBuilderRejectsInvalidSessionTimeout() {
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withSessionTimeout(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> GA4Analytics.builder().withSessionTimeout(null));
+    }
+
+    @Test
+    void testClientIdIsStableAcrossInstances(@TempDir Path directory) throws Exception {
+        Path registryFile = directory.resolve("client-ids.bin");
+        GA4Analytics first = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withClientIdRegistry(registryFile)
+                .build();
+        String userClientId = first.getClientIdRegistry().getOrCreate("user-42");
+        first.shutdown();
+
+        analytics = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withClientIdRegistry(registryFile)
+                .build();
+
+        assertEquals(userClientId, analytics.getClientIdRegistry().get("user-42"));
+        assertEquals(first.getClientIdRegistry().size(), analytics.getClientIdRegistry().size());
+        assertEquals(2, analytics.getClientIdRegistry().size());
+    }
+
+    /**
+     * Client that rejects every request synchronously instead of failing the returned future
+     */
+    private static final class ThrowingHttpClient extends HttpClient {
+        @Override
+        public Optional<CookieHandler> cookieHandler() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Duration> connectTimeout() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Redirect followRedirects() {
+            return Redirect.NEVER;
+        }
+
+        @Override
+        public Optional<ProxySelector> proxy() {
+            return Optional.empty();
+        }
+
+        @Override
+        public SSLContext sslContext() {
+            return null;
+        }
+
+        @Override
+        public SSLParameters sslParameters() {
+            return null;
+        }
+
+        @Override
+        public Optional<Authenticator> authenticator() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Version version() {
+            return Version.HTTP_1_1;
+        }
+
+        @Override
+        public Optional<Executor> executor() {
+            return Optional.empty();
+        }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+            throw new IllegalArgumentException("unsupported request");
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                                HttpResponse.BodyHandler<T> responseBodyHandler) {
+            throw new IllegalArgumentException("unsupported request");
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                                HttpResponse.BodyHandler<T> responseBodyHandler,
+                                                                HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+            throw new IllegalArgumentException("unsupported request");
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package com.google.ga4.mp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashingTest {
+
+    @Test
+    void testFnvMatchesReferenceValues() {
+        // Published FNV-1a 64-bit test vectors
+        assertEquals(0xcbf29ce484222325L, Hashing.fnv(Hashing.FNV_OFFSET, ""));
+        assertEquals(0xaf63dc4c8601ec8cL, Hashing.fnv(Hashing.FNV_OFFSET, "a"));
+        assertEquals(0x85944171f73967e8L, Hashing.fnv(Hashing.FNV_OFFSET, "foobar"));
+    }
+
+    @Test
+    void testFnvContinuesAcrossValues() {
+        assertEquals(Hashing.fnv(Hashing.FNV_OFFSET, "foobar"),
+                Hashing.fnv(Hashing.fnv(Hashing.FNV_OFFSET, "foo"), "bar"));
+        assertEquals(Hashing.FNV_OFFSET * Hashing.FNV_PRIME, Hashing.fnv(Hashing.FNV_OFFSET, null));
+    }
+
+    @Test
+    void testHashMixesTheFnvHash() {
+        assertEquals(0, Hashing.mix(0));
+        assertEquals(Hashing.mix(0xaf63dc4c8601ec8cL), Hashing.hash("a", Hashing.FNV_OFFSET));
+        assertNotEquals(Hashing.hash("a", Hashing.FNV_OFFSET), Hashing.hash("a", 0x84222325cbf29ce4L));
+    }
+}
@@ -1,10 +1,18 @@
 package com.google.ga4.mp.builders;
 
+import com.google.ga4.mp.DeliveryResult;
 import com.google.ga4.mp.GA4Analytics;
+import com.google.ga4.mp.dispatch.VirtualThreads;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class EventBuilderTest {
@@ -105,4 +113,102 @@ class EventBuilderTest {
         assertNotNull(builder);
         assertDoesNotThrow(builder::send);
     }
+
+    @Test
+    void testEventBuilderSendAsyncReturnsDeliveryFuture() throws Exception {
+        CompletableFuture<DeliveryResult> delivery = analytics.event()
+                .eventCategory("test")
+                .eventAction("future_action")
+                .sendAsync();
+
+        assertNotNull(delivery);
+        // Completes with a result when GA4 is reachable, exceptionally otherwise
+        assertTrue(delivery.handle((result, error) -> result != null || error != null).get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testPooledEventIsReusedPerThread() throws Exception {
+        EventBuilder first = analytics.pooledEvent();
+        EventBuilder second = analytics.pooledEvent();
+        CompletableFuture<EventBuilder> other = CompletableFuture.supplyAsync(analytics::pooledEvent);
+
+        assertSame(first, second);
+        assertNotSame(first, other.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testPooledEventIsNotKeptByVirtualThreads() throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            // Covered by the testJava21 task
+            return;
+        }
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        try {
+            EventBuilder first = executor.submit(() -> {
+                EventBuilder builder = analytics.pooledEvent();
+                assertNotSame(builder, analytics.pooledEvent());
+                return builder;
+            }).get(5, TimeUnit.SECONDS);
+
+            assertNotSame(first, analytics.pooledEvent());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testPooledEventDoesNotKeepTheInstanceReachable() throws Exception {
+        GA4Analytics shortLived = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withSampleRate(0.0)
+                .build();
+        shortLived.pooledEvent().eventAction("sampled_out").sendAsync();
+        shortLived.shutdown();
+        WeakReference<GA4Analytics> reference = new WeakReference<>(shortLived);
+        shortLived = null;
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (reference.get() != null && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        assertNull(reference.get());
+    }
+
+    @Test
+    void testPooledEventHandsOffParametersOfAsyncEvents() {
+        GA4Analytics aggregating = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withAggregation(Duration.ofHours(1))
+                .build();
+
+        // Rollups are keyed by the handed-off maps, which must not be cleared when the builder is reused
+        aggregating.pooledEvent().eventAction("tick").eventLabel("a").aggregated().sendAsync();
+        aggregating.pooledEvent().eventAction("tick").eventLabel("b").aggregated().sendAsync();
+        aggregating.pooledEvent().eventAction("tick").eventLabel("a").aggregated().sendAsync();
+        aggregating.shutdown();
+
+        assertEquals(2, aggregating.getMetrics().getEventsEnqueued());
+    }
+
+    @Test
+    void testPooledEventIsResetBetweenEvents() {
+        GA4Analytics deduplicating = GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withDeduplication(Duration.ofMinutes(1), 1000)
+                .build();
+        try {
+            deduplicating.pooledEvent().eventAction("checkout").customParameter("cart", "1").sendAsync();
+            // Without a reset the leftover parameter would make this a repeat of the first event
+            deduplicating.pooledEvent().eventAction("checkout").sendAsync();
+
+            assertEquals(0, deduplicating.getMetrics().getEventsDeduplicated());
+        } finally {
+            deduplicating.shutdown();
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package com.google.ga4.mp.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testAddedHashesArePresent() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+
+        assertFalse(filter.put(42L));
+        assertTrue(filter.put(42L));
+        assertTrue(filter.mightContain(42L));
+        assertFalse(filter.mightContain(43L));
+    }
+
+    @Test
+    void testFalsePositiveRateStaysNearTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(random.nextLong());
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        double measured = falsePositives / 100_000.0;
+        assertTrue(measured < 0.02, "measured " + measured);
+        assertEquals(0.01, filter.getFalsePositiveRate(), 0.005);
+    }
+
+    @Test
+    void testSizing() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+
+        assertTrue(filter.getBitCount() >= 9585);
+        assertEquals(7, filter.getHashCount());
+        assertEquals(0.0, filter.getFalsePositiveRate());
+    }
+
+    @Test
+    void testRejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.0));
+    }
+}
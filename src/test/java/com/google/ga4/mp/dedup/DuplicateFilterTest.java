@@ -0,0 +1,97 @@
+package com.google.ga4.mp.dedup;
+
+import com.google.ga4.mp.EventParams;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateFilterTest {
+
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void testCanonicalHashIgnoresParamOrder() {
+        EventParams first = new EventParams().putString("a", "1").putLong("b", 2);
+        EventParams second = new EventParams().putLong("b", 2).putString("a", "1");
+
+        assertEquals(DuplicateFilter.canonicalHash("c1", "click", first),
+                DuplicateFilter.canonicalHash("c1", "click", second));
+        assertNotEquals(DuplicateFilter.canonicalHash("c1", "click", first),
+                DuplicateFilter.canonicalHash("c2", "click", first));
+        assertNotEquals(DuplicateFilter.canonicalHash("c1", "click", first),
+                DuplicateFilter.canonicalHash("c1", "tap", first));
+    }
+
+    @Test
+    void testCanonicalHashDistinguishesKeysAndValues() {
+        EventParams first = new EventParams().putString("ab", "c");
+        EventParams second = new EventParams().putString("a", "bc");
+
+        assertNotEquals(DuplicateFilter.canonicalHash("c1", "click", first),
+                DuplicateFilter.canonicalHash("c1", "click", second));
+    }
+
+    @Test
+    void testCanonicalHashHashesPrimitiveSlots() {
+        Map<String, Object> boxed = new HashMap<>();
+        boxed.put("value", 5);
+
+        assertEquals(DuplicateFilter.canonicalHash("c1", "buy", EventParams.of(boxed)),
+                DuplicateFilter.canonicalHash("c1", "buy", new EventParams().putLong("value", 5L)));
+        assertNotEquals(DuplicateFilter.canonicalHash("c1", "buy", new EventParams().putLong("value", 5L)),
+                DuplicateFilter.canonicalHash("c1", "buy", new EventParams().putLong("value", 6L)));
+        assertNotEquals(DuplicateFilter.canonicalHash("c1", "buy", new EventParams().putLong("value", 1L)),
+                DuplicateFilter.canonicalHash("c1", "buy", new EventParams().putBoolean("value", true)));
+    }
+
+    @Test
+    void testRepeatWithinWindowIsDuplicate() {
+        DuplicateFilter filter = new DuplicateFilter(Duration.ofSeconds(10), 1000, 0.001, 0L);
+
+        assertFalse(filter.isDuplicate(1L, 0L));
+        assertTrue(filter.isDuplicate(1L, WINDOW / 2));
+        assertFalse(filter.isDuplicate(2L, WINDOW / 2));
+    }
+
+    @Test
+    void testRepeatIsRememberedAcrossOneRotation() {
+        DuplicateFilter filter = new DuplicateFilter(Duration.ofSeconds(10), 1000, 0.001, 0L);
+
+        assertFalse(filter.isDuplicate(1L, WINDOW - 1));
+        assertTrue(filter.isDuplicate(1L, WINDOW + 1));
+    }
+
+    @Test
+    void testRepeatIsForgottenAfterTwoWindows() {
+        DuplicateFilter filter = new DuplicateFilter(Duration.ofSeconds(10), 1000, 0.001, 0L);
+
+        assertFalse(filter.isDuplicate(1L, 0L));
+        assertFalse(filter.isDuplicate(2L, WINDOW));
+        assertFalse(filter.isDuplicate(1L, 2 * WINDOW + 1));
+    }
+
+    @Test
+    void testQuietPeriodDropsStaleGeneration() {
+        DuplicateFilter filter = new DuplicateFilter(Duration.ofSeconds(10), 1000, 0.001, 0L);
+
+        assertFalse(filter.isDuplicate(1L, 0L));
+        assertFalse(filter.isDuplicate(1L, 5 * WINDOW));
+    }
+
+    @Test
+    void testFalsePositiveRateEstimate() {
+        DuplicateFilter filter = new DuplicateFilter(Duration.ofSeconds(10), 100, 0.01, 0L);
+        assertEquals(0.0, filter.getFalsePositiveRate());
+
+        for (long i = 0; i < 100; i++) {
+            filter.isDuplicate(i * 0x9E3779B97F4A7C15L, 0L);
+        }
+        assertTrue(filter.getFalsePositiveRate() > 0.0);
+        assertTrue(filter.getFalsePositiveRate() < 0.05);
+    }
+}
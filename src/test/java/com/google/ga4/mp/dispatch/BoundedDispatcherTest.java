@@ -0,0 +1,230 @@
+package com.google.ga4.mp.dispatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedDispatcherTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+    private BoundedDispatcher dispatcher;
+    private ExecutorService executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+            dispatcher.awaitTermination(Duration.ofSeconds(5));
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Occupies the single dispatcher thread so that following tasks stay queued
+     */
+    private void blockWorker() throws InterruptedException {
+        dispatcher.dispatch(1, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private Runnable record(String name) {
+        return () -> executed.add(name);
+    }
+
+    @Test
+    void testDropNewestDiscardsSubmittedTask() throws InterruptedException {
+        dispatcher = new BoundedDispatcher(1, 2, OverflowPolicy.DROP_NEWEST, Duration.ZERO);
+        blockWorker();
+
+        dispatcher.dispatch(1, record("a"));
+        dispatcher.dispatch(1, record("b"));
+        dispatcher.dispatch(5, record("c"));
+
+        assertEquals(5, dispatcher.getDroppedEventCount());
+        assertEquals(1, dispatcher.getDroppedRequestCount());
+        assertEquals(2, dispatcher.getQueueDepth());
+
+        release.countDown();
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(Duration.ofSeconds(5)));
+        assertEquals(List.of("a", "b"), executed);
+    }
+
+    @Test
+    void testDropOldestDiscardsQueuedTask() throws InterruptedException {
+        dispatcher = new BoundedDispatcher(1, 2, OverflowPolicy.DROP_OLDEST, Duration.ZERO);
+        blockWorker();
+
+        dispatcher.dispatch(3, record("a"));
+        dispatcher.dispatch(1, record("b"));
+        dispatcher.dispatch(1, record("c"));
+
+        assertEquals(3, dispatcher.getDroppedEventCount());
+
+        release.countDown();
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(Duration.ofSeconds(5)));
+        assertEquals(List.of("b", "c"), executed);
+    }
+
+    @Test
+    void testBlockGivesUpAfterMaxBlockTime() throws InterruptedException {
+        dispatcher = new BoundedDispatcher(1, 1, OverflowPolicy.BLOCK, Duration.ofMillis(50));
+        blockWorker();
+
+        dispatcher.dispatch(1, record("a"));
+        long start = System.nanoTime();
+        dispatcher.dispatch(1, record("b"));
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(waitedMillis >= 40, "should wait for room, waited " + waitedMillis + "ms");
+        assertTrue(waitedMillis < 2000, "should not wait beyond the block time, waited " + waitedMillis + "ms");
+        assertEquals(1, dispatcher.getDroppedEventCount());
+    }
+
+    @Test
+    void testCallerRunsExecutesOnCallingThread() throws InterruptedException {
+        dispatcher = new BoundedDispatcher(1, 1, OverflowPolicy.CALLER_RUNS, Duration.ZERO);
+        blockWorker();
+
+        dispatcher.dispatch(1, record("queued"));
+        Thread caller = Thread.currentThread();
+        dispatcher.dispatch(1, () -> executed.add(Thread.currentThread() == caller ? "caller" : "worker"));
+
+        assertEquals(List.of("caller"), executed);
+        assertEquals(0, dispatcher.getDroppedEventCount());
+    }
+
+    @Test
+    void testCallerRunsIsVisibleToTheTask() throws InterruptedException {
+        dispatcher = new BoundedDispatcher(1, 1, OverflowPolicy.CALLER_RUNS, Duration.ZERO);
+        blockWorker();
+
+        dispatcher.dispatch(1, record("queued"));
+        dispatcher.dispatch(1, () -> executed.add(BoundedDispatcher.isCallerRunning() ? "caller" : "worker"));
+
+        assertEquals(List.of("caller"), executed);
+        assertFalse(BoundedDispatcher.isCallerRunning());
+    }
+
+    @Test
+    void testExecuteBypassesTheFullQueue() throws InterruptedException {
+        dispatcher = new BoundedDispatcher(1, 1, OverflowPolicy.DROP_NEWEST, Duration.ZERO);
+        blockWorker();
+        dispatcher.dispatch(1, record("queued"));
+
+        CountDownLatch handedOff = new CountDownLatch(1);
+        dispatcher.execute(handedOff::countDown);
+
+        assertTrue(handedOff.await(5, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getDroppedEventCount());
+        assertEquals(1, dispatcher.getQueueDepth());
+    }
+
+    @Test
+    void testDroppedTaskRunsDropCallback() throws InterruptedException {
+        dispatcher = new BoundedDispatcher(1, 1, OverflowPolicy.DROP_NEWEST, Duration.ZERO);
+        blockWorker();
+
+        dispatcher.dispatch(1, record("queued"), record("queued_dropped"));
+        dispatcher.dispatch(1, record("rejected"), record("rejected_dropped"));
+
+        assertEquals(List.of("rejected_dropped"), executed);
+    }
+
+    @Test
+    void testDispatchAfterShutdownIsRejected() {
+        dispatcher = new BoundedDispatcher(1, 1, OverflowPolicy.DROP_NEWEST, Duration.ZERO);
+        dispatcher.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.dispatch(1, record("late")));
+    }
+
+    @Test
+    void testExternalExecutorAppliesOverflowPolicy() throws InterruptedException {
+        executor = Executors.newSingleThreadExecutor();
+        dispatcher = new BoundedDispatcher(executor, 1, 2, OverflowPolicy.DROP_NEWEST, Duration.ZERO);
+        blockWorker();
+
+        dispatcher.dispatch(1, record("a"));
+        dispatcher.dispatch(1, record("b"));
+        dispatcher.dispatch(4, record("c"));
+
+        assertEquals(4, dispatcher.getDroppedEventCount());
+        assertEquals(2, dispatcher.getQueueDepth());
+
+        release.countDown();
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(Duration.ofSeconds(5)));
+        assertEquals(List.of("a", "b"), executed);
+    }
+
+    @Test
+    void testExternalExecutorDropOldest() throws InterruptedException {
+        executor = Executors.newSingleThreadExecutor();
+        dispatcher = new BoundedDispatcher(executor, 1, 2, OverflowPolicy.DROP_OLDEST, Duration.ZERO);
+        blockWorker();
+
+        dispatcher.dispatch(3, record("a"));
+        dispatcher.dispatch(1, record("b"));
+        dispatcher.dispatch(1, record("c"));
+
+        assertEquals(3, dispatcher.getDroppedEventCount());
+
+        release.countDown();
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(Duration.ofSeconds(5)));
+        assertEquals(List.of("b", "c"), executed);
+    }
+
+    @Test
+    void testThreadPerTaskExecutorRunsAtMostMaxConcurrentTasks() throws InterruptedException {
+        executor = Executors.newCachedThreadPool();
+        dispatcher = new BoundedDispatcher(executor, 1, 2, OverflowPolicy.DROP_NEWEST, Duration.ZERO);
+        blockWorker();
+
+        // Without the limit every task would get its own thread and the queue would never fill up
+        dispatcher.dispatch(1, record("a"));
+        dispatcher.dispatch(1, record("b"));
+        dispatcher.dispatch(1, record("c"));
+
+        assertEquals(2, dispatcher.getQueueDepth());
+        assertEquals(1, dispatcher.getDroppedEventCount());
+
+        release.countDown();
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(Duration.ofSeconds(5)));
+        assertEquals(List.of("a", "b"), executed);
+    }
+
+    @Test
+    void testExternalExecutorRejectsAfterShutdown() {
+        executor = Executors.newCachedThreadPool();
+        dispatcher = new BoundedDispatcher(executor, 1, 2, OverflowPolicy.DROP_NEWEST, Duration.ZERO);
+        dispatcher.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.dispatch(1, record("a")));
+    }
+}
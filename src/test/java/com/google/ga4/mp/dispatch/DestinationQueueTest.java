@@ -0,0 +1,109 @@
+package com.google.ga4.mp.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DestinationQueueTest {
+
+    private static DestinationQueue queue(int maxInFlightRequests, int backlogCapacity, OverflowPolicy overflowPolicy) {
+        return new DestinationQueue("G-TEST123", URI.create("https://example.com/mp/collect?measurement_id=G-TEST123"),
+                maxInFlightRequests, new RetryBudget(0.1, 10, 100), backlogCapacity, overflowPolicy, Runnable::run);
+    }
+
+    @Test
+    void testInFlightLimit() throws InterruptedException {
+        DestinationQueue queue = queue(2, 10, OverflowPolicy.DROP_NEWEST);
+
+        queue.acquire();
+        queue.acquire();
+        assertEquals(2, queue.getInFlightRequests());
+
+        queue.release();
+        assertEquals(1, queue.getInFlightRequests());
+    }
+
+    @Test
+    void testSendsWaitForAFreeSlotInOrder() {
+        DestinationQueue queue = queue(1, 10, OverflowPolicy.DROP_NEWEST);
+        List<Integer> started = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            int send = i;
+            queue.submit(1, () -> started.add(send), () -> fail("skipped"));
+        }
+        assertEquals(List.of(0), started);
+        assertEquals(2, queue.getBacklogSize());
+
+        queue.release();
+        assertEquals(List.of(0, 1), started);
+        queue.release();
+        queue.release();
+        assertEquals(List.of(0, 1, 2), started);
+        assertEquals(0, queue.getBacklogSize());
+        assertEquals(0, queue.getInFlightRequests());
+    }
+
+    @Test
+    void testReleaseHandsTheSlotToTheExecutor() {
+        List<Runnable> handedOff = new ArrayList<>();
+        DestinationQueue queue = new DestinationQueue("G-TEST123", URI.create("https://example.com/mp/collect"),
+                1, new RetryBudget(0.1, 10, 100), 10, OverflowPolicy.DROP_NEWEST, handedOff::add);
+        List<Integer> started = new ArrayList<>();
+
+        queue.submit(1, () -> started.add(0), () -> fail("skipped"));
+        queue.submit(1, () -> started.add(1), () -> fail("skipped"));
+        queue.release();
+
+        assertEquals(List.of(0), started);
+        assertEquals(1, handedOff.size());
+        handedOff.get(0).run();
+        assertEquals(List.of(0, 1), started);
+
+        queue.release();
+        assertEquals(1, handedOff.size());
+    }
+
+    @Test
+    void testFullBacklogSkipsTheNewSend() {
+        DestinationQueue queue = queue(1, 1, OverflowPolicy.BLOCK);
+        List<String> events = new ArrayList<>();
+
+        queue.submit(1, () -> events.add("sent-a"), () -> events.add("skipped-a"));
+        queue.submit(2, () -> events.add("sent-b"), () -> events.add("skipped-b"));
+        queue.submit(3, () -> events.add("sent-c"), () -> events.add("skipped-c"));
+        queue.release();
+
+        assertEquals(List.of("sent-a", "skipped-c", "sent-b"), events);
+        assertEquals(3, queue.getDestination().getEventsSkipped());
+    }
+
+    @Test
+    void testFullBacklogSkipsTheOldestSendWithDropOldest() {
+        DestinationQueue queue = queue(1, 1, OverflowPolicy.DROP_OLDEST);
+        List<String> events = new ArrayList<>();
+
+        queue.submit(1, () -> events.add("sent-a"), () -> events.add("skipped-a"));
+        queue.submit(2, () -> events.add("sent-b"), () -> events.add("skipped-b"));
+        queue.submit(3, () -> events.add("sent-c"), () -> events.add("skipped-c"));
+        queue.release();
+
+        assertEquals(List.of("sent-a", "skipped-b", "sent-c"), events);
+        assertEquals(2, queue.getDestination().getEventsSkipped());
+    }
+
+    @Test
+    void testCountersAreReportedByTheDestination() {
+        DestinationQueue queue = queue(1, 1, OverflowPolicy.DROP_NEWEST);
+
+        queue.recordSent(4);
+        queue.recordFailed(1);
+
+        assertEquals(4, queue.getDestination().getEventsSent());
+        assertEquals(1, queue.getDestination().getEventsFailed());
+    }
+}
@@ -0,0 +1,26 @@
+package com.google.ga4.mp.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DestinationTest {
+
+    @Test
+    void testCounters() {
+        Destination destination = new Destination("G-TEST123",
+                URI.create("https://example.com/mp/collect?measurement_id=G-TEST123"));
+
+        destination.recordSent(5);
+        destination.recordSent(2);
+        destination.recordFailed(3);
+        destination.recordSkipped(1);
+
+        assertEquals(7, destination.getEventsSent());
+        assertEquals(3, destination.getEventsFailed());
+        assertEquals(1, destination.getEventsSkipped());
+        assertTrue(destination.toString().contains("G-TEST123"));
+    }
+}
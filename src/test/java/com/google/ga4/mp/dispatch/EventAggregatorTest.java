@@ -0,0 +1,155 @@
+package com.google.ga4.mp.dispatch;
+
+import com.google.ga4.mp.DeliveryResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventAggregatorTest {
+
+    private final List<Map<String, Object>> sent = new CopyOnWriteArrayList<>();
+    private final DeliveryResult delivered = new DeliveryResult(1, 204, Duration.ZERO, 1, 1);
+    private EventAggregator aggregator;
+
+    @AfterEach
+    void tearDown() {
+        if (aggregator != null) {
+            aggregator.close();
+        }
+    }
+
+    private EventAggregator.Sink recordingSink() {
+        return (clientId, eventName, params) -> {
+            Map<String, Object> event = new HashMap<>(params);
+            event.put("name", eventName);
+            sent.add(event);
+            return CompletableFuture.completedFuture(delivered);
+        };
+    }
+
+    private static Map<String, Object> params(String label, Object value) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("event_label", label);
+        if (value != null) {
+            params.put("value", value);
+        }
+        return params;
+    }
+
+    @Test
+    void testEventsWithSameParamsAreCoalesced() {
+        aggregator = new EventAggregator(Duration.ofHours(1), recordingSink());
+
+        CompletableFuture<DeliveryResult> first = aggregator.add("c1", "item_viewed", params("home", 2));
+        CompletableFuture<DeliveryResult> second = aggregator.add("c1", "item_viewed", params("home", 3));
+        aggregator.add("c1", "item_viewed", params("home", null));
+
+        assertSame(first, second);
+        assertEquals(1, aggregator.getPendingRollupCount());
+
+        aggregator.flush();
+
+        assertEquals(1, sent.size());
+        assertEquals(6L, sent.get(0).get("value"));
+        assertEquals(3L, sent.get(0).get(EventAggregator.COUNT_PARAM));
+        assertEquals("home", sent.get(0).get("event_label"));
+        assertSame(delivered, first.join());
+    }
+
+    @Test
+    void testDifferentParamsAndClientsAreSeparateRollups() {
+        aggregator = new EventAggregator(Duration.ofHours(1), recordingSink());
+
+        aggregator.add("c1", "item_viewed", params("home", 1));
+        aggregator.add("c1", "item_viewed", params("cart", 1));
+        aggregator.add("c2", "item_viewed", params("home", 1));
+        aggregator.add("c1", "item_added", params("home", 1));
+
+        assertEquals(4, aggregator.getPendingRollupCount());
+        aggregator.flush();
+        assertEquals(4, sent.size());
+        assertEquals(0, aggregator.getPendingRollupCount());
+    }
+
+    @Test
+    void testCallerMayReuseItsParamsMap() {
+        aggregator = new EventAggregator(Duration.ofHours(1), recordingSink());
+        Map<String, Object> params = params("home", null);
+
+        aggregator.add("c1", "item_viewed", params);
+        params.put("event_label", "cart");
+        aggregator.add("c1", "item_viewed", params);
+        params.put("event_label", "home");
+        aggregator.add("c1", "item_viewed", params);
+
+        assertEquals(2, aggregator.getPendingRollupCount());
+        aggregator.flush();
+        Map<Object, Object> counts = new HashMap<>();
+        for (Map<String, Object> event : sent) {
+            counts.put(event.get("event_label"), event.get(EventAggregator.COUNT_PARAM));
+        }
+        assertEquals(Map.of("home", 2L, "cart", 1L), counts);
+    }
+
+    @Test
+    void testFractionalValuesAreSummedAsDouble() {
+        aggregator = new EventAggregator(Duration.ofHours(1), recordingSink());
+
+        aggregator.add("c1", "revenue", params("shop", 1.5));
+        aggregator.add("c1", "revenue", params("shop", 2));
+        aggregator.flush();
+
+        assertEquals(3.5, sent.get(0).get("value"));
+    }
+
+    @Test
+    void testRollupsAreFlushedPeriodically() throws InterruptedException {
+        aggregator = new EventAggregator(Duration.ofMillis(50), recordingSink());
+
+        aggregator.add("c1", "item_viewed", params("home", 1));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void testConcurrentAddsAreNotLost() throws InterruptedException {
+        aggregator = new EventAggregator(Duration.ofMillis(5), recordingSink());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    aggregator.add("c1", "tick", params("hot", 1));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        aggregator.close();
+
+        long total = sent.stream().mapToLong(event -> (Long) event.get("value")).sum();
+        assertEquals(40_000, total);
+    }
+
+    @Test
+    void testAddAfterCloseIsRejected() {
+        aggregator = new EventAggregator(Duration.ofHours(1), recordingSink());
+        aggregator.close();
+
+        assertThrows(IllegalStateException.class, () -> aggregator.add("c1", "tick", params("hot", 1)));
+    }
+}
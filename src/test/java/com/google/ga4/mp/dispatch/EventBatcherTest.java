@@ -0,0 +1,109 @@
+package com.google.ga4.mp.dispatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBatcherTest {
+
+    private final List<String> clientIds = Collections.synchronizedList(new ArrayList<>());
+    private final List<List<PendingEvent>> batches = Collections.synchronizedList(new ArrayList<>());
+    private EventBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    private void record(String clientId, List<PendingEvent> events) {
+        clientIds.add(clientId);
+        batches.add(events);
+    }
+
+    @Test
+    void testBatchIsEmittedWhenFull() {
+        batcher = new EventBatcher(3, Duration.ofMinutes(1), 100_000, this::record);
+
+        for (int i = 0; i < 7; i++) {
+            batcher.add(new PendingEvent("client-1", "event_" + i, null));
+        }
+
+        assertEquals(2, batches.size());
+        assertEquals(3, batches.get(0).size());
+        assertEquals("event_0", batches.get(0).get(0).getName());
+        assertEquals("event_5", batches.get(1).get(2).getName());
+    }
+
+    @Test
+    void testBatchesAreGroupedByClientId() {
+        batcher = new EventBatcher(2, Duration.ofMinutes(1), 100_000, this::record);
+
+        batcher.add(new PendingEvent("client-1", "a", null));
+        batcher.add(new PendingEvent("client-2", "b", null));
+        batcher.add(new PendingEvent("client-1", "c", null));
+
+        assertEquals(1, batches.size());
+        assertEquals("client-1", clientIds.get(0));
+        assertEquals("a", batches.get(0).get(0).getName());
+        assertEquals("c", batches.get(0).get(1).getName());
+    }
+
+    @Test
+    void testBatchIsEmittedAfterLinger() throws InterruptedException {
+        CountDownLatch emitted = new CountDownLatch(1);
+        batcher = new EventBatcher(25, Duration.ofMillis(50), 100_000, (clientId, events) -> {
+            record(clientId, events);
+            emitted.countDown();
+        });
+
+        batcher.add(new PendingEvent("client-1", "lonely_event", null));
+
+        assertTrue(emitted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.get(0).size());
+    }
+
+    @Test
+    void testBatchIsSplitWhenBytesLimitIsReached() {
+        PendingEvent sample = new PendingEvent("client-1", "sized_event", null);
+        batcher = new EventBatcher(25, Duration.ofMinutes(1), sample.getEstimatedSize() * 2, this::record);
+
+        batcher.add(new PendingEvent("client-1", "sized_event", null));
+        batcher.add(new PendingEvent("client-1", "sized_event", null));
+        batcher.add(new PendingEvent("client-1", "sized_event", null));
+
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+    }
+
+    @Test
+    void testFlushEmitsPartialBatches() {
+        batcher = new EventBatcher(25, Duration.ofMinutes(1), 100_000, this::record);
+
+        batcher.add(new PendingEvent("client-1", "a", null));
+        batcher.add(new PendingEvent("client-2", "b", null));
+        batcher.flush();
+
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    void testCloseFlushesAndRejectsNewEvents() {
+        batcher = new EventBatcher(25, Duration.ofMinutes(1), 100_000, this::record);
+
+        batcher.add(new PendingEvent("client-1", "a", null));
+        batcher.close();
+
+        assertEquals(1, batches.size());
+        assertThrows(IllegalStateException.class, () -> batcher.add(new PendingEvent("client-1", "b", null)));
+    }
+}
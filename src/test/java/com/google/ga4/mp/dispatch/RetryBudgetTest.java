@@ -0,0 +1,53 @@
+package com.google.ga4.mp.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryBudgetTest {
+
+    @Test
+    void testInitialReserveAllowsRetries() {
+        RetryBudget budget = new RetryBudget(0.1, 2, 100);
+
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void testRetriesAreLimitedToRatioOfRequests() {
+        RetryBudget budget = new RetryBudget(0.1, 0, 100);
+
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+
+        int retries = 0;
+        while (budget.tryAcquireRetry()) {
+            retries++;
+        }
+        assertEquals(10, retries);
+    }
+
+    @Test
+    void testBalanceIsCapped() {
+        RetryBudget budget = new RetryBudget(0.5, 0, 5);
+
+        for (int i = 0; i < 1000; i++) {
+            budget.onRequest();
+        }
+
+        assertEquals(5, budget.getAvailableRetries());
+    }
+
+    @Test
+    void testZeroRatioDisablesRetriesOnceReserveIsSpent() {
+        RetryBudget budget = new RetryBudget(0, 1, 10);
+        budget.onRequest();
+
+        assertTrue(budget.tryAcquireRetry());
+        budget.onRequest();
+        assertFalse(budget.tryAcquireRetry());
+    }
+}
@@ -0,0 +1,72 @@
+package com.google.ga4.mp.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    private final RetryPolicy policy = new RetryPolicy(4, Duration.ofMillis(100), Duration.ofMillis(300));
+
+    @Test
+    void testRetryableStatusCodes() {
+        assertTrue(RetryPolicy.isRetryableStatus(429));
+        assertTrue(RetryPolicy.isRetryableStatus(500));
+        assertTrue(RetryPolicy.isRetryableStatus(503));
+        assertFalse(RetryPolicy.isRetryableStatus(204));
+        assertFalse(RetryPolicy.isRetryableStatus(400));
+        assertFalse(RetryPolicy.isRetryableStatus(404));
+    }
+
+    @Test
+    void testRetryableErrors() {
+        assertTrue(RetryPolicy.isRetryableError(new HttpTimeoutException("timed out")));
+        assertTrue(RetryPolicy.isRetryableError(new ConnectException("refused")));
+        assertTrue(RetryPolicy.isRetryableError(new IOException("Connection reset")));
+        assertFalse(RetryPolicy.isRetryableError(new IllegalArgumentException("bad request")));
+    }
+
+    @Test
+    void testBackoffGrowsUpToMaximum() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.retryDelayNanos(1, null) <= TimeUnit.MILLISECONDS.toNanos(100));
+            assertTrue(policy.retryDelayNanos(2, null) <= TimeUnit.MILLISECONDS.toNanos(200));
+            assertTrue(policy.retryDelayNanos(3, null) <= TimeUnit.MILLISECONDS.toNanos(300));
+            assertTrue(policy.retryDelayNanos(3, null) >= 0);
+        }
+    }
+
+    @Test
+    void testNoRetryAfterMaxAttempts() {
+        assertEquals(RetryPolicy.NO_RETRY, policy.retryDelayNanos(4, null));
+    }
+
+    @Test
+    void testRetryAfterRaisesDelay() {
+        long delay = policy.retryDelayNanos(1, Duration.ofSeconds(2));
+        assertEquals(TimeUnit.SECONDS.toNanos(2), delay);
+    }
+
+    @Test
+    void testExcessiveRetryAfterStopsRetries() {
+        assertEquals(RetryPolicy.NO_RETRY, policy.retryDelayNanos(1, Duration.ofHours(1)));
+    }
+
+    @Test
+    void testParseRetryAfter() {
+        Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        assertEquals(Duration.ofSeconds(120), RetryPolicy.parseRetryAfter("120", now));
+        assertEquals(Duration.ofSeconds(30), RetryPolicy.parseRetryAfter("Mon, 01 Jan 2024 00:00:30 GMT", now));
+        assertEquals(Duration.ZERO, RetryPolicy.parseRetryAfter("Sun, 31 Dec 2023 23:59:00 GMT", now));
+        assertNull(RetryPolicy.parseRetryAfter("soon", now));
+        assertNull(RetryPolicy.parseRetryAfter(null, now));
+    }
+}
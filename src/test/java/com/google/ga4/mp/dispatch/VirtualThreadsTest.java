@@ -0,0 +1,34 @@
+package com.google.ga4.mp.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsTest {
+
+    @Test
+    void testVariantMatchesTheTestTask() {
+        // Only the testJava21 task puts the Java 21 variant on the classpath, and it sets the property
+        assertEquals(Boolean.getBoolean("ga4.expectVirtualThreads"), VirtualThreads.isSupported());
+    }
+
+    @Test
+    void testIsVirtual() throws Exception {
+        assertFalse(VirtualThreads.isVirtual(Thread.currentThread()));
+        if (!VirtualThreads.isSupported()) {
+            assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.newThreadPerTaskExecutor("test-"));
+            return;
+        }
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        try {
+            assertTrue(executor.submit(() -> VirtualThreads.isVirtual(Thread.currentThread()))
+                    .get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
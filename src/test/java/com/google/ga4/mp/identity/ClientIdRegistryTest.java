@@ -0,0 +1,112 @@
+package com.google.ga4.mp.identity;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientIdRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testGeneratedClientIdsUseTheGaFormat() {
+        Set<String> clientIds = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String clientId = ClientIdRegistry.generateClientId();
+            assertTrue(clientId.matches("[1-9][0-9]*\\.[0-9]{10}"), clientId);
+            clientIds.add(clientId);
+        }
+        assertEquals(1000, clientIds.size());
+    }
+
+    @Test
+    void testClientIdsAreStableAcrossRestarts() throws IOException {
+        Path file = directory.resolve("client-ids.bin");
+        String installation;
+        String user;
+        try (ClientIdRegistry registry = new ClientIdRegistry(file)) {
+            installation = registry.getOrCreate(ClientIdRegistry.INSTALLATION_KEY);
+            user = registry.getOrCreate("user-42");
+            assertEquals(user, registry.getOrCreate("user-42"));
+            assertNotEquals(installation, user);
+            assertNull(registry.get("user-43"));
+        }
+
+        try (ClientIdRegistry registry = new ClientIdRegistry(file, 0)) {
+            assertEquals(installation, registry.get(ClientIdRegistry.INSTALLATION_KEY));
+            assertEquals(user, registry.getOrCreate("user-42"));
+            assertEquals(2, registry.size());
+        }
+    }
+
+    @Test
+    void testGrowsBeyondInitialCapacity() throws IOException {
+        Path file = directory.resolve("client-ids.bin");
+        String[] clientIds = new String[1000];
+        try (ClientIdRegistry registry = new ClientIdRegistry(file, 10, 16)) {
+            for (int i = 0; i < clientIds.length; i++) {
+                clientIds[i] = registry.getOrCreate("user-" + i);
+            }
+            assertEquals(1000, registry.size());
+        }
+
+        try (ClientIdRegistry registry = new ClientIdRegistry(file, 0)) {
+            for (int i = 0; i < clientIds.length; i++) {
+                assertEquals(clientIds[i], registry.get("user-" + i));
+            }
+        }
+        assertFalse(Files.exists(directory.resolve("client-ids.bin.tmp")));
+    }
+
+    @Test
+    void testKeepsTheCurrentTableWhenGrowingFails() throws IOException {
+        Path file = directory.resolve("client-ids.bin");
+        // A directory in the way of the new table makes every resize fail
+        Path blocker = Files.createDirectory(directory.resolve("client-ids.bin.tmp"));
+        Files.createFile(blocker.resolve("keep"));
+        String[] clientIds = new String[16];
+        try (ClientIdRegistry registry = new ClientIdRegistry(file, 0, 16)) {
+            for (int i = 0; i < 15; i++) {
+                clientIds[i] = registry.getOrCreate("user-" + i);
+            }
+            assertThrows(IOException.class, () -> registry.getOrCreate("user-15"));
+            for (int i = 0; i < 15; i++) {
+                assertEquals(clientIds[i], registry.get("user-" + i));
+            }
+
+            Files.delete(blocker.resolve("keep"));
+            Files.delete(blocker);
+            clientIds[15] = registry.getOrCreate("user-15");
+            assertEquals(16, registry.size());
+        }
+
+        try (ClientIdRegistry registry = new ClientIdRegistry(file, 0)) {
+            for (int i = 0; i < clientIds.length; i++) {
+                assertEquals(clientIds[i], registry.get("user-" + i));
+            }
+        }
+    }
+
+    @Test
+    void testRejectsForeignFile() throws IOException {
+        Path file = directory.resolve("not-a-registry.bin");
+        Files.write(file, "hello world, this is not a registry".getBytes());
+
+        assertThrows(IOException.class, () -> new ClientIdRegistry(file));
+    }
+
+    @Test
+    void testRejectsNullUserKey() throws IOException {
+        try (ClientIdRegistry registry = new ClientIdRegistry(directory.resolve("client-ids.bin"))) {
+            assertThrows(IllegalArgumentException.class, () -> registry.getOrCreate(null));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.google.ga4.mp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GA4MetricsTest {
+
+    @Test
+    void testCountersByStatusClass() {
+        GA4Metrics metrics = new GA4Metrics(Collections.emptyList(), () -> 3, () -> 2);
+
+        metrics.recordEnqueued(5);
+        metrics.recordSent(2);
+        metrics.recordDropped(1);
+        metrics.recordInvalid(3);
+        metrics.recordInvalidShape(2);
+        metrics.recordFailed(1, 400);
+        metrics.recordFailed(2, 503);
+        metrics.recordFailed(4, MetricsListener.NO_STATUS);
+        metrics.recordRequestCompleted(204, 100, 1_000_000);
+        metrics.recordRequestCompleted(503, 50, 2_000_000);
+
+        assertEquals(5, metrics.getEventsEnqueued());
+        assertEquals(2, metrics.getEventsSent());
+        assertEquals(1, metrics.getEventsDropped());
+        assertEquals(3, metrics.getEventsInvalid());
+        assertEquals(2, metrics.getEventsInvalidShape());
+        assertEquals(1, metrics.getEventsFailedClientError());
+        assertEquals(2, metrics.getEventsFailedServerError());
+        assertEquals(4, metrics.getEventsFailedTransport());
+        assertEquals(7, metrics.getEventsFailed());
+        assertEquals(2, metrics.getRequestsSent());
+        assertEquals(150, metrics.getBytesSent());
+        assertEquals(3, metrics.getQueueDepth());
+        assertEquals(2, metrics.getInFlightRequests());
+        assertEquals(2, metrics.getRoundTripLatency().getCount());
+        assertEquals(2000, metrics.getRoundTripLatencyMaxMicros());
+    }
+
+    @Test
+    void testListenersReceiveRecordedValues() {
+        List<String> calls = new ArrayList<>();
+        MetricsListener listener = new MetricsListener() {
+            @Override
+            public void onEventsSent(int count) {
+                calls.add("sent:" + count);
+            }
+
+            @Override
+            public void onEventAcknowledged(long enqueueToAckNanos) {
+                calls.add("ack:" + enqueueToAckNanos);
+            }
+
+            @Override
+            public void onEventsFailed(int count, int statusCode) {
+                calls.add("failed:" + count + ":" + statusCode);
+            }
+        };
+        GA4Metrics metrics = new GA4Metrics(Collections.singletonList(listener), () -> 0, () -> 0);
+
+        metrics.recordSent(3);
+        metrics.recordAcknowledged(42);
+        metrics.recordFailed(1, 429);
+
+        assertEquals(Arrays.asList("sent:3", "ack:42", "failed:1:429"), calls);
+        assertEquals(1, metrics.getEnqueueToAckLatency().getCount());
+    }
+
+    @Test
+    void testFailingListenerDoesNotStopRecording() {
+        MetricsListener failing = new MetricsListener() {
+            @Override
+            public void onEventsEnqueued(int count) {
+                throw new IllegalStateException("boom");
+            }
+        };
+        List<Integer> counts = new ArrayList<>();
+        MetricsListener recording = new MetricsListener() {
+            @Override
+            public void onEventsEnqueued(int count) {
+                counts.add(count);
+            }
+        };
+        GA4Metrics metrics = new GA4Metrics(Arrays.asList(failing, recording), () -> 0, () -> 0);
+
+        assertDoesNotThrow(() -> metrics.recordEnqueued(1));
+        assertEquals(1, metrics.getEventsEnqueued());
+        assertEquals(Collections.singletonList(1), counts);
+    }
+
+    @Test
+    void testRegisterAndUnregisterMBean() throws Exception {
+        GA4Metrics metrics = new GA4Metrics(Collections.emptyList(), () -> 0, () -> 0);
+        metrics.recordSent(7);
+
+        ObjectName name = metrics.registerMBean("G-TEST123");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(GA4Metrics.JMX_DOMAIN, name.getDomain());
+            assertEquals(7L, server.getAttribute(name, "EventsSent"));
+        } finally {
+            metrics.unregisterMBean();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,72 @@
+package com.google.ga4.mp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(99.0));
+        assertEquals(0.0, histogram.getMeanNanos());
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(5, histogram.getPercentileNanos(50.0));
+        assertEquals(10, histogram.getPercentileNanos(100.0));
+        assertEquals(10, histogram.getMaxNanos());
+        assertEquals(5.5, histogram.getMeanNanos(), 0.001);
+    }
+
+    @Test
+    void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        long p50 = histogram.getPercentileNanos(50.0);
+        long p99 = histogram.getPercentileNanos(99.0);
+        assertEquals(500_000, p50, 500_000 * 0.07);
+        assertEquals(990_000, p99, 990_000 * 0.07);
+        assertTrue(p99 <= histogram.getMaxNanos());
+    }
+
+    @Test
+    void testBucketBoundaries() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestValueAt(index) >= value, "value " + value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.highestValueAt(index - 1) < value, "value " + value);
+            }
+        }
+    }
+
+    @Test
+    void testNegativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    void testRejectsInvalidPercentile() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().getPercentileNanos(101.0));
+    }
+}
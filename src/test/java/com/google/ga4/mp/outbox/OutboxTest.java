@@ -0,0 +1,168 @@
+package com.google.ga4.mp.outbox;
+
+import com.google.ga4.mp.dispatch.PendingEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxTest {
+
+    @TempDir
+    Path directory;
+
+    private Outbox open() throws Exception {
+        return new Outbox(directory, 4096, Duration.ofMillis(10));
+    }
+
+    private static List<PendingEvent> replay(Outbox outbox) {
+        List<PendingEvent> events = new ArrayList<>();
+        outbox.replay(events::add);
+        return events;
+    }
+
+    private Stream<Path> segments() throws IOException {
+        return Files.list(directory).filter(file -> file.getFileName().toString().endsWith(".seg"));
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = segments()) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testUnacknowledgedEventsAreReplayedAfterRestart() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        params.put("event_category", "test");
+        params.put("value", 42);
+
+        Outbox outbox = open();
+        outbox.append("client-1", "first_event", params);
+        outbox.append("client-2", "second_event", null);
+        outbox.close();
+
+        Outbox reopened = open();
+        List<PendingEvent> replayed = replay(reopened);
+        reopened.close();
+
+        assertEquals(2, replayed.size());
+        assertEquals("client-1", replayed.get(0).getClientId());
+        assertEquals("first_event", replayed.get(0).getName());
+        assertEquals("test", replayed.get(0).getParams().toMap().get("event_category"));
+        assertEquals(42L, replayed.get(0).getParams().toMap().get("value"));
+        assertEquals("second_event", replayed.get(1).getName());
+        assertNotEquals(PendingEvent.NO_OUTBOX_POSITION, replayed.get(1).getOutboxPosition());
+    }
+
+    @Test
+    void testAcknowledgedEventsAreNotReplayed() throws Exception {
+        Outbox outbox = open();
+        long delivered = outbox.append("client-1", "delivered", null);
+        outbox.append("client-1", "undelivered", null);
+        outbox.acknowledge(delivered);
+        assertEquals(1, outbox.getPendingCount());
+        outbox.close();
+
+        Outbox reopened = open();
+        List<PendingEvent> replayed = replay(reopened);
+
+        assertEquals(1, replayed.size());
+        assertEquals("undelivered", replayed.get(0).getName());
+
+        // Acknowledging the replayed event leaves nothing for the next start
+        reopened.acknowledge(replayed.get(0).getOutboxPosition());
+        reopened.close();
+        Outbox third = open();
+        assertTrue(replay(third).isEmpty());
+        third.close();
+    }
+
+    @Test
+    void testReplayHandsEventsOverOnlyOnce() throws Exception {
+        Outbox outbox = open();
+        outbox.append("client-1", "event", null);
+        outbox.close();
+
+        Outbox reopened = open();
+        assertEquals(1, replay(reopened).size());
+        assertTrue(replay(reopened).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void testFullyAcknowledgedSegmentsAreDeleted() throws Exception {
+        Outbox outbox = open();
+        Map<String, Object> params = Collections.singletonMap("padding", "x".repeat(500));
+        List<Long> positions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            positions.add(outbox.append("client-1", "event_" + i, params));
+        }
+        assertTrue(segmentCount() > 1);
+
+        positions.forEach(outbox::acknowledge);
+
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(1, segmentCount(), "only the active segment should remain");
+        outbox.close();
+    }
+
+    @Test
+    void testTornRecordIsIgnoredOnRecovery() throws Exception {
+        Outbox outbox = open();
+        long position = outbox.append("client-1", "complete", null);
+        outbox.close();
+
+        // Simulate a crash in the middle of the next append: a length without a matching body checksum
+        Path segment;
+        try (Stream<Path> files = segments()) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] content = Files.readAllBytes(segment);
+        int next = (int) position + 9 + ((content[0] & 0xFF) << 24 | (content[1] & 0xFF) << 16
+                | (content[2] & 0xFF) << 8 | (content[3] & 0xFF));
+        content[next + 3] = 20;
+        content[next + 4] = 1;
+        Files.write(segment, content);
+
+        Outbox reopened = open();
+        List<PendingEvent> replayed = replay(reopened);
+        reopened.close();
+
+        assertEquals(1, replayed.size());
+        assertEquals("complete", replayed.get(0).getName());
+    }
+
+    @Test
+    void testAppendAfterCloseFails() throws Exception {
+        Outbox outbox = open();
+        outbox.close();
+
+        assertThrows(IOException.class, () -> outbox.append("client-1", "late", null));
+    }
+
+    @Test
+    void testDirectoryIsLockedUntilClosed() throws Exception {
+        Outbox outbox = open();
+        outbox.append("client-1", "owned", null);
+
+        IOException error = assertThrows(IOException.class, this::open);
+        assertTrue(error.getMessage().contains("already in use"));
+
+        outbox.close();
+        Outbox reopened = open();
+        assertEquals(1, replay(reopened).size());
+        reopened.close();
+    }
+}
@@ -0,0 +1,67 @@
+package com.google.ga4.mp.outbox;
+
+import com.google.ga4.mp.dispatch.PendingEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRoundTrip() throws Exception {
+        Path file = directory.resolve("spill.jsonl");
+        Map<String, Object> params = new HashMap<>();
+        params.put("event_category", "test");
+        params.put("value", 42);
+
+        SpillFile.write(file, Arrays.asList(
+                new PendingEvent("client-1", "first_event", params),
+                new PendingEvent("client-2", "second_event", null)));
+        List<PendingEvent> events = SpillFile.take(file);
+
+        assertEquals(2, events.size());
+        assertEquals("client-1", events.get(0).getClientId());
+        assertEquals("first_event", events.get(0).getName());
+        assertEquals(42L, events.get(0).getParams().toMap().get("value"));
+        assertEquals("second_event", events.get(1).getName());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void testWriteAppendsToExistingFile() throws Exception {
+        Path file = directory.resolve("spill.jsonl");
+
+        SpillFile.write(file, Collections.singletonList(new PendingEvent("client-1", "first_event", null)));
+        SpillFile.write(file, Collections.singletonList(new PendingEvent("client-1", "second_event", null)));
+
+        assertEquals(2, SpillFile.take(file).size());
+    }
+
+    @Test
+    void testSkipsUnreadableLines() throws Exception {
+        Path file = directory.resolve("spill.jsonl");
+        Files.write(file, Arrays.asList("{\"client_id\":\"c\",\"name\":\"ok\",\"params\":{}}", "{torn"));
+
+        List<PendingEvent> events = SpillFile.take(file);
+
+        assertEquals(1, events.size());
+        assertEquals("ok", events.get(0).getName());
+    }
+
+    @Test
+    void testMissingFileIsEmpty() throws Exception {
+        assertTrue(SpillFile.take(directory.resolve("missing.jsonl")).isEmpty());
+    }
+}
@@ -0,0 +1,103 @@
+package com.google.ga4.mp.payload;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GzipEncoderTest {
+
+    private final GzipEncoder encoder = new GzipEncoder(Deflater.DEFAULT_COMPRESSION);
+
+    private static byte[] gunzip(byte[] compressed) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] repetitivePayload(int events) {
+        StringBuilder json = new StringBuilder("{\"client_id\":\"123.456\",\"events\":[");
+        for (int i = 0; i < events; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":\"page_view\",\"params\":{\"session_id\":1700000000,")
+                    .append("\"engagement_time_msec\":\"100\",\"page_title\":\"Page ").append(i).append("\"}}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testRoundTrip() throws Exception {
+        byte[] body = repetitivePayload(25);
+
+        byte[] compressed = encoder.encode(body);
+
+        assertArrayEquals(body, gunzip(compressed));
+        assertTrue(compressed.length < body.length / 3, "repetitive JSON should compress well");
+    }
+
+    @Test
+    void testEncoderIsReusable() throws Exception {
+        byte[] large = repetitivePayload(200);
+        byte[] small = "{}".getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(large, gunzip(encoder.encode(large)));
+        assertArrayEquals(small, gunzip(encoder.encode(small)));
+        assertArrayEquals(large, gunzip(encoder.encode(large)));
+    }
+
+    @Test
+    void testEmptyBody() throws Exception {
+        assertArrayEquals(new byte[0], gunzip(encoder.encode(new byte[0])));
+    }
+
+    @Test
+    void testConcurrentEncodesBeyondThePoolSize() throws Exception {
+        GzipEncoder pooled = new GzipEncoder(Deflater.DEFAULT_COMPRESSION, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                byte[] body = repetitivePayload(50 + i);
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        assertArrayEquals(body, gunzip(pooled.encode(body)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+            pooled.close();
+        }
+    }
+
+    @Test
+    void testEncodesAfterClose() throws Exception {
+        byte[] body = repetitivePayload(10);
+        encoder.encode(body);
+
+        encoder.close();
+
+        assertArrayEquals(body, gunzip(encoder.encode(body)));
+    }
+
+    @Test
+    void testRejectsEmptyPool() {
+        assertThrows(IllegalArgumentException.class, () -> new GzipEncoder(Deflater.DEFAULT_COMPRESSION, 0));
+    }
+}
@@ -0,0 +1,125 @@
+package com.google.ga4.mp.payload;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.ga4.mp.EventParams;
+import com.google.ga4.mp.dispatch.PendingEvent;
+import com.google.ga4.mp.providers.SystemInfoProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StaticPayload staticPayload = new StaticPayload(objectMapper, new SystemInfoProvider() {
+        @Override
+        public String getOsName() {
+            return "Linux";
+        }
+
+        @Override
+        public String getOsVersion() {
+            return "6.1";
+        }
+
+        @Override
+        public String getDeviceCategory() {
+            return "desktop";
+        }
+    }, "Test App", "1.0.0", "https://example.com/mp/collect", "G-TEST123", "test-secret");
+
+    private PayloadWriter writer(String validationBehavior) {
+        return new PayloadWriter(objectMapper, staticPayload, validationBehavior);
+    }
+
+    @Test
+    void testWritesCompletePayload() throws Exception {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("session_id", 1700000000L);
+        params.put("engagement_time_msec", "100");
+        params.put("event_category", "engagement");
+        params.put("value", 42);
+        params.put("price", 9.99);
+        params.put("logged_in", true);
+
+        byte[] body = writer("ENFORCE_RECOMMENDATIONS").write("client-1",
+                Collections.singletonList(new PendingEvent("client-1", "button_click", params)));
+        JsonNode payload = objectMapper.readTree(body);
+
+        assertEquals("client-1", payload.get("client_id").asText());
+        assertEquals("ENFORCE_RECOMMENDATIONS", payload.get("validation_behavior").asText());
+        assertEquals("Test App", payload.get("user_properties").get("app_name").get("value").asText());
+        assertEquals("desktop", payload.get("device").get("category").asText());
+
+        JsonNode event = payload.get("events").get(0);
+        assertEquals("button_click", event.get("name").asText());
+        JsonNode eventParams = event.get("params");
+        assertEquals(1700000000L, eventParams.get("session_id").asLong());
+        assertEquals("100", eventParams.get("engagement_time_msec").asText());
+        assertEquals("engagement", eventParams.get("event_category").asText());
+        assertEquals(42, eventParams.get("value").asInt());
+        assertEquals(9.99, eventParams.get("price").asDouble());
+        assertTrue(eventParams.get("logged_in").asBoolean());
+    }
+
+    @Test
+    void testMatchesObjectMapperSerialization() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        params.put("items", Arrays.asList("a", "b"));
+        params.put("nothing", null);
+
+        byte[] body = writer(null).write("client-1",
+                Collections.singletonList(new PendingEvent("client-1", "custom_event", params)));
+        JsonNode params0 = objectMapper.readTree(body).get("events").get(0).get("params");
+
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(params)), params0);
+        assertFalse(objectMapper.readTree(body).has("validation_behavior"));
+    }
+
+    @Test
+    void testWritesBatchOfEvents() throws Exception {
+        List<PendingEvent> events = Arrays.asList(
+                new PendingEvent("client-1", "first", null),
+                new PendingEvent("client-1", "second", null),
+                new PendingEvent("client-1", "third", null));
+
+        PayloadWriter writer = writer(null);
+        byte[] first = writer.write("client-1", events);
+        byte[] second = writer.write("client-1", events.subList(0, 1));
+        JsonNode payload = objectMapper.readTree(first);
+
+        assertEquals(3, payload.get("events").size());
+        assertEquals("third", payload.get("events").get(2).get("name").asText());
+        assertEquals(1, objectMapper.readTree(second).get("events").size());
+    }
+
+    @Test
+    void testWritesEventParamsSlots() throws Exception {
+        EventParams params = new EventParams()
+                .putLong("value", 42)
+                .putDouble("price", 9.99)
+                .putBoolean("logged_in", false)
+                .putString("engagement_time_msec", "250")
+                .put("items", Arrays.asList("a", "b"));
+
+        byte[] body = writer(null).write("client-1", Collections.singletonList(
+                new PendingEvent("client-1", "typed_event", params, PendingEvent.NO_OUTBOX_POSITION)));
+        JsonNode eventParams = objectMapper.readTree(body).get("events").get(0).get("params");
+
+        assertEquals(42L, eventParams.get("value").asLong());
+        assertTrue(eventParams.get("value").isIntegralNumber());
+        assertEquals(9.99, eventParams.get("price").asDouble());
+        assertFalse(eventParams.get("logged_in").asBoolean());
+        assertEquals("250", eventParams.get("engagement_time_msec").asText());
+        assertEquals(2, eventParams.get("items").size());
+        assertEquals(5, eventParams.size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.google.ga4.mp.payload;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.ga4.mp.providers.SystemInfoProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticPayloadTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testUserPropertiesAndDeviceAreEncoded() throws Exception {
+        SystemInfoProvider provider = new SystemInfoProvider() {
+            @Override
+            public String getOsName() {
+                return "Android";
+            }
+
+            @Override
+            public String getOsVersion() {
+                return "14";
+            }
+
+            @Override
+            public String getDeviceCategory() {
+                return "mobile";
+            }
+
+            @Override
+            public String getScreenResolution() {
+                return "1080x2400";
+            }
+        };
+
+        StaticPayload payload = new StaticPayload(objectMapper, provider, "Test App", "1.0.0",
+                "https://example.com/mp/collect", "G-TEST123", "test-secret");
+
+        JsonNode userProperties = objectMapper.readTree(payload.getUserProperties().getValue());
+        assertEquals("Test App", userProperties.get("app_name").get("value").asText());
+        assertEquals("1.0.0", userProperties.get("app_version").get("value").asText());
+        assertEquals("Android", userProperties.get("os_name").get("value").asText());
+        assertEquals("14", userProperties.get("os_version").get("value").asText());
+
+        JsonNode device = objectMapper.readTree(payload.getDevice().getValue());
+        assertEquals("mobile", device.get("category").asText());
+        assertEquals("1080x2400", device.get("screen_resolution").asText());
+        assertFalse(device.has("brand"));
+    }
+
+    @Test
+    void testCollectUriContainsCredentials() {
+        StaticPayload payload = new StaticPayload(objectMapper, minimalProvider(new AtomicInteger()), "App", "1",
+                "https://example.com/mp/collect", "G-TEST123", "test-secret");
+
+        assertEquals("https://example.com/mp/collect?measurement_id=G-TEST123&api_secret=test-secret",
+                payload.getCollectUri().toString());
+    }
+
+    @Test
+    void testProviderIsQueriedOnlyOnceOnFirstUse() {
+        AtomicInteger calls = new AtomicInteger();
+        StaticPayload payload = new StaticPayload(objectMapper, minimalProvider(calls), "App", "1",
+                "https://example.com/mp/collect", "G-TEST123", "test-secret");
+
+        int callsAfterCreation = calls.get();
+        payload.getUserProperties();
+        payload.getDevice();
+        payload.getUserProperties();
+
+        assertEquals(0, callsAfterCreation);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testDeviceIsNullWhenProviderHasNoDeviceInfo() {
+        SystemInfoProvider provider = new SystemInfoProvider() {
+            @Override
+            public String getOsName() {
+                return null;
+            }
+
+            @Override
+            public String getOsVersion() {
+                return null;
+            }
+        };
+
+        StaticPayload payload = new StaticPayload(objectMapper, provider, "App", "1",
+                "https://example.com/mp/collect", "G-TEST123", "test-secret");
+
+        assertNull(payload.getDevice());
+        assertNotNull(payload.getUserProperties());
+    }
+
+    private static SystemInfoProvider minimalProvider(AtomicInteger screenResolutionCalls) {
+        return new SystemInfoProvider() {
+            @Override
+            public String getOsName() {
+                return "Linux";
+            }
+
+            @Override
+            public String getOsVersion() {
+                return "6.1";
+            }
+
+            @Override
+            public String getScreenResolution() {
+                screenResolutionCalls.incrementAndGet();
+                return "1920x1080";
+            }
+        };
+    }
+}
@@ -92,6 +92,21 @@ class ApacheCommonsSystemInfoProviderTest {
         }
     }
 
+    @Test
+    void testHeadlessHasNoScreenResolution() {
+        String headless = System.getProperty("java.awt.headless");
+        System.setProperty("java.awt.headless", "true");
+        try {
+            assertNull(new ApacheCommonsSystemInfoProvider().getScreenResolution());
+        } finally {
+            if (headless != null) {
+                System.setProperty("java.awt.headless", headless);
+            } else {
+                System.clearProperty("java.awt.headless");
+            }
+        }
+    }
+
     @Test
     void testGetDeviceModel() {
         ApacheCommonsSystemInfoProvider provider = new ApacheCommonsSystemInfoProvider();
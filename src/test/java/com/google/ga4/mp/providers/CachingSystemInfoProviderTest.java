@@ -0,0 +1,159 @@
+package com.google.ga4.mp.providers;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingSystemInfoProviderTest {
+
+    @Test
+    void testValuesAreReadOnceFromTheDelegate() {
+        AtomicInteger calls = new AtomicInteger();
+        SystemInfoProvider delegate = new SystemInfoProvider() {
+            @Override
+            public String getOsName() {
+                calls.incrementAndGet();
+                return "Linux";
+            }
+
+            @Override
+            public String getOsVersion() {
+                return "6.1";
+            }
+
+            @Override
+            public String getScreenResolution() {
+                return "1920x1080";
+            }
+        };
+
+        CachingSystemInfoProvider provider = new CachingSystemInfoProvider(delegate);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Linux", provider.getOsName());
+        }
+
+        assertEquals("6.1", provider.getOsVersion());
+        assertEquals("1920x1080", provider.getScreenResolution());
+        assertNull(provider.getDeviceBrand());
+        assertEquals(1, calls.get());
+        assertNotNull(provider.getProbeTime());
+    }
+
+    @Test
+    void testCreationDoesNotWaitForASlowDelegate() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SystemInfoProvider delegate = new SystemInfoProvider() {
+            @Override
+            public String getOsName() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "Linux";
+            }
+
+            @Override
+            public String getOsVersion() {
+                return "6.1";
+            }
+        };
+
+        CachingSystemInfoProvider provider = new CachingSystemInfoProvider(delegate);
+
+        assertNull(provider.getProbeTime());
+        release.countDown();
+        assertEquals("Linux", provider.getOsName());
+        assertNotNull(provider.getProbeTime());
+    }
+
+    @Test
+    void testFailingGetterLeavesItsValueUnset() {
+        SystemInfoProvider delegate = new SystemInfoProvider() {
+            @Override
+            public String getOsName() {
+                return "Linux";
+            }
+
+            @Override
+            public String getOsVersion() {
+                throw new IllegalStateException("no version");
+            }
+        };
+
+        CachingSystemInfoProvider provider = new CachingSystemInfoProvider(delegate);
+
+        assertNull(provider.getOsVersion());
+        assertEquals("Linux", provider.getOsName());
+    }
+
+    @Test
+    void testErrorInTheProbeLeavesEveryValueUnset() {
+        SystemInfoProvider delegate = new SystemInfoProvider() {
+            @Override
+            public String getOsName() {
+                throw new AssertionError("probe bug");
+            }
+
+            @Override
+            public String getOsVersion() {
+                return "6.1";
+            }
+        };
+
+        CachingSystemInfoProvider provider = new CachingSystemInfoProvider(delegate, Duration.ofSeconds(30));
+
+        // Completed by the failing probe itself, not by the getter's wait running out
+        long startNanos = System.nanoTime();
+        assertNull(provider.getOsName());
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(10));
+        assertNull(provider.getOsVersion());
+        assertNull(provider.getProbeTime());
+    }
+
+    @Test
+    void testGettersGiveUpOnAHangingProbe() {
+        CountDownLatch release = new CountDownLatch(1);
+        SystemInfoProvider delegate = new SystemInfoProvider() {
+            @Override
+            public String getOsName() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "Linux";
+            }
+
+            @Override
+            public String getOsVersion() {
+                return "6.1";
+            }
+        };
+
+        CachingSystemInfoProvider provider = new CachingSystemInfoProvider(delegate, Duration.ofMillis(50));
+        try {
+            long startNanos = System.nanoTime();
+            assertNull(provider.getOsName());
+            assertNull(provider.getOsVersion());
+            assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+        } finally {
+            release.countDown();
+        }
+        // The late result does not replace the values already given out as unset
+        assertNull(provider.getOsName());
+        assertNull(provider.getProbeTime());
+    }
+
+    @Test
+    void testRejectsNullDelegate() {
+        assertThrows(IllegalArgumentException.class, () -> new CachingSystemInfoProvider(null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachingSystemInfoProvider(new ApacheCommonsSystemInfoProvider(), Duration.ZERO));
+    }
+}
@@ -0,0 +1,65 @@
+package com.google.ga4.mp.sampling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventSamplerTest {
+
+    @Test
+    void testPerNameSampleRateOverridesDefault() {
+        EventSampler sampler = new EventSampler(1.0, Map.of("screen_view", 0.0), null, Collections.emptyMap());
+
+        assertEquals(SamplingDecision.SAMPLED_OUT, sampler.decide("screen_view"));
+        assertEquals(SamplingDecision.KEEP, sampler.decide("purchase"));
+        assertEquals(0.0, sampler.getSampleRate("screen_view"));
+        assertEquals(1.0, sampler.getSampleRate("purchase"));
+    }
+
+    @Test
+    void testSampleRateKeepsApproximateShare() {
+        EventSampler sampler = new EventSampler(0.25, Collections.emptyMap(), null, Collections.emptyMap());
+
+        int kept = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (sampler.decide("click") == SamplingDecision.KEEP) {
+                kept++;
+            }
+        }
+        assertEquals(2500, kept, 300);
+    }
+
+    @Test
+    void testPerNameRateLimit() {
+        EventSampler sampler = new EventSampler(1.0, Collections.emptyMap(), null,
+                Map.of("click", new TokenBucket(0.001, 2)));
+
+        assertEquals(SamplingDecision.KEEP, sampler.decide("click"));
+        assertEquals(SamplingDecision.KEEP, sampler.decide("click"));
+        assertEquals(SamplingDecision.RATE_LIMITED, sampler.decide("click"));
+        assertEquals(SamplingDecision.KEEP, sampler.decide("purchase"));
+    }
+
+    @Test
+    void testGlobalRateLimit() {
+        EventSampler sampler = new EventSampler(1.0, Collections.emptyMap(), new TokenBucket(0.001, 1),
+                Collections.emptyMap());
+
+        assertEquals(SamplingDecision.KEEP, sampler.decide("click"));
+        assertEquals(SamplingDecision.RATE_LIMITED, sampler.decide("purchase"));
+    }
+
+    @Test
+    void testGlobalRateLimitDoesNotSpendPerNameToken() {
+        TokenBucket purchaseLimit = new TokenBucket(0.001, 1);
+        EventSampler sampler = new EventSampler(1.0, Collections.emptyMap(), new TokenBucket(0.001, 1),
+                Map.of("purchase", purchaseLimit));
+
+        assertEquals(SamplingDecision.KEEP, sampler.decide("click"));
+        assertEquals(SamplingDecision.RATE_LIMITED, sampler.decide("purchase"));
+        assertTrue(purchaseLimit.tryAcquire());
+    }
+}
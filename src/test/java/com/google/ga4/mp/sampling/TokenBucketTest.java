@@ -0,0 +1,57 @@
+package com.google.ga4.mp.sampling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void testBurstIsAvailableImmediately() {
+        TokenBucket bucket = new TokenBucket(10.0, 3, 0L);
+
+        assertTrue(bucket.tryAcquire(0L));
+        assertTrue(bucket.tryAcquire(0L));
+        assertTrue(bucket.tryAcquire(0L));
+        assertFalse(bucket.tryAcquire(0L));
+    }
+
+    @Test
+    void testTokensRefillAtConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(10.0, 1, 0L);
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+
+        assertTrue(bucket.tryAcquire(0L));
+        assertFalse(bucket.tryAcquire(interval / 2));
+        assertTrue(bucket.tryAcquire(interval));
+        assertFalse(bucket.tryAcquire(interval));
+    }
+
+    @Test
+    void testRefundReturnsTheToken() {
+        TokenBucket bucket = new TokenBucket(10.0, 1, 0L);
+
+        assertTrue(bucket.tryAcquire(0L));
+        bucket.refund();
+        assertTrue(bucket.tryAcquire(0L));
+        assertFalse(bucket.tryAcquire(0L));
+    }
+
+    @Test
+    void testQuietPeriodDoesNotExceedBurst() {
+        TokenBucket bucket = new TokenBucket(10.0, 2, 0L);
+        long later = TimeUnit.SECONDS.toNanos(60);
+
+        assertTrue(bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later));
+        assertFalse(bucket.tryAcquire(later));
+    }
+
+    @Test
+    void testRejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0.0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1.0, 0));
+    }
+}
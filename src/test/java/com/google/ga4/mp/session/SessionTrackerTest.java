@@ -0,0 +1,111 @@
+package com.google.ga4.mp.session;
+
+import com.google.ga4.mp.EventParams;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionTrackerTest {
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    private SessionTracker tracker(int stripes) {
+        return new SessionTracker(Duration.ofMinutes(30), stripes, now::get);
+    }
+
+    private static EventParams track(SessionTracker tracker, String clientId) {
+        EventParams params = new EventParams();
+        tracker.track(clientId, params);
+        return params;
+    }
+
+    private static long sessionId(EventParams params) {
+        return params.getLong(params.indexOf(SessionTracker.SESSION_ID));
+    }
+
+    private static long engagement(EventParams params) {
+        return params.getLong(params.indexOf(SessionTracker.ENGAGEMENT_TIME_MSEC));
+    }
+
+    @Test
+    void testEngagementTimeIsTheTimeSinceThePreviousEvent() {
+        SessionTracker tracker = tracker(4);
+
+        EventParams first = track(tracker, "1.1");
+        now.addAndGet(2500);
+        EventParams second = track(tracker, "1.1");
+
+        assertEquals(1_700_000_000L, sessionId(first));
+        assertEquals(SessionTracker.FIRST_EVENT_ENGAGEMENT_MILLIS, engagement(first));
+        assertEquals(sessionId(first), sessionId(second));
+        assertEquals(2500, engagement(second));
+    }
+
+    @Test
+    void testSessionRotatesAfterInactivity() {
+        SessionTracker tracker = tracker(4);
+
+        EventParams first = track(tracker, "1.1");
+        now.addAndGet(Duration.ofMinutes(29).toMillis());
+        EventParams active = track(tracker, "1.1");
+        now.addAndGet(Duration.ofMinutes(31).toMillis());
+        EventParams rotated = track(tracker, "1.1");
+
+        assertEquals(sessionId(first), sessionId(active));
+        assertEquals(sessionId(first) + Duration.ofMinutes(60).getSeconds(), sessionId(rotated));
+        assertEquals(SessionTracker.FIRST_EVENT_ENGAGEMENT_MILLIS, engagement(rotated));
+    }
+
+    @Test
+    void testClientsHaveIndependentSessions() {
+        SessionTracker tracker = tracker(1);
+
+        track(tracker, "1.1");
+        now.addAndGet(1000);
+        EventParams other = track(tracker, "2.2");
+        now.addAndGet(1000);
+        EventParams first = track(tracker, "1.1");
+
+        assertEquals(sessionId(first) + 1, sessionId(other));
+        assertEquals(2000, engagement(first));
+        assertEquals(2, tracker.size());
+    }
+
+    @Test
+    void testCallerParamsTakePrecedence() {
+        SessionTracker tracker = tracker(4);
+        EventParams params = new EventParams().putLong(SessionTracker.ENGAGEMENT_TIME_MSEC, 42);
+
+        tracker.track("1.1", params);
+
+        assertEquals(42, engagement(params));
+        assertEquals(2, params.size());
+    }
+
+    @Test
+    void testGrowsAndEvictsExpiredSessions() {
+        SessionTracker tracker = tracker(2);
+        for (int i = 0; i < 10_000; i++) {
+            track(tracker, "client." + i);
+        }
+        assertEquals(10_000, tracker.size());
+        // Clients added before the tables grew are still found: a repeat at the same instant reports 1 ms
+        for (int i = 0; i < 10_000; i += 100) {
+            assertEquals(1, engagement(track(tracker, "client." + i)));
+        }
+
+        now.addAndGet(Duration.ofHours(1).toMillis());
+        track(tracker, "client.new");
+        tracker.evictExpired();
+
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    void testRejectsInvalidTimeout() {
+        assertThrows(IllegalArgumentException.class, () -> new SessionTracker(Duration.ZERO));
+    }
+}
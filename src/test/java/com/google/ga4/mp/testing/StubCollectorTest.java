@@ -0,0 +1,166 @@
+package com.google.ga4.mp.testing;
+
+import com.google.ga4.mp.DeliveryResult;
+import com.google.ga4.mp.GA4Analytics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubCollectorTest {
+
+    private StubCollector collector;
+    private GA4Analytics analytics;
+
+    @AfterEach
+    void tearDown() {
+        if (analytics != null) {
+            analytics.shutdown();
+        }
+        if (collector != null) {
+            collector.close();
+        }
+    }
+
+    private GA4Analytics.Builder analyticsBuilder() {
+        return GA4Analytics.builder()
+                .withMeasurementId("G-TEST123")
+                .withApiSecret("test-secret")
+                .withEndpointBaseUrl(collector.getBaseUrl());
+    }
+
+    @Test
+    void testAcceptsEvents() throws Exception {
+        collector = StubCollector.start();
+        analytics = analyticsBuilder().build();
+
+        analytics.event().eventAction("first_event").send();
+        DeliveryResult result = analytics.event().eventAction("second_event").sendAsync().join();
+
+        assertEquals(204, result.getStatusCode());
+        assertTrue(collector.awaitEventsAccepted(2, Duration.ofSeconds(5)));
+        assertEquals(1, collector.getEventsAccepted("first_event"));
+        assertEquals(2, collector.getRequestCount());
+    }
+
+    @Test
+    void testAcceptsGzipBatches() throws Exception {
+        collector = StubCollector.start();
+        analytics = analyticsBuilder()
+                .withBatching(true)
+                .withMaxBatchLinger(Duration.ofMillis(10))
+                .withGzip(true)
+                .withGzipMinSize(1)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            analytics.event().eventAction("batched_event").sendAsync();
+        }
+
+        assertTrue(collector.awaitEventsAccepted(10, Duration.ofSeconds(5)));
+        assertEquals(0, collector.getMalformedCount());
+    }
+
+    @Test
+    void testDebugEndpointReturnsValidationMessages() throws Exception {
+        collector = StubCollector.start();
+        HttpResponse<String> response = post("/debug/mp/collect", "{\"client_id\":\"1.2\",\"events\":[]}");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("validationMessages"));
+    }
+
+    @Test
+    void testRejectsMalformedPayload() throws Exception {
+        collector = StubCollector.start();
+
+        assertEquals(400, post("/mp/collect", "not json").statusCode());
+        assertEquals(1, collector.getMalformedCount());
+    }
+
+    @Test
+    void testServerErrorsReachTheCaller() {
+        collector = StubCollector.builder().withErrorRate(1.0, 500).start();
+        analytics = analyticsBuilder().withMaxAttempts(1).build();
+
+        DeliveryResult result = analytics.event().eventAction("failing_event").sendAsync().join();
+
+        assertEquals(500, result.getStatusCode());
+        assertEquals(1, collector.getErrorCount());
+        assertEquals(0, collector.getEventsAccepted());
+    }
+
+    @Test
+    void testThrottleBurstIsRetried() {
+        collector = StubCollector.builder().withThrottleBursts(2, 1, Duration.ZERO).start();
+        analytics = analyticsBuilder()
+                .withRetryBackoff(Duration.ofMillis(1), Duration.ofMillis(5))
+                .build();
+
+        // Request 0 succeeds, request 1 is throttled and its retry, request 2, succeeds
+        assertTrue(analytics.event().eventAction("first_event").sendAsync().join().isSuccess());
+        DeliveryResult result = analytics.event().eventAction("second_event").sendAsync().join();
+
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getAttempts());
+        assertEquals(1, collector.getThrottledCount());
+    }
+
+    @Test
+    void testDroppedConnectionFailsTheEvent() {
+        collector = StubCollector.builder().withConnectionDropRate(1.0).start();
+        analytics = analyticsBuilder().withMaxAttempts(1).build();
+
+        CompletableFuture<DeliveryResult> result = analytics.event().eventAction("dropped_event").sendAsync();
+
+        assertThrows(CompletionException.class, result::join);
+        assertEquals(1, collector.getDroppedCount());
+    }
+
+    @Test
+    void testFaultsAreDeterministicForASeed() throws Exception {
+        long[] errors = new long[2];
+        for (int run = 0; run < 2; run++) {
+            collector = StubCollector.builder().withSeed(7).withErrorRate(0.5).start();
+            for (int i = 0; i < 40; i++) {
+                post("/mp/collect", "{\"client_id\":\"1.2\",\"events\":[]}");
+            }
+            errors[run] = collector.getErrorCount();
+            collector.close();
+        }
+        collector = null;
+
+        assertEquals(errors[0], errors[1]);
+        assertTrue(errors[0] > 0 && errors[0] < 40);
+    }
+
+    @Test
+    void testLatencyDistributions() {
+        SplittableRandom random = new SplittableRandom(1);
+
+        assertEquals(5_000_000L, LatencyDistribution.fixed(Duration.ofMillis(5)).sampleNanos(random));
+        for (int i = 0; i < 100; i++) {
+            long uniform = LatencyDistribution.uniform(Duration.ofMillis(1), Duration.ofMillis(2)).sampleNanos(random);
+            assertTrue(uniform >= 1_000_000L && uniform <= 2_000_000L);
+            assertTrue(LatencyDistribution.logNormal(Duration.ofMillis(10), 0.5).sampleNanos(random) > 0);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> LatencyDistribution.uniform(Duration.ofMillis(2), Duration.ofMillis(1)));
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(collector.getBaseUrl() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,121 @@
+package com.google.ga4.mp.validation;
+
+import com.google.ga4.mp.EventParams;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventValidatorTest {
+
+    private static String repeat(char c, int count) {
+        return String.valueOf(c).repeat(count);
+    }
+
+    private static EventParams params(int count) {
+        EventParams params = new EventParams();
+        for (int i = 0; i < count; i++) {
+            params.putLong("param_" + i, i);
+        }
+        return params;
+    }
+
+    @Test
+    void testValidEvent() {
+        EventValidator validator = new EventValidator(ValidationAction.DROP);
+        EventParams params = params(25).putString("page_location", repeat('a', 1000));
+        params.remove(0);
+
+        assertNull(validator.check("purchase", params));
+        assertNull(validator.check(repeat('e', 40), null));
+        assertEquals("purchase", validator.apply("purchase", params));
+        assertEquals(0, validator.getViolationCount());
+    }
+
+    @Test
+    void testEventNameViolations() {
+        EventValidator validator = new EventValidator(ValidationAction.DROP);
+
+        assertEquals(Violation.EVENT_NAME_TOO_LONG, validator.check(repeat('e', 41), null));
+        assertEquals(Violation.EVENT_NAME_INVALID, validator.check("1st_event", null));
+        assertEquals(Violation.EVENT_NAME_INVALID, validator.check("my-event", null));
+        assertEquals(Violation.EVENT_NAME_INVALID, validator.check("", null));
+        assertEquals(Violation.EVENT_NAME_RESERVED, validator.check("google_event", null));
+        assertEquals(Violation.EVENT_NAME_RESERVED, validator.check("Firebase_event", null));
+        assertEquals(Violation.EVENT_NAME_RESERVED, validator.check("session_start", null));
+    }
+
+    @Test
+    void testParamViolations() {
+        EventValidator validator = new EventValidator(ValidationAction.DROP);
+
+        assertEquals(Violation.TOO_MANY_PARAMS, validator.check("event", params(26)));
+        assertEquals(Violation.PARAM_NAME_TOO_LONG, validator.check("event",
+                new EventParams().putLong(repeat('p', 41), 1)));
+        assertEquals(Violation.PARAM_NAME_INVALID, validator.check("event", new EventParams().putLong("_p", 1)));
+        assertEquals(Violation.PARAM_NAME_RESERVED, validator.check("event", new EventParams().putLong("ga_p", 1)));
+        assertEquals(Violation.PARAM_VALUE_TOO_LONG, validator.check("event",
+                new EventParams().putString("label", repeat('v', 101))));
+        assertEquals(Violation.PARAM_VALUE_TOO_LONG, validator.check("event",
+                new EventParams().putString("page_title", repeat('v', 301))));
+    }
+
+    @Test
+    void testMaxParamsLeavesRoomForAddedParams() {
+        EventValidator validator = new EventValidator(ValidationAction.DROP, 23);
+
+        assertNull(validator.check("event", params(23)));
+        assertEquals(Violation.TOO_MANY_PARAMS, validator.check("event", params(24)));
+        assertThrows(IllegalArgumentException.class, () -> new EventValidator(ValidationAction.DROP, 26));
+        assertThrows(IllegalArgumentException.class, () -> new EventValidator(null));
+    }
+
+    @Test
+    void testDropAndWarn() {
+        EventParams params = new EventParams().putString("label", repeat('v', 200));
+
+        assertNull(new EventValidator(ValidationAction.DROP).apply("event", params));
+        EventValidator warn = new EventValidator(ValidationAction.WARN);
+        assertEquals("event", warn.apply("event", params));
+        assertEquals(200, ((String) params.getObject(0)).length());
+        assertEquals(1, warn.getViolationCount());
+    }
+
+    @Test
+    void testTruncateMakesTheEventFit() {
+        EventValidator validator = new EventValidator(ValidationAction.TRUNCATE);
+        EventParams params = params(30)
+                .putString("label", repeat('v', 99) + "\uD83D\uDE00")
+                .putLong("google_param", 1);
+        params.remove(0);
+        params.putLong(repeat('p', 45), 7);
+        params.setKey(0, "first");
+
+        String name = validator.apply(repeat('e', 50), params);
+
+        assertEquals(repeat('e', 40), name);
+        assertNull(validator.check(name, params));
+        assertEquals(25, params.size());
+        assertEquals("first", params.getKey(0));
+        assertFalse(params.containsKey("google_param"));
+    }
+
+    @Test
+    void testTruncateShortensLongParamNamesAndValues() {
+        EventValidator validator = new EventValidator(ValidationAction.TRUNCATE);
+        EventParams params = new EventParams()
+                .putLong(repeat('p', 45), 7)
+                .putString("label", repeat('v', 99) + "\uD83D\uDE00");
+
+        assertEquals("event", validator.apply("event", params));
+        assertEquals(7, params.getLong(params.indexOf(repeat('p', 40))));
+        assertEquals(99, ((String) params.getObject(params.indexOf("label"))).length());
+    }
+
+    @Test
+    void testTruncateDropsEventsThatCannotBeFixed() {
+        EventValidator validator = new EventValidator(ValidationAction.TRUNCATE);
+
+        assertNull(validator.apply("first_visit", null));
+        assertNull(validator.apply("bad name", null));
+    }
+}
@@ -0,0 +1,145 @@
+package com.google.ga4.mp.validation;
+
+import com.google.ga4.mp.EventParams;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShapeValidatorTest {
+
+    @Test
+    void testFingerprintIgnoresValuesAndOrder() {
+        EventParams first = new EventParams().putString("page", "/home").putLong("count", 1);
+        EventParams second = new EventParams().putLong("count", 99).putString("page", "/checkout");
+
+        assertEquals(ShapeValidator.fingerprint("view", first), ShapeValidator.fingerprint("view", second));
+    }
+
+    @Test
+    void testFingerprintDistinguishesNamesKeysAndTypes() {
+        long shape = ShapeValidator.fingerprint("view", new EventParams().putLong("count", 1));
+
+        assertNotEquals(shape, ShapeValidator.fingerprint("click", new EventParams().putLong("count", 1)));
+        assertNotEquals(shape, ShapeValidator.fingerprint("view", new EventParams().putLong("total", 1)));
+        assertNotEquals(shape, ShapeValidator.fingerprint("view", new EventParams().putString("count", "1")));
+        assertNotEquals(shape, ShapeValidator.fingerprint("view", new EventParams()));
+    }
+
+    @Test
+    void testEachShapeIsValidatedOnce() {
+        AtomicInteger requests = new AtomicInteger();
+        ShapeValidator validator = new ShapeValidator(10, (name, params) -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(
+                    name.equals("bad") ? List.of("Event name is invalid") : Collections.emptyList());
+        });
+
+        assertEquals(ShapeVerdict.UNKNOWN, validator.check("good", new EventParams().putLong("n", 1)));
+        assertEquals(ShapeVerdict.VALID, validator.check("good", new EventParams().putLong("n", 2)));
+        assertEquals(ShapeVerdict.UNKNOWN, validator.check("bad", null));
+        assertEquals(ShapeVerdict.INVALID, validator.check("bad", null));
+
+        assertEquals(2, requests.get());
+        assertEquals(2, validator.getValidationCount());
+        assertEquals(1, validator.getInvalidShapeCount());
+    }
+
+    @Test
+    void testPendingShapeIsNotValidatedTwice() {
+        CompletableFuture<List<String>> response = new CompletableFuture<>();
+        AtomicInteger requests = new AtomicInteger();
+        ShapeValidator validator = new ShapeValidator(10, (name, params) -> {
+            requests.incrementAndGet();
+            return response;
+        });
+
+        assertEquals(ShapeVerdict.UNKNOWN, validator.check("view", null));
+        assertEquals(ShapeVerdict.UNKNOWN, validator.check("view", null));
+        response.complete(Collections.emptyList());
+
+        assertEquals(ShapeVerdict.VALID, validator.check("view", null));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void testFailedValidationIsRetried() {
+        AtomicInteger requests = new AtomicInteger();
+        ShapeValidator validator = new ShapeValidator(10, (name, params) -> requests.incrementAndGet() == 1
+                ? CompletableFuture.failedFuture(new IOException("connection reset"))
+                : CompletableFuture.completedFuture(Collections.emptyList()));
+
+        assertEquals(ShapeVerdict.UNKNOWN, validator.check("view", null));
+        assertEquals(ShapeVerdict.UNKNOWN, validator.check("view", null));
+        assertEquals(ShapeVerdict.VALID, validator.check("view", null));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testLeastRecentlyUsedShapeIsEvicted() {
+        AtomicInteger requests = new AtomicInteger();
+        ShapeValidator validator = new ShapeValidator(2, (name, params) -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        });
+
+        validator.check("a", null);
+        validator.check("b", null);
+        validator.check("a", null);
+        validator.check("c", null);
+
+        assertEquals(2, validator.getCachedShapeCount());
+        assertEquals(ShapeVerdict.VALID, validator.check("a", null));
+        assertEquals(ShapeVerdict.UNKNOWN, validator.check("b", null));
+        assertEquals(4, requests.get());
+    }
+
+    @Test
+    void testConcurrentChecksValidateEachShapeOnceAndStayBounded() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        ShapeValidator validator = new ShapeValidator(50, (name, params) -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread * 1000;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        validator.check("shared", null);
+                        validator.check("shape_" + (offset + i), null);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // The shared shape is used all the time, so it is never the one evicted
+        assertEquals(4001, requests.get());
+        assertTrue(validator.getCachedShapeCount() <= 50);
+        assertEquals(ShapeVerdict.VALID, validator.check("shared", null));
+    }
+
+    @Test
+    void testRejectsInvalidCacheSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShapeValidator(0, (name, params) -> CompletableFuture.completedFuture(List.of())));
+    }
+}
@@ -0,0 +1,53 @@
+package com.google.ga4.mp.testing;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+/**
+ * Response latency of the {@link StubCollector}, sampled per request from a seeded random source
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * @return Delay in nanoseconds before the response is sent
+     */
+    long sampleNanos(SplittableRandom random);
+
+    static LatencyDistribution none() {
+        return random -> 0L;
+    }
+
+    static LatencyDistribution fixed(Duration latency) {
+        long nanos = latency.toNanos();
+        return random -> nanos;
+    }
+
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        if (max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("max must not be less than min");
+        }
+        long minNanos = min.toNanos();
+        long rangeNanos = max.toNanos() - minNanos;
+        return random -> minNanos + (rangeNanos == 0 ? 0 : random.nextLong(rangeNanos + 1));
+    }
+
+    /**
+     * Long-tailed latency typical of real endpoints: most responses near the median, a few much slower
+     *
+     * @param median Median latency
+     * @param sigma  Standard deviation of the underlying normal distribution, e.g. 0.5
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma) {
+        if (sigma < 0) {
+            throw new IllegalArgumentException("sigma must not be negative");
+        }
+        double mu = Math.log(Math.max(1, median.toNanos()));
+        return random -> (long) Math.exp(mu + sigma * gaussian(random));
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller; 1 - nextDouble() keeps the logarithm finite
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+}
@@ -0,0 +1,425 @@
+package com.google.ga4.mp.testing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Embedded stand-in for the Measurement Protocol collector, serving /mp/collect and /debug/mp/collect on
+ * the loopback interface. Latency, server errors, 429 bursts and dropped connections are injected per
+ * request; every decision is derived from the seed and the request's sequence number, so a run with the
+ * same seed and request count sees the same faults.
+ * <pre>{@code
+ * try (StubCollector collector = StubCollector.builder().withErrorRate(0.1).start()) {
+ *     GA4Analytics ga = GA4Analytics.builder()
+ *             .withEndpointBaseUrl(collector.getBaseUrl())
+ *             ...
+ * }
+ * }</pre>
+ */
+public final class StubCollector implements AutoCloseable {
+    private static final byte[] DEBUG_RESPONSE = "{\"validationMessages\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long seed;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final int errorStatus;
+    private final int throttleEvery;
+    private final int throttleLength;
+    private final Duration retryAfter;
+    private final double dropRate;
+    private final Map<String, String> validationMessages;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+    private final LongAdder debugRequests = new LongAdder();
+    private final AtomicLong eventsAccepted = new AtomicLong();
+    private final Map<String, LongAdder> eventsByName = new ConcurrentHashMap<>();
+
+    private StubCollector(Builder builder) throws IOException {
+        this.seed = builder.seed;
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.errorStatus = builder.errorStatus;
+        this.throttleEvery = builder.throttleEvery;
+        this.throttleLength = builder.throttleLength;
+        this.retryAfter = builder.retryAfter;
+        this.dropRate = builder.dropRate;
+        this.validationMessages = new HashMap<>(builder.validationMessages);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 0);
+        // Latency is simulated by sleeping, so every request gets its own thread
+        this.handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/mp/collect", exchange -> handle(exchange, false));
+        server.createContext("/debug/mp/collect", exchange -> handle(exchange, true));
+        server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return A collector answering every request immediately with success
+     */
+    public static StubCollector start() {
+        return builder().start();
+    }
+
+    /**
+     * @return URL to pass to {@code GA4Analytics.Builder.withEndpointBaseUrl}
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return Number of requests received, including failed ones
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return Number of events in requests answered with success
+     */
+    public long getEventsAccepted() {
+        return eventsAccepted.get();
+    }
+
+    /**
+     * @return Number of accepted events with the given name
+     */
+    public long getEventsAccepted(String eventName) {
+        LongAdder count = eventsByName.get(eventName);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * @return Number of requests answered with the configured error status
+     */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * @return Number of requests answered with 429
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return Number of requests whose connection was closed without a response
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Number of requests to /debug/mp/collect
+     */
+    public long getDebugRequestCount() {
+        return debugRequests.sum();
+    }
+
+    /**
+     * @return Number of requests rejected with 400 because the body was not a Measurement Protocol payload
+     */
+    public long getMalformedCount() {
+        return malformed.sum();
+    }
+
+    /**
+     * Waits until at least the given number of events were accepted
+     *
+     * @return Whether the count was reached before the timeout
+     */
+    public boolean awaitEventsAccepted(long count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (eventsAccepted) {
+            while (eventsAccepted.get() < count) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(eventsAccepted, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops the server, closing open connections
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange, boolean debug) throws IOException {
+        long requestNumber = sequence.getAndIncrement();
+        requests.increment();
+        if (debug) {
+            debugRequests.increment();
+        }
+        SplittableRandom random = new SplittableRandom(seed ^ (requestNumber * 0x9E3779B97F4A7C15L));
+        try {
+            byte[] body = readBody(exchange);
+            sleep(latency.sampleNanos(random));
+
+            if (random.nextDouble() < dropRate) {
+                dropped.increment();
+                // Closing before the response headers are sent closes the connection
+                exchange.close();
+                return;
+            }
+            if (throttleEvery > 0 && requestNumber % throttleEvery >= throttleEvery - throttleLength) {
+                throttled.increment();
+                if (retryAfter != null) {
+                    exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfter.getSeconds()));
+                }
+                respond(exchange, 429, null);
+                return;
+            }
+            if (random.nextDouble() < errorRate) {
+                errors.increment();
+                respond(exchange, errorStatus, null);
+                return;
+            }
+
+            JsonNode events = parseEvents(body);
+            if (events == null) {
+                malformed.increment();
+                respond(exchange, 400, null);
+                return;
+            }
+            if (debug) {
+                respond(exchange, 200, validate(events));
+                return;
+            }
+            accept(events);
+            respond(exchange, 204, null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void accept(JsonNode events) {
+        for (JsonNode event : events) {
+            eventsByName.computeIfAbsent(event.path("name").asText(), name -> new LongAdder()).increment();
+        }
+        eventsAccepted.addAndGet(events.size());
+        synchronized (eventsAccepted) {
+            eventsAccepted.notifyAll();
+        }
+    }
+
+    private byte[] validate(JsonNode events) throws IOException {
+        if (validationMessages.isEmpty()) {
+            return DEBUG_RESPONSE;
+        }
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode messages = response.putArray("validationMessages");
+        for (JsonNode event : events) {
+            String description = validationMessages.get(event.path("name").asText());
+            if (description != null) {
+                messages.addObject()
+                        .put("fieldPath", "events")
+                        .put("description", description)
+                        .put("validationCode", "VALUE_INVALID");
+            }
+        }
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    private JsonNode parseEvents(byte[] body) {
+        try {
+            JsonNode events = objectMapper.readTree(body).get("events");
+            return events != null && events.isArray() ? events : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        try (InputStream body = in) {
+            return body.readAllBytes();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null) {
+            // Without a body the exchange is finished here. Closing the response body as well would end it
+            // a second time and can hand the kept-alive connection back while the next request is on it.
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static final class Builder {
+        private int port = 0;
+        private long seed = 42L;
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private double errorRate = 0.0;
+        private int errorStatus = 503;
+        private int throttleEvery = 0;
+        private int throttleLength = 0;
+        private Duration retryAfter;
+        private double dropRate = 0.0;
+        private final Map<String, String> validationMessages = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Port to listen on; 0, the default, picks a free one
+         */
+        public Builder withPort(int port) {
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("port must be between 0 and 65535");
+            }
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Seed of the per-request fault and latency decisions
+         */
+        public Builder withSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder withLatency(LatencyDistribution latency) {
+            if (latency == null) {
+                throw new IllegalArgumentException("latency must not be null");
+            }
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Fraction of requests answered with 503
+         */
+        public Builder withErrorRate(double errorRate) {
+            return withErrorRate(errorRate, 503);
+        }
+
+        /**
+         * Fraction of requests answered with the given error status
+         */
+        public Builder withErrorRate(double errorRate, int errorStatus) {
+            checkRate(errorRate, "errorRate");
+            if (errorStatus < 400 || errorStatus > 599) {
+                throw new IllegalArgumentException("errorStatus must be a 4xx or 5xx code");
+            }
+            this.errorRate = errorRate;
+            this.errorStatus = errorStatus;
+            return this;
+        }
+
+        /**
+         * Answers the last {@code burstLength} of every {@code period} requests with 429
+         *
+         * @param retryAfter Value of the Retry-After header, or null to omit it
+         */
+        public Builder withThrottleBursts(int period, int burstLength, Duration retryAfter) {
+            if (period < 1 || burstLength < 0 || burstLength > period) {
+                throw new IllegalArgumentException("throttle bursts must satisfy 0 <= burstLength <= period, period >= 1");
+            }
+            this.throttleEvery = period;
+            this.throttleLength = burstLength;
+            this.retryAfter = retryAfter;
+            return this;
+        }
+
+        /**
+         * Fraction of requests whose connection is closed without a response
+         */
+        public Builder withConnectionDropRate(double dropRate) {
+            checkRate(dropRate, "dropRate");
+            this.dropRate = dropRate;
+            return this;
+        }
+
+        /**
+         * Makes /debug/mp/collect report a validation message for events with the given name
+         */
+        public Builder withValidationMessage(String eventName, String description) {
+            if (eventName == null || description == null) {
+                throw new IllegalArgumentException("eventName and description must not be null");
+            }
+            this.validationMessages.put(eventName, description);
+            return this;
+        }
+
+        public StubCollector start() {
+            try {
+                return new StubCollector(this);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start stub collector", e);
+            }
+        }
+
+        private static void checkRate(double rate, String name) {
+            if (!(rate >= 0.0 && rate <= 1.0)) {
+                throw new IllegalArgumentException(name + " must be between 0.0 and 1.0");
+            }
+        }
+    }
+}